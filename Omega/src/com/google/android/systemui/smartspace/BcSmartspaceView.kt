@@ -105,7 +105,8 @@ class BcSmartspaceView @JvmOverloads constructor(
             return
         }
 
-        val sortedTargets = targets.sortedByDescending { it.score }.toMutableList()
+        // The provider already orders the targets by score
+        val sortedTargets = targets.toMutableList()
         val isRtl = layoutDirection == LAYOUT_DIRECTION_RTL
         val currentItem = viewPager.currentItem
         val index = if (isRtl) adapter.count - currentItem else currentItem
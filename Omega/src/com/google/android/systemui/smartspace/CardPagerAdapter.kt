@@ -45,26 +45,29 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
 
     override fun getItemPosition(obj: Any): Int {
         val viewHolder = obj as ViewHolder
-        val target = getTargetAtPosition(viewHolder.position)
-        if (viewHolder.target === target) {
-            return POSITION_UNCHANGED
+        // Keep the card of a target wherever it moved, as long as it shows the same feature
+        val position = smartspaceTargets.indexOfFirst {
+            it.smartspaceTargetId == viewHolder.target.smartspaceTargetId
         }
-        if (target == null
-            || getFeatureType(target) != getFeatureType(viewHolder.target)
-            || target.smartspaceTargetId != viewHolder.target.smartspaceTargetId
-        ) {
+        if (position < 0) {
             return POSITION_NONE
         }
-        viewHolder.target = target
-        onBindViewHolder(viewHolder)
-        return POSITION_UNCHANGED
-    }
-
-    private fun getTargetAtPosition(position: Int): SmartspaceTarget? {
-        if (position !in 0 until smartspaceTargets.size) {
-            return null
+        val target = smartspaceTargets[position]
+        if (getFeatureType(target) != getFeatureType(viewHolder.target)) {
+            return POSITION_NONE
+        }
+        if (position != viewHolder.position) {
+            if (holders[viewHolder.position] == viewHolder) {
+                holders.remove(viewHolder.position)
+            }
+            viewHolder.position = position
+            holders.put(position, viewHolder)
+        }
+        if (viewHolder.target != target) {
+            viewHolder.target = target
+            onBindViewHolder(viewHolder)
         }
-        return smartspaceTargets[position]
+        return position
     }
 
     private fun onBindViewHolder(viewHolder: ViewHolder) {
@@ -95,7 +98,7 @@ class CardPagerAdapter(context: Context) : PagerAdapter() {
     private fun getFeatureType(target: SmartspaceTarget) = target.featureType
 
     class ViewHolder internal constructor(
-        val position: Int,
+        var position: Int,
         val card: BcSmartspaceCard,
         var target: SmartspaceTarget
     )
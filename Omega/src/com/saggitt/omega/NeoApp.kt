@@ -33,6 +33,9 @@ import com.saggitt.omega.flowerpot.Flowerpot
 import com.saggitt.omega.preferences.NeoPrefs
 import com.saggitt.omega.theme.ThemeManager
 import com.saggitt.omega.util.minSDK
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
 import org.chickenhook.restrictionbypass.Unseal
 import java.io.File
 
@@ -134,6 +137,12 @@ class NeoApp : Application() {
 
         val activities = HashSet<Activity>()
         var foregroundActivity: Activity? = null
+        private var startedActivities = 0
+
+        private val _isInForeground = MutableStateFlow(false)
+
+        /** Whether an activity of the app is started */
+        val isInForeground: StateFlow<Boolean> = _isInForeground.asStateFlow()
 
         fun finishAll(recreateLauncher: Boolean = true) {
             HashSet(activities).forEach { if (recreateLauncher && it is NeoLauncher) it.recreate() else it.finish() }
@@ -147,6 +156,7 @@ class NeoApp : Application() {
         }
 
         override fun onActivityStarted(activity: Activity) {
+            _isInForeground.value = ++startedActivities > 0
         }
 
         override fun onActivityDestroyed(activity: Activity) {
@@ -159,6 +169,7 @@ class NeoApp : Application() {
         }
 
         override fun onActivityStopped(activity: Activity) {
+            _isInForeground.value = --startedActivities > 0
         }
 
         override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {
@@ -20,7 +20,6 @@ package com.saggitt.omega.allapps
 
 import android.content.Context
 import com.android.launcher3.model.data.ItemInfo
-import com.android.launcher3.util.ComponentKey
 import com.saggitt.omega.groups.category.DrawerTabs
 import com.saggitt.omega.groups.category.FlowerpotTabs
 import com.saggitt.omega.util.prefs
@@ -39,33 +38,47 @@ class AllAppsTabs(private val context: Context) : Iterable<AllAppsTabs.Tab> {
             }
         }
 
-    private val addedApps = ArrayList<ComponentKey>()
+    private val membership = TabMembershipIndex()
 
     init {
         reloadTabs()
     }
 
     fun reloadTabs() {
-        addedApps.clear()
+        membership.clear()
         tabs.clear()
         context.prefs.drawerTabsModelCurrent.getGroups().mapNotNullTo(tabs) {
             when {
                 it is DrawerTabs.ProfileTab                                      -> {
                     if (hasWorkApps != it.profile.matchesAll) {
-                        ProfileTab(createMatcher(addedApps, it.profile.matcher), it)
+                        ProfileTab(createProfileMatcher(it.profile.matcher), it)
                     } else null
                 }
 
                 it is DrawerTabs.CustomTab                                       -> {
+                    val contents = it.contents.value()
                     if (it.hideFromAllApps.value()) {
-                        addedApps.addAll(it.contents.value())
+                        membership.add(TabMembershipIndex.HIDDEN_BIT, contents)
+                    }
+                    val bit = membership.newBit()
+                    if (bit != TabMembershipIndex.NO_BIT) {
+                        membership.add(bit, contents)
+                        Tab(it.title, createTabMatcher(bit), drawerTab = it)
+                    } else {
+                        Tab(it.title, it.filter.matcher, drawerTab = it)
                     }
-                    Tab(it.title, it.filter.matcher, drawerTab = it)
                 }
 
                 it is FlowerpotTabs.FlowerpotTab && it.getMatches().isNotEmpty() -> {
-                    addedApps.addAll(it.getMatches())
-                    Tab(it.title, it.getFilter(context).matcher, drawerTab = it)
+                    val apps = it.apps
+                    membership.add(TabMembershipIndex.HIDDEN_BIT, apps)
+                    val bit = membership.newBit()
+                    if (bit != TabMembershipIndex.NO_BIT) {
+                        membership.add(bit, apps)
+                        Tab(it.title, createTabMatcher(bit), drawerTab = it)
+                    } else {
+                        Tab(it.title, it.getFilter(context).matcher, drawerTab = it)
+                    }
                 }
 
                 else -> null
@@ -73,16 +86,17 @@ class AllAppsTabs(private val context: Context) : Iterable<AllAppsTabs.Tab> {
         }
     }
 
-    private fun createMatcher(
-        components: List<ComponentKey>,
-        base: Predicate<ItemInfo>? = null,
-    ): Predicate<ItemInfo> {
+    private fun createProfileMatcher(base: Predicate<ItemInfo>?): Predicate<ItemInfo> {
         return Predicate<ItemInfo> { info ->
             if (base?.test(info) == false) return@Predicate false
-            return@Predicate !components.contains(ComponentKey(info.targetComponent, info.user))
+            return@Predicate !membership.contains(TabMembershipIndex.HIDDEN_BIT, info)
         }
     }
 
+    private fun createTabMatcher(bit: Int) = Predicate<ItemInfo> { info ->
+        membership.contains(bit, info)
+    }
+
     override fun iterator(): Iterator<Tab> {
         return tabs.iterator()
     }
@@ -23,33 +23,7 @@ import com.android.launcher3.model.data.AppInfo
 
 class AppColorComparator(context: Context?) : AppInfoComparator(context) {
     override fun compare(a: AppInfo, b: AppInfo): Int {
-        val hslA = FloatArray(3)
-        val hslB = FloatArray(3)
-        ColorUtils.colorToHSL(a.iconColor, hslA)
-        ColorUtils.colorToHSL(b.iconColor, hslB)
-        val h2A = remapHue(hslA[0])
-        val h2B = remapHue(hslB[0])
-        var s2A = remap(hslA[1])
-        var s2B = remap(hslB[1])
-        var l2A = remap(hslA[2])
-        var l2B = remap(hslB[2])
-        if (h2A % 2 == 1) {
-            s2A = REPETITIONS - s2A
-            l2A = REPETITIONS - l2A
-        }
-        if (h2B % 2 == 1) {
-            s2B = REPETITIONS - s2B
-            l2B = REPETITIONS - l2B
-        }
-        var result = h2A.compareTo(h2B)
-        if (result != 0) {
-            return result
-        }
-        result = l2A.compareTo(l2B)
-        if (result != 0) {
-            return result
-        }
-        result = s2A.compareTo(s2B)
+        val result = a.colorSortKey.compareTo(b.colorSortKey)
         return if (result != 0) {
             result
         } else super.compare(a, b)
@@ -67,5 +41,24 @@ class AppColorComparator(context: Context?) : AppInfoComparator(context) {
         fun remap(value: Float): Int {
             return (value * REPETITIONS).toInt()
         }
+
+        /**
+         * Returns the hue bucket, lightness and saturation of [color] packed in an int which
+         * orders the colors like comparing each of them in turn. Lightness and saturation are
+         * inverted in odd hue buckets so that neighbouring buckets blend into each other.
+         */
+        @JvmStatic
+        fun getColorSortKey(color: Int): Int {
+            val hsl = FloatArray(3)
+            ColorUtils.colorToHSL(color, hsl)
+            val hue = remapHue(hsl[0])
+            var saturation = remap(hsl[1])
+            var lightness = remap(hsl[2])
+            if (hue % 2 == 1) {
+                saturation = REPETITIONS - saturation
+                lightness = REPETITIONS - lightness
+            }
+            return (hue shl 16) or (lightness shl 8) or saturation
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.allapps
+
+import android.content.Context
+import androidx.annotation.WorkerThread
+import com.android.launcher3.model.data.AppInfo
+import com.saggitt.omega.data.AppUsageTracker
+import com.saggitt.omega.util.Config
+import com.saggitt.omega.util.getAllAppsComparator
+import java.text.CollationKey
+import java.text.Collator
+import java.util.Locale
+
+/**
+ * Sorts the apps of a drawer list in the background.
+ *
+ * Alphabetical sorts compare precomputed collation keys instead of collating the titles on every
+ * comparison. The keys are reused across updates as long as the title and locale don't change.
+ * Usage sorts follow the ranking kept by [AppUsageTracker] instead of sorting.
+ */
+class DrawerAppsSorter(private val context: Context) {
+
+    private var locale: Locale? = null
+    private var collator: Collator = Collator.getInstance()
+    private var titleKeys = HashMap<String, CollationKey>()
+
+    @WorkerThread
+    @Synchronized
+    fun sort(apps: List<AppInfo>, sortType: Int): List<AppInfo> = when (sortType) {
+        Config.SORT_AZ -> sortByTitle(apps, false)
+        Config.SORT_ZA -> sortByTitle(apps, true)
+        Config.SORT_MOST_USED -> sortByUsage(apps)
+        else           -> apps.sortedWith(getAllAppsComparator(context, sortType))
+    }
+
+    private fun sortByUsage(apps: List<AppInfo>): List<AppInfo> {
+        val appsByPackage = HashMap<String, MutableList<AppInfo>>()
+        apps.forEach { app ->
+            appsByPackage.getOrPut(app.componentName.packageName) { ArrayList(1) }.add(app)
+        }
+        val sorted = ArrayList<AppInfo>(apps.size)
+        AppUsageTracker.INSTANCE[context].getRankedPackages().forEach { packageName ->
+            appsByPackage.remove(packageName)?.let { sorted.addAll(it) }
+        }
+        // Apps which were never launched keep the order of the store
+        apps.filterTo(sorted) { it.componentName.packageName in appsByPackage }
+        return sorted
+    }
+
+    private fun sortByTitle(apps: List<AppInfo>, reversed: Boolean): List<AppInfo> {
+        val currentLocale = Locale.getDefault()
+        if (currentLocale != locale) {
+            locale = currentLocale
+            collator = Collator.getInstance(currentLocale)
+            titleKeys.clear()
+        }
+
+        // Only keep the keys of the current titles
+        val keys = HashMap<String, CollationKey>(apps.size)
+        val keyed = apps.map { app ->
+            val title = app.title.toString().lowercase()
+            val key = keys.getOrPut(title) {
+                titleKeys[title] ?: collator.getCollationKey(title)
+            }
+            Pair(key, app)
+        }
+        titleKeys = keys
+
+        // Both sorts are stable, apps with the same title keep the order of the store
+        val sorted = if (reversed) {
+            keyed.sortedByDescending { it.first }
+        } else {
+            keyed.sortedBy { it.first }
+        }
+        return sorted.map { it.second }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.allapps
+
+import com.android.launcher3.model.data.ItemInfo
+import com.android.launcher3.util.ComponentKey
+import com.saggitt.omega.flowerpot.FlowerpotApps
+
+/**
+ * Maps each app to a bitmask of the tabs it belongs to, so that checking whether an app is
+ * part of a tab is a single lookup no matter how many tabs or members there are.
+ *
+ * The index is rebuilt when the tabs are reloaded, or lazily when the apps of a flowerpot used
+ * by one of the tabs change.
+ */
+class TabMembershipIndex {
+
+    private val sources = ArrayList<Pair<Long, Collection<ComponentKey>>>()
+    private val pots = ArrayList<FlowerpotApps>()
+    private val index = HashMap<ComponentKey, Long>()
+
+    private var nextBit = FIRST_TAB_BIT
+    private var potsVersion = -1
+    private var dirty = true
+
+    fun clear() {
+        sources.clear()
+        pots.clear()
+        index.clear()
+        nextBit = FIRST_TAB_BIT
+        dirty = true
+    }
+
+    /**
+     * Returns a new bit to identify a tab, or -1 if all bits are in use
+     */
+    fun newBit(): Int = if (nextBit < Long.SIZE_BITS) nextBit++ else NO_BIT
+
+    fun add(bit: Int, members: Collection<ComponentKey>) {
+        sources.add(Pair(1L shl bit, members))
+        dirty = true
+    }
+
+    fun add(bit: Int, apps: FlowerpotApps) {
+        add(bit, apps.matches)
+        pots.add(apps)
+    }
+
+    fun contains(bit: Int, info: ItemInfo): Boolean {
+        val currentPotsVersion = pots.sumOf { it.version }
+        if (dirty || currentPotsVersion != potsVersion) {
+            rebuild()
+            potsVersion = currentPotsVersion
+        }
+        val mask = index[ComponentKey(info.targetComponent, info.user)] ?: return false
+        return mask and (1L shl bit) != 0L
+    }
+
+    private fun rebuild() {
+        index.clear()
+        sources.forEach { (mask, members) ->
+            members.forEach { key ->
+                index[key] = (index[key] ?: 0L) or mask
+            }
+        }
+        dirty = false
+    }
+
+    companion object {
+        const val NO_BIT = -1
+
+        /**
+         * Set for apps which are shown in a tab of their own and hidden from the profile tabs
+         */
+        const val HIDDEN_BIT = 0
+
+        private const val FIRST_TAB_BIT = 1
+    }
+}
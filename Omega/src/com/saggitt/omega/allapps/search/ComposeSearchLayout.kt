@@ -75,7 +75,7 @@ import com.saggitt.omega.compose.navigation.Routes
 import com.saggitt.omega.nLauncher
 import com.saggitt.omega.preferences.NeoPrefs
 import com.saggitt.omega.preferences.PreferenceActivity
-import com.saggitt.omega.search.NeoAppSearchAlgorithm
+import com.saggitt.omega.search.SearchAggregator
 import com.saggitt.omega.search.SearchProviderController
 import com.saggitt.omega.theme.OmegaAppTheme
 import com.saggitt.omega.util.openURLInBrowser
@@ -88,7 +88,7 @@ open class ComposeSearchLayout(context: Context, attrs: AttributeSet? = null) :
     val mContext = context
     protected var prefs: NeoPrefs = mContext.prefs
     private var spController = SearchProviderController.getInstance(getContext())
-    private val searchAlgorithm = NeoAppSearchAlgorithm(mContext)
+    private val searchAlgorithm = SearchAggregator.create(mContext)
     private val mSearchBarController: AllAppsSearchBarController = AllAppsSearchBarController()
 
     private var mAppsView: ActivityAllAppsContainerView<*>? = null
@@ -253,7 +253,7 @@ open class ComposeSearchLayout(context: Context, attrs: AttributeSet? = null) :
     override fun initializeSearch(containerView: ActivityAllAppsContainerView<*>?) {
         mAppsView = containerView
         mSearchBarController.initialize(
-            NeoAppSearchAlgorithm(mContext.nLauncher),
+            SearchAggregator.create(mContext.nLauncher),
             null, /*mCancelButton,*/ mContext.nLauncher, this
         )
     }
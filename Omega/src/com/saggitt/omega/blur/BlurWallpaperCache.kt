@@ -0,0 +1,142 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.blur
+
+import android.graphics.Bitmap
+import android.util.AtomicFile
+import android.util.Log
+import androidx.annotation.MainThread
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.Executor
+
+/**
+ * Keeps the last blurred wallpaper on disk, so it can be shown as soon as the launcher starts.
+ * Only the entry of the last stored [Key] is kept.
+ */
+class BlurWallpaperCache @VisibleForTesting constructor(
+    private val dir: File,
+    private val executor: Executor,
+    private val callbackExecutor: Executor,
+) {
+
+    // A serial executor, so that an entry is never evicted by an older store
+    constructor(dir: File) : this(dir, UI_HELPER_EXECUTOR, MAIN_EXECUTOR)
+
+    /**
+     * Everything the blurred wallpaper depends on
+     */
+    data class Key(
+        val wallpaperId: Int,
+        val radius: Int,
+        val vibrancy: Float,
+        val displayWidth: Int,
+        val displayHeight: Int,
+    ) {
+        val fileName: String
+            get() = "${wallpaperId}_${radius}_${vibrancy}_${displayWidth}x$displayHeight"
+    }
+
+    /**
+     * A blurred wallpaper, downsampled from the wallpaper scaled to [wallpaperWidth] x
+     * [wallpaperHeight]
+     */
+    class Entry(val bitmap: Bitmap, val wallpaperWidth: Int, val wallpaperHeight: Int)
+
+    /**
+     * Loads the entry of [key] in the background, and passes it, or null when there is none, to
+     * [callback] on the callback executor
+     */
+    fun load(key: Key, callback: (Entry?) -> Unit) {
+        executor.execute {
+            val entry = read(AtomicFile(File(dir, key.fileName)))
+            callbackExecutor.execute { callback(entry) }
+        }
+    }
+
+    /**
+     * Stores the entry of [key] in the background, replacing any other entry
+     */
+    @MainThread
+    fun store(key: Key, entry: Entry) {
+        // Copied now, as the bitmap is recycled when it is replaced
+        val bitmap = entry.bitmap
+        val pixels = ByteBuffer.allocate(bitmap.byteCount)
+        bitmap.copyPixelsToBuffer(pixels)
+        executor.execute {
+            write(AtomicFile(File(dir, key.fileName)), bitmap.width, bitmap.height, entry, pixels)
+            dir.listFiles()?.forEach {
+                if (!it.name.startsWith(key.fileName)) it.delete()
+            }
+        }
+    }
+
+    private fun read(file: AtomicFile): Entry? {
+        if (!file.baseFile.exists()) return null
+        return try {
+            DataInputStream(file.openRead().buffered()).use { input ->
+                if (input.readInt() != VERSION) return null
+                val bitmap = Bitmap.createBitmap(
+                    input.readInt(), input.readInt(), Bitmap.Config.ARGB_8888
+                )
+                val wallpaperWidth = input.readInt()
+                val wallpaperHeight = input.readInt()
+                val pixels = ByteArray(bitmap.byteCount)
+                input.readFully(pixels)
+                bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(pixels))
+                Entry(bitmap, wallpaperWidth, wallpaperHeight)
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read the blurred wallpaper", e)
+            file.delete()
+            null
+        }
+    }
+
+    private fun write(file: AtomicFile, width: Int, height: Int, entry: Entry, pixels: ByteBuffer) {
+        dir.mkdirs()
+        var stream: FileOutputStream? = null
+        try {
+            stream = file.startWrite()
+            val output = DataOutputStream(stream.buffered())
+            output.writeInt(VERSION)
+            output.writeInt(width)
+            output.writeInt(height)
+            output.writeInt(entry.wallpaperWidth)
+            output.writeInt(entry.wallpaperHeight)
+            output.write(pixels.array())
+            output.flush()
+            file.finishWrite(stream)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to store the blurred wallpaper", e)
+            stream?.let { file.failWrite(it) }
+        }
+    }
+
+    companion object {
+        private const val TAG = "BlurWallpaperCache"
+        private const val VERSION = 1
+    }
+}
@@ -35,15 +35,20 @@
 
 package com.saggitt.omega.blur
 
-import android.content.Context
 import android.graphics.Bitmap
-import com.hoko.blur.HokoBlur
-import com.hoko.blur.task.AsyncBlurTask
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR
 import com.saggitt.omega.preferences.NeoPrefs
 
-class BlurWallpaperFilter(private val context: Context) : WallpaperFilter {
+/**
+ * Blurs the downsampled wallpaper in place with a [StackBlur], off the main thread. The result is
+ * delivered on the main thread.
+ */
+class BlurWallpaperFilter : WallpaperFilter {
 
-    private var blurRadius = 25
+    var blurRadius = 25
+        private set
+    private val stackBlur = StackBlur()
 
     override fun applyPrefs(prefs: NeoPrefs) {
         blurRadius = (prefs.profileBlurRadius.getValue() / BlurWallpaperProvider.DOWN_SAMPLE_FACTOR)
@@ -52,24 +57,16 @@ class BlurWallpaperFilter(private val context: Context) : WallpaperFilter {
     }
 
     override fun apply(wallpaper: Bitmap): WallpaperFilter.ApplyTask {
+        val radius = blurRadius
         return WallpaperFilter.ApplyTask.create { emitter ->
-            HokoBlur.with(context)
-                .scheme(HokoBlur.SCHEME_OPENGL)
-                .mode(HokoBlur.MODE_STACK)
-                .radius(blurRadius)
-                .sampleFactor(BlurWallpaperProvider.DOWN_SAMPLE_FACTOR.toFloat())
-                .forceCopy(false)
-                .needUpscale(true)
-                .processor()
-                .asyncBlur(wallpaper, object : AsyncBlurTask.Callback {
-                    override fun onBlurSuccess(bitmap: Bitmap) {
-                        emitter.onSuccess(bitmap)
-                    }
-
-                    override fun onBlurFailed(error: Throwable?) {
-                        emitter.onError(error!!)
-                    }
-                })
+            THREAD_POOL_EXECUTOR.execute {
+                try {
+                    stackBlur.blur(wallpaper, radius)
+                    MAIN_EXECUTOR.execute { emitter.onSuccess(wallpaper) }
+                } catch (e: Throwable) {
+                    MAIN_EXECUTOR.execute { emitter.onError(e) }
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
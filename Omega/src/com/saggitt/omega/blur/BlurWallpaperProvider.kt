@@ -25,17 +25,14 @@ import android.graphics.Bitmap
 import android.graphics.Canvas
 import android.graphics.ColorMatrix
 import android.graphics.ColorMatrixColorFilter
-import android.graphics.Paint
-import android.graphics.Path
+import android.graphics.drawable.Drawable
 import android.os.Build
 import android.util.DisplayMetrics
-import android.util.Log
 import android.view.WindowManager
 import android.widget.Toast
 import com.android.launcher3.R
 import com.android.launcher3.Utilities
 import com.android.launcher3.util.Executors.MAIN_EXECUTOR
-import com.saggitt.omega.theme.AccentColorOption
 import com.saggitt.omega.util.SingletonHolder
 import com.saggitt.omega.util.ceilToInt
 import com.saggitt.omega.util.ensureOnMainThread
@@ -45,6 +42,7 @@ import com.saggitt.omega.util.prefs
 import com.saggitt.omega.util.runOnMainThread
 import com.saggitt.omega.util.safeForEach
 import com.saggitt.omega.util.useApplicationContext
+import java.io.File
 
 class BlurWallpaperProvider(val context: Context) {
 
@@ -59,21 +57,16 @@ class BlurWallpaperProvider(val context: Context) {
                 field = value
             }
         }
-    var placeholder: Bitmap? = null
-        private set(value) {
-            if (field != value) {
-                field?.recycle()
-                field = value
-            }
-        }
-    private var mOffset: Float = 0.6f
 
-    private val mVibrancyPaint = Paint(Paint.FILTER_BITMAP_FLAG or Paint.ANTI_ALIAS_FLAG)
-    private val mColorPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+    /**
+     * The shader of [wallpaper], drawn by all the blur drawables
+     */
+    val blurShader = SharedBlurShader()
 
-    private val mPath = Path()
+    private var mOffset: Float = 0.6f
 
     private var mWallpaperWidth: Int = 0
+    private var mWallpaperHeight: Int = 0
     private var mDisplayHeight: Int = 0
     var wallpaperYOffset: Float = 0f
         private set
@@ -81,9 +74,11 @@ class BlurWallpaperProvider(val context: Context) {
 
     private val mUpdateRunnable = Runnable { updateWallpaper() }
 
-    private val wallpaperFilter = BlurWallpaperFilter(context)
-    private var applyTask: WallpaperFilter.ApplyTask? = null
+    private val wallpaperFilter = BlurWallpaperFilter()
+    private val mCache = BlurWallpaperCache(File(context.cacheDir, "blur"))
+    private var mWallpaperKey: BlurWallpaperCache.Key? = null
 
+    private var updateInProgress = false
     private var updatePending = false
 
     init {
@@ -98,7 +93,7 @@ class BlurWallpaperProvider(val context: Context) {
 
     @SuppressLint("MissingPermission")
     private fun updateWallpaper() {
-        if (applyTask != null) {
+        if (updateInProgress) {
             updatePending = true
             return
         }
@@ -115,15 +110,37 @@ class BlurWallpaperProvider(val context: Context) {
         }
 
         if (!isEnabled) {
+            blurShader.setWallpaper(null, 1f, 1f)
             wallpaper = null
-            placeholder = null
+            mWallpaperKey = null
             return
         }
 
         wallpaperFilter.applyPrefs(prefs)
+        updateDisplayMetrics()
+        val key = BlurWallpaperCache.Key(
+            mWallpaperManager.getWallpaperId(WallpaperManager.FLAG_SYSTEM),
+            wallpaperFilter.blurRadius,
+            VIBRANCY,
+            mDisplayMetrics.widthPixels,
+            mDisplayMetrics.heightPixels
+        )
+        // Only blur again when something the blur depends on changed
+        if (key == mWallpaperKey && wallpaper != null) return
+
+        updateInProgress = true
+        mCache.load(key) { entry ->
+            if (entry != null) {
+                onWallpaperBlurred(key, entry)
+            } else {
+                blurWallpaper(key)
+            }
+        }
+    }
 
-        var wallpaper = try {
-            Utilities.drawableToBitmap(mWallpaperManager.drawable, true) as Bitmap
+    private fun blurWallpaper(key: BlurWallpaperCache.Key) {
+        val sample = try {
+            createSample(mWallpaperManager.drawable!!)
         } catch (e: Exception) {
             prefs.profileBlurEnable.setValue(false)
             runOnMainThread {
@@ -131,28 +148,15 @@ class BlurWallpaperProvider(val context: Context) {
                 Toast.makeText(context, msg, Toast.LENGTH_LONG).show()
                 notifyWallpaperChanged()
             }
+            finishUpdate()
             return
         }
-        wallpaper = scaleToScreenSize(wallpaper)
-        val wallpaperHeight = wallpaper.height
-        wallpaperYOffset = if (wallpaperHeight > mDisplayHeight) {
-            (wallpaperHeight - mDisplayHeight) * 0.5f
-        } else {
-            0f
-        }
 
-        mWallpaperWidth = wallpaper.width
-
-        placeholder = createPlaceholder(wallpaper.width, wallpaper.height)
-        wallpaper = applyVibrancy(wallpaper)
-        Log.d("BWP", "starting blur")
-
-        applyTask = wallpaperFilter.apply(wallpaper).setCallback { result, error ->
+        wallpaperFilter.apply(sample).setCallback { result, error ->
             if (error == null) {
-                this@BlurWallpaperProvider.wallpaper = result
-                Log.d("BWP", "blur done")
-                runOnMainThread(::notifyWallpaperChanged)
-                wallpaper.recycle()
+                val entry = BlurWallpaperCache.Entry(result!!, mWallpaperWidth, mWallpaperHeight)
+                mCache.store(key, entry)
+                onWallpaperBlurred(key, entry)
             } else {
                 if (error is OutOfMemoryError) {
                     prefs.profileBlurEnable.setValue(false)
@@ -161,82 +165,85 @@ class BlurWallpaperProvider(val context: Context) {
                         notifyWallpaperChanged()
                     }
                 }
-                wallpaper.recycle()
-            }
-            applyTask = null
-            if (updatePending) {
-                updatePending = false
-                updateWallpaper()
+                sample.recycle()
+                finishUpdate()
             }
         }
     }
 
+    private fun onWallpaperBlurred(key: BlurWallpaperCache.Key, entry: BlurWallpaperCache.Entry) {
+        mWallpaperWidth = entry.wallpaperWidth
+        mWallpaperHeight = entry.wallpaperHeight
+        wallpaperYOffset = if (mWallpaperHeight > mDisplayHeight) {
+            (mWallpaperHeight - mDisplayHeight) * 0.5f
+        } else {
+            0f
+        }
+        blurShader.setOffset(mOffset)
+        blurShader.setWallpaper(
+            entry.bitmap,
+            mWallpaperWidth.toFloat() / entry.bitmap.width,
+            mWallpaperHeight.toFloat() / entry.bitmap.height
+        )
+        wallpaper = entry.bitmap
+        mWallpaperKey = key
+        notifyWallpaperChanged()
+        finishUpdate()
+    }
+
+    private fun finishUpdate() {
+        updateInProgress = false
+        if (updatePending) {
+            updatePending = false
+            updateWallpaper()
+        }
+    }
+
     private fun notifyWallpaperChanged() {
         mListeners.forEach(Listener::onWallpaperChanged)
     }
 
-    private fun scaleToScreenSize(bitmap: Bitmap): Bitmap {
+    private fun updateDisplayMetrics() {
         val wm = context.getSystemService(Context.WINDOW_SERVICE) as WindowManager
         val display = wm.defaultDisplay
         display?.getRealMetrics(mDisplayMetrics)
+        mDisplayHeight = mDisplayMetrics.heightPixels
+    }
 
+    /**
+     * Draws [drawable], scaled to cover the screen, into a bitmap [DOWN_SAMPLE_FACTOR] times
+     * smaller, with the vibrancy applied in the same pass
+     */
+    private fun createSample(drawable: Drawable): Bitmap {
         val width = mDisplayMetrics.widthPixels
         val height = mDisplayMetrics.heightPixels
-        mDisplayHeight = height
-
-        val widthFactor = width.toFloat() / bitmap.width
-        val heightFactor = height.toFloat() / bitmap.height
-
-        val upscaleFactor = widthFactor.coerceAtLeast(heightFactor)
-        if (upscaleFactor <= 0) {
-            return bitmap
-        }
 
-        val scaledWidth = width.coerceAtLeast((bitmap.width * upscaleFactor).ceilToInt())
-        val scaledHeight = height.coerceAtLeast((bitmap.height * upscaleFactor).ceilToInt())
-        return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, false)
-    }
-
-    private fun createPlaceholder(width: Int, height: Int): Bitmap {
-        val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
-        sCanvas.setBitmap(bitmap)
-
-        mPath.moveTo(0f, 0f)
-        mPath.lineTo(0f, height.toFloat())
-        mPath.lineTo(width.toFloat(), height.toFloat())
-        mPath.lineTo(width.toFloat(), 0f)
-        mColorPaint.xfermode = null
-        mColorPaint.color = tintColor
-        sCanvas.drawPath(mPath, mColorPaint)
-
-        return bitmap
+        val drawableWidth = drawable.intrinsicWidth.takeIf { it > 0 } ?: width
+        val drawableHeight = drawable.intrinsicHeight.takeIf { it > 0 } ?: height
+        val scaleFactor = (width.toFloat() / drawableWidth)
+            .coerceAtLeast(height.toFloat() / drawableHeight)
+        mWallpaperWidth = width.coerceAtLeast((drawableWidth * scaleFactor).ceilToInt())
+        mWallpaperHeight = height.coerceAtLeast((drawableHeight * scaleFactor).ceilToInt())
+
+        val sample = Bitmap.createBitmap(
+            (mWallpaperWidth.toFloat() / DOWN_SAMPLE_FACTOR).ceilToInt(),
+            (mWallpaperHeight.toFloat() / DOWN_SAMPLE_FACTOR).ceilToInt(),
+            Bitmap.Config.ARGB_8888
+        )
+        drawable.colorFilter = ColorMatrixColorFilter(ColorMatrix().apply {
+            setSaturation(VIBRANCY)
+        })
+        drawable.setBounds(0, 0, sample.width, sample.height)
+        sCanvas.setBitmap(sample)
+        drawable.draw(sCanvas)
+        sCanvas.setBitmap(null)
+        return sample
     }
 
-    private val tintColor =
-        AccentColorOption.fromString(prefs.profileAccentColor.getValue()).accentColor
     fun updateAsync() {
         MAIN_EXECUTOR.execute(mUpdateRunnable)
     }
 
-    private fun applyVibrancy(wallpaper: Bitmap): Bitmap {
-        val width = wallpaper.width
-        val height = wallpaper.height
-
-        val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
-        val canvas = Canvas()
-        canvas.setBitmap(bitmap)
-
-        val colorMatrix = ColorMatrix()
-        colorMatrix.setSaturation(1.25f)
-        val filter = ColorMatrixColorFilter(colorMatrix)
-        mVibrancyPaint.colorFilter = filter
-        canvas.drawBitmap(wallpaper, 0f, 0f, mVibrancyPaint)
-
-        wallpaper.recycle()
-
-        return bitmap
-    }
-
     fun addListener(listener: Listener) {
         mListeners.add(listener)
         listener.onOffsetChanged(mOffset)
@@ -270,11 +277,15 @@ class BlurWallpaperProvider(val context: Context) {
         if (availw < 0)
             xPixels += (availw * (offset - .5f) + .5f).toInt()
 
-        mOffset = Utilities.boundToRange(
+        val newOffset = Utilities.boundToRange(
             (-xPixels).toFloat(),
             0f, (mWallpaperWidth - mDisplayMetrics.widthPixels).toFloat()
         )
+        if (newOffset == mOffset) return
+        mOffset = newOffset
 
+        // The drawables only need to redraw, they all sample the shared shader
+        blurShader.setOffset(mOffset)
         for (listener in ArrayList(mListeners)) {
             listener.onOffsetChanged(mOffset)
         }
@@ -290,6 +301,7 @@ class BlurWallpaperProvider(val context: Context) {
     companion object :
         SingletonHolder<BlurWallpaperProvider, Context>(ensureOnMainThread(useApplicationContext(::BlurWallpaperProvider))) {
         const val DOWN_SAMPLE_FACTOR = 8
+        private const val VIBRANCY = 1.25f
 
         var isEnabled: Boolean = false
         private var sEnabledFlag: Int = 0
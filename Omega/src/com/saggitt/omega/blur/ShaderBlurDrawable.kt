@@ -19,39 +19,28 @@
 package com.saggitt.omega.blur
 
 import android.graphics.*
+import kotlin.math.max
+import kotlin.math.min
 
+/**
+ * Draws the part of the blurred wallpaper behind its bounds, from the shader shared by all the
+ * blur drawables. Scrolling the wallpaper only redraws it.
+ */
 class ShaderBlurDrawable internal constructor(
-    private val blurProvider: BlurWallpaperProvider
+    private val blurProvider: BlurWallpaperProvider,
+    private val blurShader: SharedBlurShader = blurProvider.blurShader,
 ) : BlurDrawable() {
 
     private var blurAlpha = 255
     private val blurPaint = Paint(Paint.FILTER_BITMAP_FLAG or Paint.ANTI_ALIAS_FLAG)
-    private var blurBitmap: Bitmap? = null
-        set(value) {
-            if (field != value) {
-                field = value
-                blurPaint.shader =
-                    value?.let { BitmapShader(it, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP) }
-            }
-        }
-    private var blurOffset = 0f
+    private var shaderVersion = -1
+    override var viewOffsetX = 0f
         set(value) {
             if (field != value) {
                 field = value
-                invalidateSelf()
                 blurPathValid = false
             }
         }
-    private var wallpaperOffsetX = 0f
-        set(value) {
-            field = value
-            blurOffset = value + viewOffsetX
-        }
-    override var viewOffsetX = 0f
-        set(value) {
-            field = value
-            blurOffset = wallpaperOffsetX + value
-        }
     private val radii = FloatArray(8)
     override var blurRadii = Radii()
         set(value) {
@@ -79,23 +68,37 @@ class ShaderBlurDrawable internal constructor(
                 }
             }
         }
+    private val clipBounds = Rect()
 
     override fun draw(canvas: Canvas, noRadius: Boolean) {
         if (blurAlpha == 0) return
-        blurBitmap = blurProvider.wallpaper
-        setupBlurPath()
+        val shader = blurShader.shader ?: return
+        if (!canvas.getClipBounds(clipBounds) || !blurBounds.intersects(
+                clipBounds.left.toFloat(), clipBounds.top.toFloat(),
+                clipBounds.right.toFloat(), clipBounds.bottom.toFloat()
+            )
+        ) return
+        if (shaderVersion != blurShader.version) {
+            // Set again for the versions of Android which copy the shader when it is set
+            blurPaint.shader = shader
+            shaderVersion = blurShader.version
+        }
 
-        canvas.translate(-blurOffset, 0f)
+        // The shader is placed for the wallpaper offset, the view offset is applied here
+        canvas.translate(-viewOffsetX, 0f)
         if (noRadius) {
             canvas.drawRect(
-                blurBounds.left + blurOffset, blurBounds.top,
-                blurBounds.right + blurOffset, blurBounds.bottom,
+                max(blurBounds.left, clipBounds.left.toFloat()) + viewOffsetX,
+                max(blurBounds.top, clipBounds.top.toFloat()),
+                min(blurBounds.right, clipBounds.right.toFloat()) + viewOffsetX,
+                min(blurBounds.bottom, clipBounds.bottom.toFloat()),
                 blurPaint
             )
         } else {
+            setupBlurPath()
             canvas.drawPath(blurPath, blurPaint)
         }
-        canvas.translate(blurOffset, 0f)
+        canvas.translate(viewOffsetX, 0f)
     }
 
     private fun setupBlurPath() {
@@ -103,10 +106,11 @@ class ShaderBlurDrawable internal constructor(
 
         blurPath.reset()
         blurPath.addRoundRect(
-            blurBounds.left + blurOffset, blurBounds.top,
-            blurBounds.right + blurOffset, blurBounds.bottom,
+            blurBounds.left + viewOffsetX, blurBounds.top,
+            blurBounds.right + viewOffsetX, blurBounds.bottom,
             radii, Path.Direction.CW
         )
+        blurPathValid = true
     }
 
     override fun setBounds(left: Int, top: Int, right: Int, bottom: Int) {
@@ -138,7 +142,7 @@ class ShaderBlurDrawable internal constructor(
     }
 
     override fun onOffsetChanged(offset: Float) {
-        wallpaperOffsetX = offset
+        invalidateSelf()
     }
 
     override fun getOpacity(): Int {
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.blur
+
+import android.graphics.Bitmap
+import android.graphics.BitmapShader
+import android.graphics.Matrix
+import android.graphics.Shader
+import androidx.annotation.MainThread
+
+/**
+ * The shader of the blurred wallpaper, shared by all the [ShaderBlurDrawable]s. It maps the
+ * downsampled wallpaper to the screen, so scrolling the wallpaper is a single matrix change.
+ */
+class SharedBlurShader {
+
+    var shader: BitmapShader? = null
+        private set
+
+    /**
+     * Changes each time the [shader] or its matrix changes
+     */
+    var version = 0
+        private set
+
+    private val scaleMatrix = Matrix()
+    private val matrix = Matrix()
+    private var offset = 0f
+
+    /**
+     * Samples [wallpaper], which is [scaleX] x [scaleY] times smaller than the wallpaper on screen
+     */
+    @MainThread
+    fun setWallpaper(wallpaper: Bitmap?, scaleX: Float, scaleY: Float) {
+        shader = wallpaper?.let { BitmapShader(it, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP) }
+        scaleMatrix.setScale(scaleX, scaleY)
+        updateMatrix()
+    }
+
+    /**
+     * Scrolls the wallpaper [offset] pixels to the left
+     */
+    @MainThread
+    fun setOffset(offset: Float) {
+        if (this.offset == offset) return
+        this.offset = offset
+        updateMatrix()
+    }
+
+    private fun updateMatrix() {
+        matrix.set(scaleMatrix)
+        matrix.postTranslate(-offset, 0f)
+        shader?.setLocalMatrix(matrix)
+        version++
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.blur
+
+import android.graphics.Bitmap
+import android.os.Process
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import com.android.launcher3.util.Executors.SimpleThreadFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import kotlin.math.abs
+import kotlin.math.min
+
+/**
+ * A separable stack blur of ARGB pixels, on the CPU. Each pass is split in bands of rows or
+ * columns blurred in parallel, on threads of their own: the caller waits for the bands, so they
+ * can't be queued behind the caller on a shared pool. The buffers are kept for the next blur, so
+ * a StackBlur must only be used by one thread at a time.
+ */
+class StackBlur @VisibleForTesting constructor(private val threads: Int) {
+
+    constructor() : this(Runtime.getRuntime().availableProcessors().coerceIn(1, MAX_THREADS))
+
+    init {
+        require(threads in 1..MAX_THREADS) { "Invalid thread count: $threads" }
+    }
+
+    private var pixels = IntArray(0)
+    private var buffer = IntArray(0)
+    private val stacks = Array(threads) { IntArray(0) }
+
+    /**
+     * Blurs [bitmap] in place
+     */
+    @WorkerThread
+    fun blur(bitmap: Bitmap, radius: Int) {
+        val width = bitmap.width
+        val height = bitmap.height
+        if (pixels.size < width * height) {
+            pixels = IntArray(width * height)
+        }
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height)
+        blur(pixels, width, height, radius)
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height)
+    }
+
+    /**
+     * Blurs the first [width] x [height] pixels of [pixels] in place
+     */
+    @WorkerThread
+    fun blur(pixels: IntArray, width: Int, height: Int, radius: Int) {
+        if (radius < 1 || width == 0 || height == 0) return
+        if (buffer.size < width * height) {
+            buffer = IntArray(width * height)
+        }
+        for (i in stacks.indices) {
+            if (stacks[i].size < 2 * radius + 1) {
+                stacks[i] = IntArray(2 * radius + 1)
+            }
+        }
+        val buffer = buffer
+        // The rows into the buffer, then the columns back into the pixels
+        runInBands(height) { from, to, stack ->
+            for (y in from until to) {
+                blurLine(pixels, buffer, y * width, 1, width, radius, stack)
+            }
+        }
+        runInBands(width) { from, to, stack ->
+            for (x in from until to) {
+                blurLine(buffer, pixels, x, width, height, radius, stack)
+            }
+        }
+    }
+
+    private fun runInBands(count: Int, block: (Int, Int, IntArray) -> Unit) {
+        val bands = min(threads, count)
+        val done = CountDownLatch(bands - 1)
+        for (band in 1 until bands) {
+            BAND_EXECUTOR.execute {
+                try {
+                    block(count * band / bands, count * (band + 1) / bands, stacks[band])
+                } finally {
+                    done.countDown()
+                }
+            }
+        }
+        block(0, count / bands, stacks[0])
+        done.await()
+    }
+
+    companion object {
+        private const val MAX_THREADS = 4
+
+        // The bands other than the first one, which is blurred by the caller
+        private val BAND_EXECUTOR: ExecutorService by lazy {
+            Executors.newFixedThreadPool(
+                MAX_THREADS - 1,
+                SimpleThreadFactory("stack-blur-", Process.THREAD_PRIORITY_BACKGROUND)
+            )
+        }
+
+        /**
+         * Blurs [length] pixels of [src] from [start], [step] apart, into the same positions of
+         * [dst]. Each output pixel is the average of the 2 * [radius] + 1 pixels around it,
+         * weighted by their distance, with the edge pixels repeated.
+         */
+        private fun blurLine(
+            src: IntArray, dst: IntArray, start: Int, step: Int, length: Int, radius: Int,
+            stack: IntArray
+        ) {
+            val div = 2 * radius + 1
+            val last = length - 1
+            var sumA = 0
+            var sumR = 0
+            var sumG = 0
+            var sumB = 0
+            // The pixels entering and leaving the window, of the right and left half
+            var inA = 0
+            var inR = 0
+            var inG = 0
+            var inB = 0
+            var outA = 0
+            var outR = 0
+            var outG = 0
+            var outB = 0
+
+            for (i in -radius..radius) {
+                val p = src[start + i.coerceIn(0, last) * step]
+                stack[i + radius] = p
+                val weight = radius + 1 - abs(i)
+                sumA += (p ushr 24) * weight
+                sumR += (p shr 16 and 0xFF) * weight
+                sumG += (p shr 8 and 0xFF) * weight
+                sumB += (p and 0xFF) * weight
+                if (i > 0) {
+                    inA += p ushr 24
+                    inR += p shr 16 and 0xFF
+                    inG += p shr 8 and 0xFF
+                    inB += p and 0xFF
+                } else {
+                    outA += p ushr 24
+                    outR += p shr 16 and 0xFF
+                    outG += p shr 8 and 0xFF
+                    outB += p and 0xFF
+                }
+            }
+
+            val divisor = (radius + 1) * (radius + 1)
+            var pointer = radius
+            for (x in 0 until length) {
+                dst[start + x * step] = (sumA / divisor shl 24) or (sumR / divisor shl 16) or
+                        (sumG / divisor shl 8) or (sumB / divisor)
+
+                sumA -= outA
+                sumR -= outR
+                sumG -= outG
+                sumB -= outB
+
+                // Replace the leftmost pixel of the window by the next one
+                var index = pointer + radius + 1
+                if (index >= div) index -= div
+                var p = stack[index]
+                outA -= p ushr 24
+                outR -= p shr 16 and 0xFF
+                outG -= p shr 8 and 0xFF
+                outB -= p and 0xFF
+
+                p = src[start + min(x + radius + 1, last) * step]
+                stack[index] = p
+                inA += p ushr 24
+                inR += p shr 16 and 0xFF
+                inG += p shr 8 and 0xFF
+                inB += p and 0xFF
+
+                sumA += inA
+                sumR += inR
+                sumG += inG
+                sumB += inB
+
+                // The center pixel moves from the right half to the left half
+                if (++pointer == div) pointer = 0
+                p = stack[pointer]
+                outA += p ushr 24
+                outR += p shr 16 and 0xFF
+                outG += p shr 8 and 0xFF
+                outB += p and 0xFF
+                inA -= p ushr 24
+                inR -= p shr 16 and 0xFF
+                inG -= p shr 8 and 0xFF
+                inB -= p and 0xFF
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import androidx.room.Dao
+import androidx.room.Delete
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import androidx.room.Upsert
+import com.saggitt.omega.data.models.AppGroupComponent
+import com.saggitt.omega.data.models.AppGroupInfo
+
+@Dao
+interface AppGroupsDao {
+
+    @Query("SELECT * FROM AppGroupInfo WHERE category = :category ORDER BY position")
+    fun getGroups(category: String): List<AppGroupInfo>
+
+    @Query(
+        "SELECT AppGroupComponent.* FROM AppGroupComponent INNER JOIN AppGroupInfo "
+                + "ON AppGroupComponent.groupId = AppGroupInfo.id "
+                + "WHERE AppGroupInfo.category = :category"
+    )
+    fun getComponents(category: String): List<AppGroupComponent>
+
+    @Upsert
+    fun upsertGroups(groups: List<AppGroupInfo>)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insertComponents(components: List<AppGroupComponent>)
+
+    @Delete
+    fun deleteComponents(components: List<AppGroupComponent>)
+
+    @Query("DELETE FROM AppGroupInfo WHERE category = :category AND id NOT IN (:ids)")
+    fun deleteGroupsExcept(category: String, ids: List<String>): Int
+
+    @Query("DELETE FROM AppGroupComponent WHERE groupId NOT IN (SELECT id FROM AppGroupInfo)")
+    fun deleteOrphanComponents()
+
+    @Transaction
+    fun update(
+        category: String,
+        ids: List<String>,
+        changedGroups: List<AppGroupInfo>,
+        addedComponents: List<AppGroupComponent>,
+        removedComponents: List<AppGroupComponent>,
+    ) {
+        if (deleteGroupsExcept(category, ids) > 0) {
+            deleteOrphanComponents()
+        }
+        upsertGroups(changedGroups)
+        deleteComponents(removedComponents)
+        insertComponents(addedComponents)
+    }
+}
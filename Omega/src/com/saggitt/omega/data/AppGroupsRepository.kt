@@ -0,0 +1,92 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.data.models.AppGroupComponent
+import com.saggitt.omega.data.models.AppGroupInfo
+
+/**
+ * Stores the drawer tabs and folders. Reads and writes run in order on the model thread, writes
+ * only contain what changed since the last save.
+ */
+class AppGroupsRepository(context: Context) {
+    private val dao = NeoLauncherDb.INSTANCE.get(context).appGroupsDao()
+
+    /**
+     * Loads the groups of [category] with their components and passes them to [onLoaded] on the
+     * main thread
+     */
+    fun loadGroups(
+        category: String,
+        onLoaded: (List<AppGroupInfo>, List<AppGroupComponent>) -> Unit,
+    ) {
+        MODEL_EXECUTOR.execute {
+            val start = SystemClock.elapsedRealtime()
+            val groups = dao.getGroups(category)
+            val components = dao.getComponents(category)
+            Log.d(TAG, "Loaded ${groups.size} groups and ${components.size} components of "
+                    + "$category in ${SystemClock.elapsedRealtime() - start} ms")
+            MAIN_EXECUTOR.execute { onLoaded(groups, components) }
+        }
+    }
+
+    /**
+     * Updates the groups of [category], deleting the ones which are not in [ids]. [onSaved] runs
+     * on the model thread once the changes are written.
+     */
+    fun updateGroups(
+        category: String,
+        ids: List<String>,
+        changedGroups: List<AppGroupInfo>,
+        addedComponents: List<AppGroupComponent>,
+        removedComponents: List<AppGroupComponent>,
+        onSaved: Runnable? = null,
+    ) {
+        MODEL_EXECUTOR.execute {
+            update(category, ids, changedGroups, addedComponents, removedComponents)
+            onSaved?.run()
+        }
+    }
+
+    private fun update(
+        category: String,
+        ids: List<String>,
+        changedGroups: List<AppGroupInfo>,
+        addedComponents: List<AppGroupComponent>,
+        removedComponents: List<AppGroupComponent>,
+    ) {
+        val start = SystemClock.elapsedRealtime()
+        dao.update(category, ids, changedGroups, addedComponents, removedComponents)
+        Log.d(TAG, "Saved ${changedGroups.size} groups and "
+                + "${addedComponents.size + removedComponents.size} component changes of "
+                + "$category in ${SystemClock.elapsedRealtime() - start} ms")
+    }
+
+    companion object {
+        private const val TAG = "AppGroupsRepository"
+
+        val INSTANCE = MainThreadInitializedObject(::AppGroupsRepository)
+    }
+}
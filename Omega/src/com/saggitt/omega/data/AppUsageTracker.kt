@@ -0,0 +1,265 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data
+
+import android.content.Context
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.model.data.AppInfo
+import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.data.models.AppUsage
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.plus
+import java.util.Calendar
+import java.util.TreeSet
+import java.util.concurrent.TimeUnit
+import kotlin.math.log2
+import kotlin.math.pow
+
+/**
+ * Keeps the launches of each app as a score which halves every [HALF_LIFE_MS], with the launches
+ * by hour of day and day of week.
+ *
+ * All scores decay at the same rate, so their order only changes when an app is launched. Each
+ * app is ranked by its score brought back to a common time, and a launch only moves the launched
+ * app in the ranking. Changes are written to the database in batches.
+ */
+class AppUsageTracker @VisibleForTesting constructor(
+    private val dao: AppUsageDao,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+
+    constructor(context: Context) : this(
+        NeoLauncherDb.INSTANCE.get(context).appUsageDao(),
+        CoroutineScope(Dispatchers.IO) + CoroutineName("AppUsageTracker"),
+    )
+
+    private class Usage(val packageName: String) {
+        var score = 0.0
+        var scoreTime = 0L
+        var launchCount = 0
+        val buckets = ShortArray(BUCKET_COUNT)
+
+        /** The score as of time zero, in log scale, which orders the apps at any time */
+        var rank = Double.NEGATIVE_INFINITY
+    }
+
+    private val lock = Any()
+    private val usages = HashMap<String, Usage>()
+    private val ranking = TreeSet(
+        compareByDescending<Usage> { it.rank }.thenBy { it.packageName }
+    )
+    private val dirty = HashSet<String>()
+    private var writeJob: Job? = null
+
+    // The launches recorded before the stored usage is loaded
+    private var pendingLaunches: MutableList<Pair<String, Long>>? = mutableListOf()
+
+    @VisibleForTesting
+    val loadJob = scope.launch { load() }
+
+    private suspend fun load() {
+        val stored = dao.getAll()
+        synchronized(lock) {
+            stored.forEach { row ->
+                val usage = Usage(row.packageName)
+                usage.score = row.score
+                usage.scoreTime = row.scoreTime
+                usage.launchCount = row.launchCount
+                decodeBuckets(row.buckets, usage.buckets)
+                usage.rank = rankOf(usage)
+                usages[row.packageName] = usage
+                ranking.add(usage)
+            }
+            val launches = pendingLaunches!!
+            pendingLaunches = null
+            launches.forEach { (packageName, time) -> recordLocked(packageName, time) }
+        }
+    }
+
+    fun recordLaunch(packageName: String) {
+        synchronized(lock) {
+            val time = clock()
+            pendingLaunches?.let {
+                it.add(packageName to time)
+                return
+            }
+            recordLocked(packageName, time)
+        }
+    }
+
+    private fun recordLocked(packageName: String, time: Long) {
+        val usage = usages.getOrPut(packageName) { Usage(packageName) }
+        ranking.remove(usage)
+        usage.score = decayedScore(usage, time) + 1
+        usage.scoreTime = time
+        usage.launchCount++
+        val calendar = Calendar.getInstance().apply { timeInMillis = time }
+        increment(usage.buckets, calendar.get(Calendar.HOUR_OF_DAY))
+        increment(usage.buckets, HOURS + calendar.get(Calendar.DAY_OF_WEEK) - 1)
+        usage.rank = rankOf(usage)
+        ranking.add(usage)
+
+        dirty.add(packageName)
+        if (writeJob?.isActive != true) {
+            writeJob = scope.launch {
+                delay(WRITE_DELAY_MS)
+                flush()
+            }
+        }
+    }
+
+    /**
+     * Returns the current score of [packageName], 0 if it was never launched
+     */
+    fun getScore(packageName: String): Double = synchronized(lock) {
+        usages[packageName]?.let { decayedScore(it, clock()) } ?: 0.0
+    }
+
+    /**
+     * Returns a value ordering the apps like their current score, which doesn't change over time
+     */
+    fun getRankValue(packageName: String): Double = synchronized(lock) {
+        usages[packageName]?.rank ?: Double.NEGATIVE_INFINITY
+    }
+
+    /**
+     * Returns the current score of [packageName], increased by the share of its launches made
+     * around the current hour and on the current day of the week
+     */
+    fun getContextualScore(packageName: String): Double = synchronized(lock) {
+        val usage = usages[packageName] ?: return 0.0
+        val time = clock()
+        val calendar = Calendar.getInstance().apply { timeInMillis = time }
+        val hour = calendar.get(Calendar.HOUR_OF_DAY)
+        val day = calendar.get(Calendar.DAY_OF_WEEK) - 1
+        val buckets = usage.buckets
+        val hourLaunches = buckets[(hour + HOURS - 1) % HOURS] + buckets[hour] +
+                buckets[(hour + 1) % HOURS]
+        val hourTotal = (0 until HOURS).sumOf { buckets[it].toInt() }
+        val dayTotal = (HOURS until BUCKET_COUNT).sumOf { buckets[it].toInt() }
+        var boost = 1.0
+        if (hourTotal > 0) boost += hourLaunches.toDouble() / hourTotal
+        if (dayTotal > 0) boost += buckets[HOURS + day].toDouble() / dayTotal
+        decayedScore(usage, time) * boost
+    }
+
+    /**
+     * Returns the packages with the highest scores, the highest first
+     */
+    fun getTopPackages(count: Int): List<String> = synchronized(lock) {
+        ranking.asSequence().take(count).map { it.packageName }.toList()
+    }
+
+    /**
+     * Returns all the launched packages, the highest score first
+     */
+    fun getRankedPackages(): List<String> = synchronized(lock) {
+        ranking.map { it.packageName }
+    }
+
+    /**
+     * Returns a comparator ordering apps by decreasing score. It compares the ranks as of this
+     * call, so launches recorded while sorting can't make the order inconsistent.
+     */
+    fun getComparator(): Comparator<AppInfo> {
+        val ranks = synchronized(lock) {
+            usages.values.associateTo(HashMap(usages.size)) { it.packageName to it.rank }
+        }
+        return compareByDescending {
+            ranks[it.componentName.packageName] ?: Double.NEGATIVE_INFINITY
+        }
+    }
+
+    /**
+     * Writes the changed usages to the database
+     */
+    suspend fun flush() {
+        val changed = synchronized(lock) {
+            val rows = dirty.mapNotNull { usages[it] }.map { usage ->
+                AppUsage(
+                    packageName = usage.packageName,
+                    score = usage.score,
+                    scoreTime = usage.scoreTime,
+                    launchCount = usage.launchCount,
+                    buckets = encodeBuckets(usage.buckets),
+                )
+            }
+            dirty.clear()
+            rows
+        }
+        if (changed.isEmpty()) return
+        try {
+            dao.upsert(changed)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save app usage", e)
+        }
+    }
+
+    companion object {
+        private const val TAG = "AppUsageTracker"
+
+        val HALF_LIFE_MS = TimeUnit.DAYS.toMillis(7)
+        private val WRITE_DELAY_MS = TimeUnit.SECONDS.toMillis(10)
+
+        private const val HOURS = 24
+        private const val DAYS = 7
+        const val BUCKET_COUNT = HOURS + DAYS
+
+        val INSTANCE = MainThreadInitializedObject(::AppUsageTracker)
+
+        private fun decayedScore(usage: Usage, time: Long): Double =
+            usage.score * 2.0.pow(-(time - usage.scoreTime).toDouble() / HALF_LIFE_MS)
+
+        private fun rankOf(usage: Usage): Double =
+            log2(usage.score) + usage.scoreTime.toDouble() / HALF_LIFE_MS
+
+        private fun increment(buckets: ShortArray, index: Int) {
+            if (buckets[index] == Short.MAX_VALUE) {
+                // Keep the proportions once a counter is full
+                for (i in buckets.indices) {
+                    buckets[i] = (buckets[i] / 2).toShort()
+                }
+            }
+            buckets[index]++
+        }
+
+        private fun encodeBuckets(buckets: ShortArray): ByteArray {
+            val bytes = ByteArray(buckets.size * 2)
+            buckets.forEachIndexed { i, count ->
+                bytes[2 * i] = count.toByte()
+                bytes[2 * i + 1] = (count.toInt() shr 8).toByte()
+            }
+            return bytes
+        }
+
+        private fun decodeBuckets(bytes: ByteArray, buckets: ShortArray) {
+            for (i in 0 until minOf(buckets.size, bytes.size / 2)) {
+                buckets[i] = ((bytes[2 * i].toInt() and 0xFF) or
+                        (bytes[2 * i + 1].toInt() shl 8)).toShort()
+            }
+        }
+    }
+}
@@ -23,10 +23,15 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.android.launcher3.util.MainThreadInitializedObject
-import com.saggitt.omega.data.models.AppTracker
+import com.saggitt.omega.data.models.AppGroupComponent
+import com.saggitt.omega.data.models.AppGroupInfo
+import com.saggitt.omega.data.models.AppUsage
 import com.saggitt.omega.data.models.GestureItemInfo
 import com.saggitt.omega.data.models.IconOverride
+import com.saggitt.omega.data.models.PeopleFts
 import com.saggitt.omega.data.models.PeopleInfo
 import com.saggitt.omega.data.models.SearchProvider
 import com.saggitt.omega.data.models.SearchProvider.Companion.defaultProviders
@@ -38,12 +43,15 @@ import kotlinx.coroutines.launch
 @Database(
     entities = [
         IconOverride::class,
-        AppTracker::class,
+        AppUsage::class,
         PeopleInfo::class,
+        PeopleFts::class,
         GestureItemInfo::class,
         SearchProvider::class,
+        AppGroupInfo::class,
+        AppGroupComponent::class,
     ],
-    version = 5,
+    version = 8,
     exportSchema = true,
     autoMigrations = [
         AutoMigration(
@@ -56,15 +64,89 @@ import kotlinx.coroutines.launch
 abstract class NeoLauncherDb : RoomDatabase() {
 
     abstract fun iconOverrideDao(): IconOverrideDao
-    abstract fun appTrackerDao(): AppTrackerDao
+    abstract fun appUsageDao(): AppUsageDao
     abstract fun peopleDao(): PeopleDao
     abstract fun gestureItemInfoDao(): GestureItemInfoDao
     abstract fun searchProviderDao(): SearchProviderDao
+    abstract fun appGroupsDao(): AppGroupsDao
 
     companion object {
 
+        private val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `AppGroupInfo` (`id` TEXT NOT NULL, "
+                            + "`category` TEXT NOT NULL, `position` INTEGER NOT NULL, "
+                            + "`type` TEXT NOT NULL, `customizations` TEXT NOT NULL, "
+                            + "PRIMARY KEY(`id`))"
+                )
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS `index_AppGroupInfo_category` "
+                            + "ON `AppGroupInfo` (`category`)"
+                )
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `AppGroupComponent` (`groupId` TEXT NOT NULL, "
+                            + "`customization` TEXT NOT NULL, `component` TEXT NOT NULL, "
+                            + "PRIMARY KEY(`groupId`, `customization`, `component`))"
+                )
+            }
+        }
+
+        private val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "ALTER TABLE `PeopleInfo` ADD COLUMN `usageCount` INTEGER NOT NULL DEFAULT 0"
+                )
+                db.execSQL(
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS `PeopleFts` USING FTS4("
+                            + "`contactName` TEXT NOT NULL, tokenize=unicode61, "
+                            + "content=`PeopleInfo`)"
+                )
+                // The same triggers Room creates for a new database
+                listOf("UPDATE", "DELETE").forEach { event ->
+                    db.execSQL(
+                        "CREATE TRIGGER IF NOT EXISTS "
+                                + "room_fts_content_sync_PeopleFts_BEFORE_$event "
+                                + "BEFORE $event ON `PeopleInfo` BEGIN DELETE FROM `PeopleFts` "
+                                + "WHERE `docid`=OLD.`rowid`; END"
+                    )
+                }
+                listOf("UPDATE", "INSERT").forEach { event ->
+                    db.execSQL(
+                        "CREATE TRIGGER IF NOT EXISTS "
+                                + "room_fts_content_sync_PeopleFts_AFTER_$event "
+                                + "AFTER $event ON `PeopleInfo` BEGIN INSERT INTO "
+                                + "`PeopleFts`(`docid`, `contactName`) "
+                                + "VALUES (NEW.`rowid`, NEW.`contactName`); END"
+                    )
+                }
+                db.execSQL("INSERT INTO `PeopleFts`(`PeopleFts`) VALUES ('rebuild')")
+            }
+        }
+
+        private val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `AppUsage` (`packageName` TEXT NOT NULL, "
+                            + "`score` REAL NOT NULL, `scoreTime` INTEGER NOT NULL, "
+                            + "`launchCount` INTEGER NOT NULL, `buckets` BLOB NOT NULL, "
+                            + "PRIMARY KEY(`packageName`))"
+                )
+                // The lifetime counts start the scores, capped so that old habits fade out
+                db.execSQL(
+                    "INSERT INTO `AppUsage` SELECT `packageName`, MIN(`count`, 20), ?, `count`, "
+                            + "zeroblob(${AppUsageTracker.BUCKET_COUNT * 2}) FROM `AppTracker`",
+                    arrayOf(System.currentTimeMillis())
+                )
+                db.execSQL("DROP TABLE IF EXISTS `AppTracker`")
+            }
+        }
+
+        internal val MIGRATIONS = arrayOf(MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
+
         val INSTANCE = MainThreadInitializedObject { context ->
             Room.databaseBuilder(context, NeoLauncherDb::class.java, "NeoLauncher.db")
+                .addMigrations(*MIGRATIONS)
                 .build()
                 .apply {
                     GlobalScope.launch(Dispatchers.IO) {
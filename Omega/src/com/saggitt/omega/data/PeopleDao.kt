@@ -21,16 +21,66 @@ import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
+import androidx.room.Transaction
 import com.saggitt.omega.data.models.PeopleInfo
 
 @Dao
 interface PeopleDao {
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    suspend fun insert(people: PeopleInfo)
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertNew(people: PeopleInfo): Long
 
-    @Query("SELECT * FROM PeopleInfo WHERE contactName LIKE '%' || :query || '%' LIMIT 5")
-    fun findPeople(query: String): List<PeopleInfo>
+    @Query(
+        "UPDATE PeopleInfo SET contactName = :name, contactPhone = :phone "
+                + "WHERE contactId = :contactId"
+    )
+    suspend fun updateContact(contactId: String, name: String, phone: String)
+
+    /**
+     * Inserts or updates [people], keeping the usage count of known contacts. Replacing the rows
+     * would not run the delete triggers of the name index.
+     */
+    @Transaction
+    suspend fun insert(people: PeopleInfo) {
+        if (insertNew(people) == -1L) {
+            updateContact(people.contactId, people.contactName, people.contactPhone)
+        }
+    }
+
+    @Transaction
+    suspend fun insertAll(people: List<PeopleInfo>) {
+        people.forEach { insert(it) }
+    }
+
+    @Query("SELECT contactId FROM PeopleInfo")
+    suspend fun getContactIds(): List<String>
+
+    @Query("DELETE FROM PeopleInfo WHERE contactId = :contactId")
+    suspend fun delete(contactId: String)
+
+    /**
+     * Replaces the contacts with [people], keeping the usage count of the remaining ones
+     */
+    @Transaction
+    suspend fun sync(people: List<PeopleInfo>) {
+        val ids = people.mapTo(HashSet()) { it.contactId }
+        getContactIds().forEach { if (it !in ids) delete(it) }
+        insertAll(people)
+    }
+
+    /**
+     * Returns the contacts whose name matches the full text [match] expression, the most used
+     * first
+     */
+    @Query(
+        "SELECT PeopleInfo.* FROM PeopleInfo JOIN PeopleFts ON PeopleInfo.rowid = PeopleFts.rowid "
+                + "WHERE PeopleFts MATCH :match "
+                + "ORDER BY PeopleInfo.usageCount DESC, PeopleInfo.contactName LIMIT :limit"
+    )
+    suspend fun findPeople(match: String, limit: Int): List<PeopleInfo>
+
+    @Query("UPDATE PeopleInfo SET usageCount = usageCount + 1 WHERE contactId = :contactId")
+    suspend fun markUsed(contactId: String)
 
     @Query("DELETE FROM peopleinfo")
     suspend fun deleteAll()
@@ -18,12 +18,15 @@
 package com.saggitt.omega.data
 
 import android.content.Context
+import androidx.annotation.VisibleForTesting
 import com.android.launcher3.util.MainThreadInitializedObject
 import com.saggitt.omega.data.models.PeopleInfo
 import kotlinx.coroutines.CoroutineName
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.plus
+import java.util.Locale
 
 class PeopleRepository(context: Context) {
     private val scope = CoroutineScope(Dispatchers.IO) + CoroutineName("PeopleRepository")
@@ -33,8 +36,31 @@ class PeopleRepository(context: Context) {
         dao.insert(people)
     }
 
-    fun findPeople(query: String): List<PeopleInfo?> {
-        return dao.findPeople(query)
+    suspend fun insertAll(people: List<PeopleInfo>) {
+        dao.insertAll(people)
+    }
+
+    /**
+     * Replaces the indexed contacts with [people], keeping how often each one was opened
+     */
+    suspend fun sync(people: List<PeopleInfo>) {
+        dao.sync(people)
+    }
+
+    /**
+     * Returns the contacts with names containing words starting with those of [query]
+     */
+    suspend fun findPeople(query: String, limit: Int = MAX_RESULTS): List<PeopleInfo> {
+        val match = toMatchQuery(query) ?: return emptyList()
+        return dao.findPeople(match, limit)
+    }
+
+    /**
+     * Counts an opening of the contact from the search results, the most opened contacts are
+     * ranked first
+     */
+    fun markUsed(contactId: String) {
+        scope.launch { dao.markUsed(contactId) }
     }
 
     suspend fun deleteAll() {
@@ -42,6 +68,22 @@ class PeopleRepository(context: Context) {
     }
 
     companion object {
+        private const val MAX_RESULTS = 5
+
+        private val NON_WORD = Regex("[^\\p{L}\\p{N}]+")
+
         val INSTANCE = MainThreadInitializedObject(::PeopleRepository)
+
+        /**
+         * Turns [query] into a full text expression matching the names with a word starting with
+         * each of its words, or null if it has no words. Punctuation is dropped so the query
+         * can't use the full text operators.
+         */
+        @VisibleForTesting
+        fun toMatchQuery(query: String): String? = query.lowercase(Locale.ROOT)
+            .split(NON_WORD)
+            .filter { it.isNotEmpty() }
+            .joinToString(" ") { "$it*" }
+            .ifEmpty { null }
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.data.models
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * A drawer tab or folder, with all its customizations except the component sets, which are
+ * stored as [AppGroupComponent] rows.
+ */
+@Entity(indices = [Index(value = ["category"])])
+data class AppGroupInfo(
+    @PrimaryKey val id: String,
+    val category: String,
+    val position: Int,
+    val type: String,
+    val customizations: String,
+)
+
+@Entity(primaryKeys = ["groupId", "customization", "component"])
+data class AppGroupComponent(
+    val groupId: String,
+    val customization: String,
+    val component: String,
+)
@@ -1,6 +1,6 @@
 /*
  * This file is part of Neo Launcher
- * Copyright (c) 2021   Neo Launcher Team
+ * Copyright (c) 2023   Neo Launcher Team
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as
@@ -21,8 +21,16 @@ package com.saggitt.omega.data.models
 import androidx.room.Entity
 import androidx.room.PrimaryKey
 
+/**
+ * The launches of an app, as stored by [com.saggitt.omega.data.AppUsageTracker]
+ */
 @Entity
-data class AppTracker(
+class AppUsage(
     @PrimaryKey val packageName: String,
-    val count: Int,
+    /** The decayed launch score, as of [scoreTime] */
+    val score: Double,
+    val scoreTime: Long,
+    val launchCount: Int,
+    /** The launches by hour of day then by day of week, as little-endian 16-bit counters */
+    val buckets: ByteArray,
 )
@@ -18,7 +18,10 @@
 
 package com.saggitt.omega.data.models
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
 import androidx.room.PrimaryKey
 
 @Entity
@@ -26,4 +29,16 @@ data class PeopleInfo(
     @PrimaryKey val contactId: String,
     val contactName: String,
     val contactPhone: String,
+    /** How many times the contact was opened from the search results */
+    @ColumnInfo(defaultValue = "0") val usageCount: Int = 0,
+)
+
+/**
+ * Full text index of the [PeopleInfo] names, kept in sync by the triggers Room adds for the
+ * content entity.
+ */
+@Fts4(contentEntity = PeopleInfo::class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity
+data class PeopleFts(
+    val contactName: String,
 )
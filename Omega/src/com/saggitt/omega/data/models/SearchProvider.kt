@@ -1,16 +1,13 @@
 package com.saggitt.omega.data.models
 
 import android.content.Context
-import android.util.Log
+import android.net.Uri
 import androidx.annotation.DrawableRes
 import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.PrimaryKey
 import com.android.launcher3.R
-import com.saggitt.omega.util.toArrayList
-import okhttp3.OkHttpClient
-import okhttp3.Request
-import org.json.JSONArray
+import java.util.Locale
 
 @Entity
 data class SearchProvider(
@@ -25,27 +22,12 @@ data class SearchProvider(
     val order: Int,
 ) {
 
-    fun getSuggestions(query: String): List<String> {
-        val client = OkHttpClient()
-        if (suggestionUrl == null) return emptyList()
-        if (query.isEmpty()) return emptyList()
-        val request = Request.Builder()
-            .url(suggestionUrl.format(query))
-            .build()
-        try {
-            val response = client.newCall(request).execute()
-            val result = JSONArray(response.body.string())
-                .getJSONArray(1)
-                .toArrayList<String>()
-                .take(MAX_SUGGESTIONS)
-            response.close()
-            Log.d("WebSearchProvider", "Websearch Query: $query")
-            return result
-        } catch (ex: Exception) {
-            Log.e("WebSearchProvider", ex.message ?: "", ex)
-        }
-
-        return emptyList()
+    /**
+     * Returns the url of the suggestions for [query], or null if the provider has none
+     */
+    fun getSuggestionsUrl(query: String): String? {
+        if (suggestionUrl.isNullOrEmpty() || query.isEmpty()) return null
+        return suggestionUrl.format(Uri.encode(query), Locale.getDefault().language)
     }
 
     companion object {
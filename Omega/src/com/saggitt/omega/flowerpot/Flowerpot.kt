@@ -49,20 +49,22 @@ class Flowerpot(
     private var loaded = false
     val rules: MutableSet<Rule> = mutableSetOf()
     val size get() = rules.size
-    lateinit var apps: FlowerpotApps
+    val apps = FlowerpotApps()
 
+    /**
+     * Makes sure the apps of all pots have been sorted, the engine does them in a single pass
+     */
     fun ensureLoaded() {
+        Manager.getInstance(context).ensureLoaded()
+    }
+
+    internal fun loadRules() {
         if (!loaded) {
-            load()
+            loader(this)
             loaded = true
         }
     }
 
-    private fun load() {
-        loader(this)
-        apps = FlowerpotApps(context, this)
-    }
-
     /**
      * Load all data from
      */
@@ -119,6 +121,7 @@ class Flowerpot(
     class Manager private constructor(private val context: Context) {
 
         private val pots = mutableMapOf<String, Flowerpot>()
+        private val engine = FlowerpotEngine(context)
 
         init {
             loadAssets()
@@ -144,10 +147,17 @@ class Flowerpot(
          */
         fun getPot(name: String, forceLoad: Boolean = true) = pots[name]?.apply {
             if (forceLoad) {
-                ensureLoaded()
+                this@Manager.ensureLoaded()
             }
         }
 
+        /**
+         * Load the rules of every pot and sort the installed apps into them
+         */
+        fun ensureLoaded() {
+            engine.ensureLoaded(pots.values)
+        }
+
         fun getAllPots() = pots.values
 
         companion object :
@@ -0,0 +1,185 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.flowerpot
+
+import android.content.Context
+import android.content.Intent
+import android.content.pm.LauncherApps
+import android.os.SystemClock
+import android.os.UserHandle
+import android.util.Log
+import com.android.launcher3.pm.UserCache
+import com.android.launcher3.util.ComponentKey
+import com.saggitt.omega.flowerpot.rules.CodeRule
+import com.saggitt.omega.flowerpot.rules.Rule
+
+/**
+ * Sorts the installed apps into all pots at once.
+ *
+ * The rules of every pot are compiled into lookup tables, so that each activity is only
+ * listed and checked once, and each intent rule is only resolved once no matter how many pots
+ * use it. Package changes only reclassify the affected package.
+ */
+class FlowerpotEngine(private val context: Context) : LauncherApps.Callback() {
+
+    private val launcherApps = context.getSystemService(LauncherApps::class.java)
+    private var loaded = false
+
+    // Pots matching a package name
+    private val packageRules = HashMap<String, MutableSet<Flowerpot>>()
+
+    // Pots using an intent rule, and the packages resolving it
+    private val intentRules = HashMap<IntentQuery, MutableSet<Flowerpot>>()
+    private val intentMatches = HashMap<IntentQuery, MutableSet<String>>()
+
+    // Pots using a code rule, identified by its name and arguments
+    private val codeRules = HashMap<List<String>, Pair<CodeRule, MutableSet<Flowerpot>>>()
+
+    private val allPots = mutableSetOf<Flowerpot>()
+
+    fun ensureLoaded(pots: Collection<Flowerpot>) {
+        if (loaded) return
+        loaded = true
+
+        val start = SystemClock.elapsedRealtime()
+        pots.forEach {
+            it.loadRules()
+            compile(it)
+        }
+        intentRules.keys.forEach { query ->
+            intentMatches[query] = queryPackages(query, null)
+        }
+        UserCache.INSTANCE.get(context).userProfiles.forEach {
+            addFromPackage(null, it)
+        }
+        launcherApps.registerCallback(this)
+        Log.d(
+            TAG, "Sorted apps into ${pots.size} pots in "
+                    + "${SystemClock.elapsedRealtime() - start} ms"
+        )
+    }
+
+    private fun compile(pot: Flowerpot) {
+        allPots.add(pot)
+        pot.rules.forEach { rule ->
+            when (rule) {
+                is Rule.Package -> packageRules.getOrPut(rule.filter) { mutableSetOf() }.add(pot)
+                is Rule.IntentCategory -> intentRules
+                    .getOrPut(IntentQuery(Intent.ACTION_MAIN, rule.category)) { mutableSetOf() }
+                    .add(pot)
+
+                is Rule.IntentAction -> intentRules
+                    .getOrPut(IntentQuery(rule.action, null)) { mutableSetOf() }
+                    .add(pot)
+
+                is Rule.CodeRule -> codeRules
+                    .getOrPut(listOf(rule.rule, *rule.args)) {
+                        Pair(CodeRule.get(rule.rule, *rule.args), mutableSetOf())
+                    }.second.add(pot)
+
+                else -> Unit
+            }
+        }
+    }
+
+    /**
+     * Returns the packages with an activity resolving the query, limited to [packageName] if set
+     */
+    private fun queryPackages(query: IntentQuery, packageName: String?): MutableSet<String> {
+        val intent = Intent(query.action)
+        query.category?.let { intent.addCategory(it) }
+        packageName?.let { intent.setPackage(it) }
+        return context.packageManager.queryIntentActivities(intent, 0)
+            .mapTo(mutableSetOf()) { it.activityInfo.packageName }
+    }
+
+    private fun addFromPackage(packageName: String?, user: UserHandle) {
+        val matchedPots = mutableSetOf<Flowerpot>()
+        launcherApps.getActivityList(packageName, user).forEach { info ->
+            val appPackage = info.componentName.packageName
+            matchedPots.clear()
+            packageRules[appPackage]?.let { matchedPots.addAll(it) }
+            intentRules.forEach { (query, pots) ->
+                if (intentMatches[query]?.contains(appPackage) == true) {
+                    matchedPots.addAll(pots)
+                }
+            }
+            codeRules.values.forEach { (rule, pots) ->
+                if (!matchedPots.containsAll(pots) && rule.matches(info.applicationInfo)) {
+                    matchedPots.addAll(pots)
+                }
+            }
+            if (matchedPots.isNotEmpty()) {
+                val key = ComponentKey(info.componentName, info.user)
+                matchedPots.forEach { it.apps.add(key) }
+            }
+        }
+    }
+
+    override fun onPackageAdded(packageName: String, user: UserHandle) {
+        intentRules.keys.forEach { query ->
+            val packages = intentMatches.getOrPut(query) { mutableSetOf() }
+            if (queryPackages(query, packageName).isEmpty()) {
+                packages.remove(packageName)
+            } else {
+                packages.add(packageName)
+            }
+        }
+        allPots.forEach { it.apps.removePackage(packageName, user) }
+        addFromPackage(packageName, user)
+    }
+
+    override fun onPackageChanged(packageName: String, user: UserHandle) {
+        onPackageAdded(packageName, user)
+    }
+
+    override fun onPackageRemoved(packageName: String, user: UserHandle) {
+        allPots.forEach { it.apps.removePackage(packageName, user) }
+    }
+
+    override fun onPackagesAvailable(
+        packageNames: Array<out String>,
+        user: UserHandle,
+        replacing: Boolean
+    ) {
+        packageNames.forEach { onPackageAdded(it, user) }
+    }
+
+    override fun onPackagesUnavailable(
+        packageNames: Array<out String>,
+        user: UserHandle,
+        replacing: Boolean
+    ) {
+        packageNames.forEach { onPackageRemoved(it, user) }
+    }
+
+    override fun onPackagesSuspended(packageNames: Array<out String>, user: UserHandle) {
+        packageNames.forEach { onPackageRemoved(it, user) }
+    }
+
+    override fun onPackagesUnsuspended(packageNames: Array<out String>, user: UserHandle) {
+        packageNames.forEach { onPackageAdded(it, user) }
+    }
+
+    private data class IntentQuery(val action: String, val category: String?)
+
+    companion object {
+        private const val TAG = "FlowerpotEngine"
+    }
+}
@@ -22,12 +22,17 @@ import android.content.Context
 import androidx.datastore.preferences.core.stringPreferencesKey
 import com.android.launcher3.Utilities
 import com.android.launcher3.util.ComponentKey
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.saggitt.omega.data.AppGroupsRepository
+import com.saggitt.omega.data.models.AppGroupComponent
+import com.saggitt.omega.data.models.AppGroupInfo
 import com.saggitt.omega.preferences.PreferencesChangeCallback
 import com.saggitt.omega.preferences.StringPref
 import com.saggitt.omega.util.asMap
 import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
+import java.util.UUID
 
 abstract class AppGroups<T : AppGroups.Group>(
     private val manager: AppGroupsManager,
@@ -37,19 +42,26 @@ abstract class AppGroups<T : AppGroups.Group>(
     val context = prefs.context
     var groups = ArrayList<T>()
 
+    private val repository = AppGroupsRepository.INSTANCE.get(context)
+
+    // Groups used to be stored here as JSON, it now only records that they were moved to the
+    // database
     private var groupsDataJson = StringPref(
         titleId = -1,
         key = stringPreferencesKey(category.key),
         dataStore = manager.dataStore,
         defaultValue = "{}",
-        onChange = {
-            prefs.legacyPrefs.savePreference(key = category.key, value = it)
-            prefs.withChangeCallback { callback ->
-                onGroupsChanged(callback)
-            }
-        }
     )
 
+    // Whether the groups were read from the database, saving before would delete them
+    protected var isLoaded = false
+        private set
+    private var storedIds: List<String> = emptyList()
+
+    // Saves requested before the groups were loaded, and the default groups shown until then
+    private var hasPendingSave = false
+    private val placeholderGroups = ArrayList<T>()
+
     var isEnabled =
         manager.categorizationEnabled.getValue() && manager.categorizationType.getValue() == category.key
         private set
@@ -72,16 +84,58 @@ abstract class AppGroups<T : AppGroups.Group>(
 
     abstract fun onGroupsChanged(changeCallback: PreferencesChangeCallback)
 
-    fun saveToJson() {
-        val arr = JSONArray()
-        groups.forEach { group ->
-            arr.put(JSONObject(group.saveCustomizationsInternal(context)))
+    /**
+     * Called on the main thread once the groups stored in the database are loaded, after they
+     * replaced the default groups shown until then
+     */
+    protected open fun onGroupsLoaded() {}
+
+    /**
+     * Saves the groups, only the groups and components which changed since the last save are
+     * written.
+     */
+    fun save() {
+        save(null)
+    }
+
+    /**
+     * Returns true if anything changed, in which case the listeners are notified
+     */
+    private fun save(onSaved: Runnable?): Boolean {
+        if (!isLoaded) {
+            // Saved once the groups are loaded
+            hasPendingSave = true
+            return false
+        }
+        val changedGroups = ArrayList<AppGroupInfo>()
+        val addedComponents = ArrayList<AppGroupComponent>()
+        val removedComponents = ArrayList<AppGroupComponent>()
+        groups.forEachIndexed { position, group ->
+            val info = group.toGroupInfo(category.key, position)
+            if (info != group.storedInfo) {
+                changedGroups.add(info)
+                group.storedInfo = info
+            }
+            group.customizations.entries.filterIsInstance<ComponentsCustomization>().forEach {
+                it.collectChanges(group.storageId, addedComponents, removedComponents)
+            }
         }
+        val ids = groups.map { it.storageId }
+        val changed = changedGroups.isNotEmpty() || addedComponents.isNotEmpty()
+                || removedComponents.isNotEmpty() || ids != storedIds
+        storedIds = ids
+        repository.updateGroups(
+            category.key, ids, changedGroups, addedComponents, removedComponents, onSaved
+        )
+        if (changed) {
+            notifyGroupsChanged()
+        }
+        return changed
+    }
 
-        val obj = JSONObject()
-        obj.put(KEY_VERSION, currentVersion)
-        obj.put(KEY_GROUPS, arr)
-        groupsDataJson.setValue(obj.toString())
+    private fun notifyGroupsChanged() {
+        val callback = prefs.withChangeCallback { onGroupsChanged(it) }
+        MAIN_EXECUTOR.execute { callback() }
     }
 
     fun getGroups(): List<T> {
@@ -148,16 +202,60 @@ abstract class AppGroups<T : AppGroups.Group>(
 
     protected fun loadGroups() {
         groups.clear()
-        val arr = loadGroupsArray()
+        if (!isStoredAsJson()) {
+            // The default groups are shown until the stored ones are read
+            addDefaultGroups(emptySet())
+            placeholderGroups.addAll(groups)
+            repository.loadGroups(category.key, ::onGroupsLoaded)
+            return
+        }
         val used = mutableSetOf<GroupCreator<T>>()
+        val arr = loadGroupsArray()
         (0 until arr.length())
             .map { arr.getJSONObject(it) }
             .mapNotNullTo(groups) { group ->
-                val type = if (group.has(KEY_TYPE)) group.getString(KEY_TYPE) else TYPE_UNDEFINED
+                val type =
+                    if (group.has(KEY_TYPE)) group.getString(KEY_TYPE) else TYPE_UNDEFINED
                 val creator = getGroupCreator(type)
                 used.add(creator)
-                creator.createGroup(context)!!.apply { loadCustomizations(context, group.asMap()) }
+                creator.createGroup(context)!!
+                    .apply { loadCustomizations(context, group.asMap()) }
             }
+        addDefaultGroups(used)
+        isLoaded = true
+        // The JSON is only marked as migrated once the groups are written
+        save {
+            groupsDataJson.setValue(JSONObject().put(KEY_VERSION, VERSION_DATABASE).toString())
+        }
+    }
+
+    private fun onGroupsLoaded(infos: List<AppGroupInfo>, components: List<AppGroupComponent>) {
+        val componentsByGroup = components.groupBy { it.groupId }
+        val used = mutableSetOf<GroupCreator<T>>()
+        // Keep the groups added while loading
+        val addedGroups = groups.filter { group -> placeholderGroups.none { it === group } }
+        placeholderGroups.clear()
+        groups.clear()
+        infos.mapNotNullTo(groups) { info ->
+            val creator = getGroupCreator(info.type)
+            used.add(creator)
+            creator.createGroup(context)!!
+                .apply { loadFromGroupInfo(info, componentsByGroup[info.id].orEmpty()) }
+        }
+        addedGroups.forEach { used.add(getGroupCreator(it.type)) }
+        groups.addAll(addedGroups)
+        addDefaultGroups(used)
+        storedIds = infos.map { it.id }
+        isLoaded = true
+        onGroupsLoaded()
+        val saved = (hasPendingSave || addedGroups.isNotEmpty()) && save(null)
+        hasPendingSave = false
+        if (!saved) {
+            notifyGroupsChanged()
+        }
+    }
+
+    private fun addDefaultGroups(used: Set<GroupCreator<T>>) {
         getDefaultCreators().asReversed().forEach { creator ->
             if (creator !in used) {
                 creator.createGroup(context)?.let { groups.add(0, it) }
@@ -165,6 +263,26 @@ abstract class AppGroups<T : AppGroups.Group>(
         }
     }
 
+    private fun isStoredAsJson(): Boolean {
+        return try {
+            JSONObject(groupsDataJson.getValue()).optInt(KEY_VERSION, 0) < VERSION_DATABASE
+        } catch (_: JSONException) {
+            true
+        }
+    }
+
+    private fun Group.loadFromGroupInfo(info: AppGroupInfo, components: List<AppGroupComponent>) {
+        storageId = info.id
+        storedInfo = info
+        loadCustomizations(context, JSONObject(info.customizations).asMap())
+        customizations.entries.filterIsInstance<ComponentsCustomization>().forEach { entry ->
+            entry.loadStored(
+                context,
+                components.filter { it.customization == entry.key }.map { it.component }
+            )
+        }
+    }
+
     open class Group(val type: String, val context: Context, title: String) {
         private val defaultTitle = title
 
@@ -180,6 +298,9 @@ abstract class AppGroups<T : AppGroups.Group>(
         open val summary: String?
             get() = null
 
+        internal var storageId: String = UUID.randomUUID().toString()
+        internal var storedInfo: AppGroupInfo? = null
+
         init {
             addCustomization(_title)
         }
@@ -205,6 +326,19 @@ abstract class AppGroups<T : AppGroups.Group>(
             }
         }
 
+        /**
+         * Returns the database row of this group, the component sets are stored separately
+         */
+        internal fun toGroupInfo(category: String, position: Int): AppGroupInfo {
+            val obj = JSONObject()
+            customizations.entries.forEach { entry ->
+                if (entry !is ComponentsCustomization) {
+                    entry.saveToJson(context)?.let { obj.put(entry.key, it) }
+                }
+            }
+            return AppGroupInfo(storageId, category, position, type, obj.toString())
+        }
+
         fun cloneCustomizations(): CustomizationMap {
             return CustomizationMap(customizations)
         }
@@ -212,7 +346,7 @@ abstract class AppGroups<T : AppGroups.Group>(
 
     abstract class Customization<T : Any, S : Any>(val key: String, protected val default: T) {
 
-        var value: T? = null
+        open var value: T? = null
 
         fun value() = value ?: default
 
@@ -310,6 +444,35 @@ abstract class AppGroups<T : AppGroups.Group>(
     open class ComponentsCustomization(key: String, default: MutableSet<ComponentKey>) :
         SetCustomization<ComponentKey, String>(key, default) {
 
+        // The components as they are in the database
+        private var storedComponents: Set<String> = emptySet()
+
+        /**
+         * Sets the components read from the database
+         */
+        fun loadStored(context: Context, components: List<String>) {
+            storedComponents = components.toSet()
+            value = components.mapTo(HashSet()) { unflatten(context, it) }
+        }
+
+        /**
+         * Adds the components which were added or removed since the last call to the lists
+         */
+        fun collectChanges(
+            groupId: String,
+            added: MutableList<AppGroupComponent>,
+            removed: MutableList<AppGroupComponent>,
+        ) {
+            val current = value().mapTo(HashSet()) { flatten(it) }
+            current.forEach {
+                if (it !in storedComponents) added.add(AppGroupComponent(groupId, key, it))
+            }
+            storedComponents.forEach {
+                if (it !in current) removed.add(AppGroupComponent(groupId, key, it))
+            }
+            storedComponents = current
+        }
+
         override fun loadFromJson(context: Context, obj: JSONArray?) {
             super.loadFromJson(context, obj)
             if (value == null) {
@@ -374,9 +537,13 @@ abstract class AppGroups<T : AppGroups.Group>(
     }
 
     companion object {
-
         const val currentVersion = 2
 
+        /**
+         * Version recorded in the legacy JSON once the groups were moved to the database
+         */
+        const val VERSION_DATABASE = 3
+
         const val KEY_VERSION = "version"
         const val KEY_GROUPS = "tabs"
 
@@ -49,7 +49,7 @@ class DrawerFolderInfo(private val drawerFolder: DrawerFolders.Folder) : FolderI
     fun onCloseComplete() {
         if (changed) {
             changed = false
-            drawerFolder.context.prefs.drawerAppGroupsManager.drawerFolders.saveToJson()
+            drawerFolder.context.prefs.drawerAppGroupsManager.drawerFolders.save()
         }
     }
 
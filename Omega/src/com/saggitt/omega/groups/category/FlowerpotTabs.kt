@@ -22,6 +22,7 @@ import android.content.Context
 import com.android.launcher3.R
 import com.android.launcher3.util.ComponentKey
 import com.saggitt.omega.flowerpot.Flowerpot
+import com.saggitt.omega.flowerpot.FlowerpotApps
 import com.saggitt.omega.groups.AppGroupsManager
 import com.saggitt.omega.groups.CustomFilter
 import com.saggitt.omega.groups.Filter
@@ -32,6 +33,20 @@ class FlowerpotTabs(manager: AppGroupsManager) :
     private val flowerpotManager = Flowerpot.Manager.getInstance(context)
 
     init {
+        // Otherwise synced once the stored tabs are loaded
+        if (isLoaded) {
+            syncPots()
+        }
+    }
+
+    override fun onGroupsLoaded() {
+        syncPots()
+    }
+
+    /**
+     * Adds a tab for each new flowerpot and removes the tabs of the flowerpots which are gone
+     */
+    private fun syncPots() {
         val pots = flowerpotManager.getAllPots().toMutableSet()
         val existingGroups = getGroups().filter { group ->
             if (group !is FlowerpotTab) {
@@ -49,7 +64,7 @@ class FlowerpotTabs(manager: AppGroupsManager) :
             }
         })
         setGroups(existingGroups)
-        saveToJson()
+        save()
     }
 
     override fun getGroupCreator(type: String): GroupCreator<Tab> {
@@ -85,10 +100,13 @@ class FlowerpotTabs(manager: AppGroupsManager) :
                 return context.resources.getQuantityString(R.plurals.tab_apps_count, size, size)
             }
 
-        fun getMatches(): Set<ComponentKey> {
-            pot.ensureLoaded()
-            return pot.apps.matches
-        }
+        val apps: FlowerpotApps
+            get() {
+                pot.ensureLoaded()
+                return pot.apps
+            }
+
+        fun getMatches(): Set<ComponentKey> = apps.matches
 
         fun getFilter(context: Context): Filter<*> {
             return CustomFilter(context, getMatches())
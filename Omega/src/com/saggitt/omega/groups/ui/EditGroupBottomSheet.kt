@@ -397,13 +397,13 @@ fun EditGroupBottomSheet(
 
                     when (category) {
                         AppGroupsManager.Category.FOLDER -> {
-                            prefs.drawerAppGroupsManager.drawerFolders.saveToJson()
+                            prefs.drawerAppGroupsManager.drawerFolders.save()
                         }
 
                         AppGroupsManager.Category.TAB,
                         AppGroupsManager.Category.FLOWERPOT,
                         -> {
-                            prefs.drawerAppGroupsManager.drawerTabs.saveToJson()
+                            prefs.drawerAppGroupsManager.drawerTabs.save()
                         }
 
                         else -> {}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.logging
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.ceil
+
+/**
+ * Counts latencies in buckets of logarithmic size, like an HDR histogram: the values below
+ * [SUB_BUCKETS] have a bucket each, and every power of two above is split in [SUB_BUCKETS]
+ * buckets, which keeps the percentiles within about 6% of the recorded values. Recording only
+ * updates atomic counters.
+ */
+class LatencyHistogram {
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val sum = AtomicLong()
+    private val highest = AtomicLong()
+
+    fun record(value: Long) {
+        val clamped = value.coerceIn(0, MAX_VALUE)
+        buckets.incrementAndGet(bucketOf(clamped))
+        sum.addAndGet(clamped)
+        var current = highest.get()
+        while (clamped > current && !highest.compareAndSet(current, clamped)) {
+            current = highest.get()
+        }
+    }
+
+    val count: Long
+        get() = (0 until BUCKET_COUNT).sumOf { buckets.get(it) }
+
+    val max: Long
+        get() = highest.get()
+
+    val mean: Double
+        get() = count.let { if (it == 0L) 0.0 else sum.get().toDouble() / it }
+
+    /**
+     * Returns the highest value of the bucket holding the given fraction of the values, at most
+     * the maximum value
+     */
+    fun percentile(fraction: Double): Long {
+        val total = count
+        if (total == 0L) return 0
+        val rank = ceil(fraction * total).toLong().coerceIn(1, total)
+        var seen = 0L
+        for (bucket in 0 until BUCKET_COUNT) {
+            seen += buckets.get(bucket)
+            if (seen >= rank) return minOf(upperBound(bucket), highest.get())
+        }
+        return highest.get()
+    }
+
+    /**
+     * Calls [action] with the bounds and count of each non empty bucket
+     */
+    fun forEachBucket(action: (lower: Long, upper: Long, count: Long) -> Unit) {
+        for (bucket in 0 until BUCKET_COUNT) {
+            val count = buckets.get(bucket)
+            if (count > 0) action(lowerBound(bucket), upperBound(bucket), count)
+        }
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 4
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        /** The highest value recorded, higher ones are recorded as it */
+        const val MAX_VALUE = (1L shl 31) - 1
+        private val BUCKET_COUNT = bucketOf(MAX_VALUE) + 1
+
+        fun bucketOf(value: Long): Int {
+            if (value < SUB_BUCKETS) return value.toInt()
+            val shift = 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS
+            return SUB_BUCKETS + shift * SUB_BUCKETS + ((value shr shift) - SUB_BUCKETS).toInt()
+        }
+
+        fun lowerBound(bucket: Int): Long {
+            if (bucket < SUB_BUCKETS) return bucket.toLong()
+            val shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS
+            val mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS
+            return mantissa.toLong() shl shift
+        }
+
+        fun upperBound(bucket: Int): Long = lowerBound(bucket + 1) - 1
+    }
+}
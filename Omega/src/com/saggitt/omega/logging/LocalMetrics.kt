@@ -0,0 +1,191 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.logging
+
+import android.util.AtomicFile
+import android.util.Log
+import com.android.launcher3.logging.StatsLogManager.EventEnum
+import com.android.launcher3.logging.StatsLogManager.LauncherEvent
+import com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent
+import com.android.launcher3.logging.StatsLogManager.LauncherRankingEvent
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.File
+import java.io.FileOutputStream
+import java.io.PrintWriter
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Records the launcher events on the device: a count per event, a [LatencyHistogram] per
+ * latency event, and the last [RING_SIZE] events in a ring buffer. Recording only updates atomic
+ * counters and arrays, without locks or allocations once an event was seen, so it can be called
+ * from any thread on the hot paths. The ring buffer is not synchronized with its readers, which
+ * may see an entry being written.
+ */
+class LocalMetrics {
+    private val counts = AtomicLongArray(MAX_INDEXED_ID + 1)
+    private val otherCounts = ConcurrentHashMap<Int, AtomicLong>()
+    private val latencies = ConcurrentHashMap<Int, LatencyHistogram>()
+
+    private val next = AtomicLong()
+    private val ringIds = IntArray(RING_SIZE)
+    private val ringTimes = LongArray(RING_SIZE)
+    private val ringValues = LongArray(RING_SIZE)
+
+    fun logEvent(event: EventEnum) {
+        record(event.id, NO_VALUE)
+    }
+
+    fun logLatency(event: EventEnum, latencyMs: Long) {
+        val id = event.id
+        (latencies[id] ?: latencies.computeIfAbsent(id) { LatencyHistogram() })
+            .record(latencyMs)
+        record(id, latencyMs)
+    }
+
+    private fun record(id: Int, value: Long) {
+        if (id in 0..MAX_INDEXED_ID) {
+            counts.incrementAndGet(id)
+        } else {
+            (otherCounts[id] ?: otherCounts.computeIfAbsent(id) { AtomicLong() })
+                .incrementAndGet()
+        }
+        val slot = (next.getAndIncrement() and RING_MASK).toInt()
+        ringIds[slot] = id
+        ringValues[slot] = value
+        ringTimes[slot] = System.currentTimeMillis()
+    }
+
+    fun getCount(event: EventEnum): Long = event.id.let { id ->
+        if (id in 0..MAX_INDEXED_ID) counts.get(id) else otherCounts[id]?.get() ?: 0
+    }
+
+    fun getLatencies(event: EventEnum): LatencyHistogram? = latencies[event.id]
+
+    private fun forEachCount(action: (id: Int, count: Long) -> Unit) {
+        for (id in 0..MAX_INDEXED_ID) {
+            val count = counts.get(id)
+            if (count > 0) action(id, count)
+        }
+        otherCounts.toSortedMap().forEach { (id, count) -> action(id, count.get()) }
+    }
+
+    /**
+     * Calls [action] with the recorded events, the oldest first
+     */
+    private fun forEachRecent(action: (time: Long, id: Int, value: Long) -> Unit) {
+        val end = next.get()
+        for (index in maxOf(0, end - RING_SIZE) until end) {
+            val slot = (index and RING_MASK).toInt()
+            action(ringTimes[slot], ringIds[slot], ringValues[slot])
+        }
+    }
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println(prefix + "LocalMetrics:")
+        writer.println("$prefix\tevents:")
+        forEachCount { id, count -> writer.println("$prefix\t\t${eventName(id)}=$count") }
+        writer.println("$prefix\tlatencies (ms):")
+        latencies.toSortedMap().forEach { (id, histogram) ->
+            writer.println(
+                "$prefix\t\t${eventName(id)} count=${histogram.count} " +
+                        "p50=${histogram.percentile(0.5)} p90=${histogram.percentile(0.9)} " +
+                        "p99=${histogram.percentile(0.99)} max=${histogram.max} " +
+                        "mean=%.1f".format(Locale.ROOT, histogram.mean)
+            )
+        }
+        writer.println("$prefix\trecent events:")
+        val format = SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.ROOT)
+        forEachRecent { time, id, value ->
+            val latency = if (value == NO_VALUE) "" else " ${value}ms"
+            writer.println("$prefix\t\t${format.format(Date(time))} ${eventName(id)}$latency")
+        }
+    }
+
+    fun toJson(): JSONObject {
+        val events = JSONObject()
+        forEachCount { id, count -> events.put(eventName(id), count) }
+        val histograms = JSONObject()
+        latencies.toSortedMap().forEach { (id, histogram) ->
+            val buckets = JSONArray()
+            histogram.forEachBucket { lower, upper, count ->
+                buckets.put(JSONArray().put(lower).put(upper).put(count))
+            }
+            histograms.put(eventName(id), JSONObject()
+                .put("count", histogram.count)
+                .put("p50", histogram.percentile(0.5))
+                .put("p90", histogram.percentile(0.9))
+                .put("p99", histogram.percentile(0.99))
+                .put("max", histogram.max)
+                .put("mean", histogram.mean)
+                .put("buckets", buckets))
+        }
+        val recent = JSONArray()
+        forEachRecent { time, id, value ->
+            val entry = JSONObject().put("time", time).put("event", eventName(id))
+            if (value != NO_VALUE) entry.put("latency", value)
+            recent.put(entry)
+        }
+        return JSONObject()
+            .put("events", events)
+            .put("latencies", histograms)
+            .put("recent", recent)
+    }
+
+    /**
+     * Writes the metrics to the file as JSON, returns whether it was written
+     */
+    fun export(file: File): Boolean {
+        val atomicFile = AtomicFile(file)
+        var stream: FileOutputStream? = null
+        return try {
+            stream = atomicFile.startWrite()
+            stream.write(toJson().toString(2).toByteArray())
+            atomicFile.finishWrite(stream)
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to export the metrics", e)
+            stream?.let { atomicFile.failWrite(it) }
+            false
+        }
+    }
+
+    companion object {
+        private const val TAG = "LocalMetrics"
+
+        /** The events with higher ids are counted in a map */
+        private const val MAX_INDEXED_ID = 2047
+        const val RING_SIZE = 256
+        private const val RING_MASK = RING_SIZE - 1L
+        private const val NO_VALUE = -1L
+
+        private val EVENT_NAMES: Map<Int, String> by lazy {
+            (LauncherEvent.values().asList<EventEnum>() + LauncherLatencyEvent.values() +
+                    LauncherRankingEvent.values())
+                .associate { it.id to (it as Enum<*>).name }
+        }
+
+        private fun eventName(id: Int) = EVENT_NAMES[id] ?: "event_$id"
+    }
+}
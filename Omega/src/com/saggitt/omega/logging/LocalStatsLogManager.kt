@@ -0,0 +1,79 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.logging
+
+import android.content.Context
+import com.android.launcher3.logging.StatsLogManager
+import java.io.File
+import java.io.PrintWriter
+
+/**
+ * Records the launcher events and latencies in [METRICS], to be read with
+ * `adb shell dumpsys activity com.saggitt.omega.NeoLauncher`
+ */
+class LocalStatsLogManager(@Suppress("UNUSED_PARAMETER") context: Context) : StatsLogManager() {
+
+    override fun createLogger(): StatsLogger = EventLogger
+
+    override fun createLatencyLogger(): StatsLatencyLogger = LatencyLogger()
+
+    override fun createImpressionLogger(): StatsImpressionLogger = ImpressionLogger
+
+    override fun dump(prefix: String, writer: PrintWriter) {
+        METRICS.dump(prefix, writer)
+    }
+
+    override fun exportMetrics(file: File) = METRICS.export(file)
+
+    // Only the events are recorded, the loggers ignore their other fields
+    private object EventLogger : StatsLogger {
+        override fun log(event: EventEnum) {
+            METRICS.logEvent(event)
+        }
+    }
+
+    private object ImpressionLogger : StatsImpressionLogger {
+        override fun log(event: EventEnum) {
+            METRICS.logEvent(event)
+        }
+    }
+
+    private class LatencyLogger : StatsLatencyLogger {
+        private var latencyMs = -1L
+
+        override fun withLatency(latencyInMillis: Long): StatsLatencyLogger {
+            latencyMs = latencyInMillis
+            return this
+        }
+
+        override fun log(event: EventEnum) {
+            if (latencyMs >= 0) {
+                METRICS.logLatency(event, latencyMs)
+            } else {
+                METRICS.logEvent(event)
+            }
+        }
+    }
+
+    companion object {
+        /** The metrics of all the managers of the process */
+        @JvmField
+        val METRICS = LocalMetrics()
+    }
+}
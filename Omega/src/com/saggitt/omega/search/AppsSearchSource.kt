@@ -0,0 +1,63 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import android.content.Context
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.model.AllAppsList
+import com.android.launcher3.model.BaseModelUpdateTask
+import com.android.launcher3.model.BgDataModel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlin.coroutines.resume
+
+/**
+ * Matches the titles of the apps, on the model thread
+ */
+class AppsSearchSource(context: Context) : SearchSource {
+
+    private val algorithm = NeoAppSearchAlgorithm(context)
+
+    override val name = "apps"
+
+    // The model thread can be busy loading
+    override val deadlineMs = 1000L
+
+    override fun search(query: String): Flow<SearchSourceResult> = flow {
+        emit(searchApps(query))
+    }
+
+    private suspend fun searchApps(query: String) = suspendCancellableCoroutine { cont ->
+        algorithm.mAppState.model.enqueueModelUpdateTask(object : BaseModelUpdateTask() {
+            override fun execute(app: LauncherAppState, dataModel: BgDataModel, apps: AllAppsList) {
+                if (!cont.isActive) return
+                val items = algorithm.getSearchResult(apps.data, query)
+                // The results are already ordered by relevance
+                cont.resume(SearchSourceResult(items.mapIndexed { i, item ->
+                    ScoredItem(item, (items.size - i).toFloat())
+                }))
+            }
+        })
+    }
+
+    override fun destroy() {
+        algorithm.destroy()
+    }
+}
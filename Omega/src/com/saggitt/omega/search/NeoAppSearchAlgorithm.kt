@@ -3,7 +3,6 @@ package com.saggitt.omega.search
 import android.content.Context
 import androidx.lifecycle.asLiveData
 import com.android.launcher3.LauncherAppState
-import com.android.launcher3.Utilities
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
 import com.android.launcher3.allapps.search.DefaultAppSearchAlgorithm
 import com.android.launcher3.model.AllAppsList
@@ -40,7 +39,6 @@ class NeoAppSearchAlgorithm(val context: Context) : DefaultAppSearchAlgorithm(co
         mAppState.model.enqueueModelUpdateTask(object : BaseModelUpdateTask() {
             override fun execute(app: LauncherAppState, dataModel: BgDataModel, apps: AllAppsList) {
                 val result = getSearchResult(apps.data, query)
-                var suggestions = emptyList<String>()
 
                 /*if (prefs.searchContacts.onGetValue()) { TODO
                     val repository = PeopleRepository.INSTANCE.get(app.context)
@@ -65,29 +63,13 @@ class NeoAppSearchAlgorithm(val context: Context) : DefaultAppSearchAlgorithm(co
                 }*/
 
                 mResultHandler.post {
-                    callback?.onSearchResult(
-                        query,
-                        result,
-                        suggestions
-                    )
+                    callback?.onSearchResult(query, result, emptyList())
                 }
-
-                /*if (callback!!.showWebResult()) { TODO
-                    suggestions = getSuggestions(query)
-                    callback.setShowWebResult(false)
-                }
-                mResultHandler.post {
-                    callback.onSearchResult(
-                        query,
-                        result,
-                        suggestions
-                    )
-                }*/
             }
         })
     }
 
-    private fun getSearchResult(apps: MutableList<AppInfo>, query: String): ArrayList<AdapterItem> {
+    fun getSearchResult(apps: MutableList<AppInfo>, query: String): ArrayList<AdapterItem> {
         return if (prefs.searchFuzzy.getValue()) {
             getFuzzySearchResult(apps, query)
         } else {
@@ -158,15 +140,4 @@ class NeoAppSearchAlgorithm(val context: Context) : DefaultAppSearchAlgorithm(co
         }
         return result
     }
-
-    private fun getSuggestions(query: String): List<String?> {
-        if (!Utilities.getOmegaPrefs(context).searchGlobal.getValue()) {
-            return emptyList<String>()
-        }
-        val provider = SearchProviderController
-            .getInstance(context).searchProvider
-        return if (!provider.suggestionUrl.isNullOrEmpty()) {
-            provider.getSuggestions(query)
-        } else emptyList<String>()
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import android.Manifest
+import android.content.ActivityNotFoundException
+import android.content.Context
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.database.ContentObserver
+import android.net.Uri
+import android.provider.ContactsContract
+import android.util.Log
+import android.widget.TextView
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
+import com.saggitt.omega.data.PeopleRepository
+import com.saggitt.omega.data.models.PeopleInfo
+import com.saggitt.omega.util.prefs
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+
+/**
+ * Matches the words of the contact names, the most opened contacts first
+ */
+class PeopleSearchSource(private val context: Context) : SearchSource {
+
+    private val repository = PeopleRepository.INSTANCE.get(context)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    // The contacts are indexed on the first query, then again on the next query after they
+    // changed or after the last sync failed. The sync isn't cancelled with the query that
+    // started it.
+    private var sync: Deferred<Unit>? = null
+    private var isStale = true
+
+    private val contactsObserver = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) {
+            markStale()
+        }
+    }
+
+    init {
+        context.contentResolver.registerContentObserver(
+            ContactsContract.Contacts.CONTENT_URI, true, contactsObserver
+        )
+    }
+
+    override val name = "contacts"
+
+    // Indexing the contacts on the first query can take a while
+    override val deadlineMs = 2000L
+
+    override fun isEnabled() = context.prefs.searchContacts.getValue()
+            && context.checkSelfPermission(Manifest.permission.READ_CONTACTS) ==
+            PackageManager.PERMISSION_GRANTED
+
+    override fun search(query: String): Flow<SearchSourceResult> = flow {
+        currentSync().await()
+        val contacts = repository.findPeople(query)
+        // The contacts are already ordered by usage
+        emit(SearchSourceResult(contacts.mapIndexed { i, info ->
+            ScoredItem(AdapterItem.asContact(info), (contacts.size - i).toFloat())
+        }))
+    }
+
+    override fun destroy() {
+        context.contentResolver.unregisterContentObserver(contactsObserver)
+        scope.cancel()
+    }
+
+    @Synchronized
+    private fun markStale() {
+        isStale = true
+    }
+
+    /**
+     * Returns the current sync of the contacts, starting a new one if the index is stale or if
+     * the last sync failed
+     */
+    @Synchronized
+    private fun currentSync(): Deferred<Unit> {
+        val last = sync
+        if (last != null && !isStale && !last.isCancelled) return last
+        isStale = false
+        return scope.async {
+            // Don't write the index concurrently with a sync started before the change
+            last?.join()
+            repository.sync(PeopleItems(context).getPeopleInformation())
+        }.also { sync = it }
+    }
+
+    companion object {
+        private const val TAG = "PeopleSearchSource"
+
+        /**
+         * Shows [info] in [view], which opens the contact when clicked
+         */
+        @JvmStatic
+        fun bindContactView(view: TextView, info: PeopleInfo) {
+            view.text = info.contactName
+            view.setOnClickListener { v ->
+                val uri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_URI, info.contactId)
+                val intent = Intent(Intent.ACTION_VIEW, uri)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
+                try {
+                    v.context.startActivity(intent)
+                    PeopleRepository.INSTANCE.get(v.context).markUsed(info.contactId)
+                } catch (e: ActivityNotFoundException) {
+                    Log.e(TAG, "Unable to open contact ${info.contactId}", e)
+                }
+            }
+        }
+    }
+}
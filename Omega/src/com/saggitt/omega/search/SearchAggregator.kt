@@ -0,0 +1,192 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.MainThread
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
+import com.android.launcher3.allapps.BaseAllAppsAdapter.VIEW_TYPE_ALL_APPS_DIVIDER
+import com.android.launcher3.logging.StatsLogManager
+import com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_SEARCH_FIRST_RESULT
+import com.android.launcher3.search.SearchAlgorithm
+import com.android.launcher3.search.SearchCallback
+import com.saggitt.omega.logging.LatencyHistogram
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import java.io.PrintWriter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicIntegerArray
+
+/**
+ * Searches all the enabled [SearchSource]s in parallel. The results of each source are shown as
+ * soon as they are available, in a section of their own, in the order of [sources].
+ */
+class SearchAggregator(
+    private val sources: List<SearchSource>,
+    private val statsLogManager: StatsLogManager? = null,
+) : SearchAlgorithm<AdapterItem> {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private var searchJob: Job? = null
+
+    @MainThread
+    override fun doSearch(query: String, callback: SearchCallback<AdapterItem>) {
+        searchJob?.cancel()
+        val enabledSources = sources.filter { it.isEnabled() }
+        val searchStart = SystemClock.elapsedRealtime()
+        // Only accessed on the main thread
+        val results = arrayOfNulls<SearchSourceResult>(enabledSources.size)
+        var hasResults = false
+        searchJob = scope.launch {
+            enabledSources.forEachIndexed { index, source ->
+                launch {
+                    val start = SystemClock.elapsedRealtime()
+                    val outcome = try {
+                        val completed = withTimeoutOrNull(source.deadlineMs) {
+                            source.search(query).collect { result ->
+                                withContext(Dispatchers.Main) {
+                                    results[index] = result
+                                    callback.onSearchResult(
+                                        query, mergeResults(results), mergeSuggestions(results)
+                                    )
+                                    if (!hasResults) {
+                                        hasResults = true
+                                        logFirstResult(query, searchStart)
+                                    }
+                                }
+                            }
+                        }
+                        if (completed == null) Outcome.TIMEOUT else Outcome.COMPLETE
+                    } catch (e: CancellationException) {
+                        getStats(source).record(SystemClock.elapsedRealtime() - start,
+                            Outcome.CANCELLED)
+                        throw e
+                    } catch (e: Exception) {
+                        Log.e(TAG, "Search failed in ${source.name}", e)
+                        Outcome.FAILED
+                    }
+                    getStats(source).record(SystemClock.elapsedRealtime() - start, outcome)
+                }
+            }
+        }
+    }
+
+    @MainThread
+    override fun cancel(interruptActiveRequests: Boolean) {
+        // Every query replaces the results of the previous one
+        searchJob?.cancel()
+        searchJob = null
+    }
+
+    override fun destroy() {
+        scope.cancel()
+        sources.forEach { it.destroy() }
+    }
+
+    private fun logFirstResult(query: String, searchStart: Long) {
+        statsLogManager?.latencyLogger()
+            ?.withQueryLength(query.length)
+            ?.withLatency(SystemClock.elapsedRealtime() - searchStart)
+            ?.log(LAUNCHER_LATENCY_SEARCH_FIRST_RESULT)
+    }
+
+    private fun mergeResults(results: Array<SearchSourceResult?>): ArrayList<AdapterItem> {
+        val items = ArrayList<AdapterItem>()
+        results.forEach { result ->
+            if (result == null || result.items.isEmpty()) return@forEach
+            if (items.isNotEmpty()) {
+                items.add(AdapterItem(VIEW_TYPE_ALL_APPS_DIVIDER))
+            }
+            items.addAll(result.items)
+        }
+        return items
+    }
+
+    private fun mergeSuggestions(results: Array<SearchSourceResult?>): List<String> =
+        results.flatMap { it?.suggestions ?: emptyList() }
+
+    private enum class Outcome { COMPLETE, TIMEOUT, FAILED, CANCELLED }
+
+    /**
+     * Counts the searches of a source by outcome, and the completed ones by latency
+     */
+    private class SourceStats {
+        private val outcomes = AtomicIntegerArray(Outcome.values().size)
+        private val latencies = LatencyHistogram()
+
+        fun record(latencyMs: Long, outcome: Outcome) {
+            outcomes.incrementAndGet(outcome.ordinal)
+            if (outcome == Outcome.COMPLETE) {
+                latencies.record(latencyMs)
+            }
+        }
+
+        fun dump(prefix: String, writer: PrintWriter) {
+            writer.println(prefix + Outcome.values().joinToString {
+                "${it.name.lowercase()}=${outcomes.get(it.ordinal)}"
+            })
+            writer.println(
+                prefix + "p50=${latencies.percentile(0.5)}ms " +
+                        "p90=${latencies.percentile(0.9)}ms " +
+                        "p99=${latencies.percentile(0.99)}ms max=${latencies.max}ms"
+            )
+        }
+    }
+
+    companion object {
+        private const val TAG = "SearchAggregator"
+
+        // Shared by all the aggregators, by source name
+        private val stats = ConcurrentHashMap<String, SourceStats>()
+
+        private fun getStats(source: SearchSource) =
+            stats.getOrPut(source.name) { SourceStats() }
+
+        /**
+         * Returns an aggregator of the drawer search sources
+         */
+        @JvmStatic
+        fun create(context: Context) = SearchAggregator(
+            listOf(
+                AppsSearchSource(context),
+                PeopleSearchSource(context),
+                WebSuggestionsSource(context),
+            ),
+            StatsLogManager.newInstance(context)
+        )
+
+        @JvmStatic
+        fun dump(prefix: String, writer: PrintWriter) {
+            writer.println(prefix + "SearchAggregator latencies:")
+            stats.toSortedMap().forEach { (name, sourceStats) ->
+                writer.println("$prefix\t$name")
+                sourceStats.dump("$prefix\t\t", writer)
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * A source of search results, queried by [SearchAggregator] in parallel with the other sources.
+ */
+interface SearchSource {
+
+    /** Name of the source in the dump */
+    val name: String
+
+    /** Time after which the search of this source is cancelled */
+    val deadlineMs: Long
+
+    fun isEnabled(): Boolean = true
+
+    /**
+     * Returns the results for [query]. Each emitted result replaces the previous one, so a source
+     * can show cached results before fresh ones. The flow is collected on a background thread and
+     * cancelled when the query changes or the deadline is reached.
+     */
+    fun search(query: String): Flow<SearchSourceResult>
+
+    fun destroy() {}
+}
+
+class ScoredItem(val item: AdapterItem, val score: Float)
+
+/**
+ * The results of a [SearchSource], shown as one section ordered by score
+ */
+class SearchSourceResult(
+    items: List<ScoredItem> = emptyList(),
+    val suggestions: List<String> = emptyList(),
+) {
+    val items: List<AdapterItem> = items.sortedByDescending { it.score }.map { it.item }
+}
@@ -0,0 +1,229 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import android.util.LruCache
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.data.models.SearchProvider
+import com.saggitt.omega.data.models.SearchProvider.Companion.MAX_SUGGESTIONS
+import com.saggitt.omega.util.toArrayList
+import okhttp3.Cache
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import org.json.JSONArray
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+
+/**
+ * Fetches the suggestions of the web search providers.
+ *
+ * All requests share one client, so connections are pooled and responses go through the HTTP
+ * cache. The answers of each provider are kept for [CACHE_TTL_MS]. While a query is fetched, the
+ * answer of a shorter query it extends is shown instead. Requests for the same query share a
+ * single call, which is cancelled once no request waits for it anymore.
+ */
+class WebSuggestions @VisibleForTesting constructor(
+    private val client: OkHttpClient,
+    private val clock: () -> Long = SystemClock::elapsedRealtime,
+) {
+
+    constructor(context: Context) : this(createClient(context))
+
+    fun interface Listener {
+        /**
+         * Called with the suggestions for [query], possibly several times as fresher ones are
+         * available. It can be called on any thread.
+         */
+        fun onSuggestions(query: String, suggestions: List<String>)
+
+        /**
+         * Called once the request is answered, after the fetched suggestions, or with the
+         * [error] which prevented fetching them. It isn't called for cancelled requests.
+         */
+        fun onFinished(query: String, error: Exception?) {}
+    }
+
+    private class Entry(val suggestions: List<String>, val time: Long)
+
+    private class PendingCall(val call: Call) {
+        val requests = mutableListOf<SuggestionsRequest>()
+    }
+
+    /**
+     * A request for suggestions, which should be cancelled when the query changes
+     */
+    inner class SuggestionsRequest internal constructor(
+        private val url: String,
+        val query: String,
+        val listener: Listener,
+    ) {
+        fun cancel() {
+            synchronized(lock) {
+                val pending = pendingCalls[url] ?: return
+                if (pending.requests.remove(this) && pending.requests.isEmpty()) {
+                    pendingCalls.remove(url)
+                    pending.call.cancel()
+                }
+            }
+        }
+    }
+
+    private val lock = Any()
+
+    // The answers of each provider by query, keyed by the suggestion url of the provider
+    private val caches = HashMap<String, LruCache<String, Entry>>()
+
+    // The running calls, by request url
+    private val pendingCalls = HashMap<String, PendingCall>()
+
+    /**
+     * Requests the suggestions of [provider] for [query]. Cached suggestions are passed to the
+     * listener right away, fresh ones once they are fetched.
+     *
+     * @return the request, or null if there is nothing left to fetch
+     */
+    fun request(provider: SearchProvider, query: String, listener: Listener): SuggestionsRequest? {
+        val providerKey = provider.suggestionUrl ?: return null
+        val url = provider.getSuggestionsUrl(query) ?: return null
+        val cacheKey = query.lowercase(Locale.getDefault())
+
+        val cache = synchronized(lock) {
+            caches.getOrPut(providerKey) { LruCache(CACHE_SIZE) }
+        }
+        val exact = cache.get(cacheKey)
+        if (exact != null) {
+            listener.onSuggestions(query, exact.suggestions)
+            if (clock() - exact.time < CACHE_TTL_MS) return null
+        } else {
+            findPrefixAnswer(cache, cacheKey)?.let { listener.onSuggestions(query, it) }
+        }
+
+        synchronized(lock) {
+            val request = SuggestionsRequest(url, query, listener)
+            val pending = pendingCalls[url]
+            if (pending != null) {
+                pending.requests.add(request)
+                return request
+            }
+
+            val call = client.newCall(Request.Builder().url(url).build())
+            pendingCalls[url] = PendingCall(call).apply { requests.add(request) }
+            call.enqueue(object : Callback {
+                override fun onResponse(call: Call, response: Response) {
+                    val suggestions = try {
+                        response.use { parse(query, it.body.string()) }
+                    } catch (e: Exception) {
+                        Log.e(TAG, "Invalid suggestions for $url", e)
+                        finish(url, call, null, e)
+                        return
+                    }
+                    cache.put(cacheKey, Entry(suggestions, clock()))
+                    finish(url, call, suggestions, null)
+                }
+
+                override fun onFailure(call: Call, e: IOException) {
+                    if (!call.isCanceled()) {
+                        Log.e(TAG, "Failed to get suggestions for $url", e)
+                    }
+                    finish(url, call, null, e)
+                }
+            })
+            return request
+        }
+    }
+
+    private fun finish(
+        url: String,
+        call: Call,
+        suggestions: List<String>?,
+        error: Exception?,
+    ) {
+        val requests = synchronized(lock) {
+            val pending = pendingCalls[url]
+            if (pending?.call !== call) return
+            pendingCalls.remove(url)
+            pending.requests
+        }
+        requests.forEach {
+            if (suggestions != null) {
+                it.listener.onSuggestions(it.query, suggestions)
+            }
+            it.listener.onFinished(it.query, error)
+        }
+    }
+
+    /**
+     * Returns the cached suggestions of the longest query which [query] extends, reduced to
+     * those still matching [query]
+     */
+    private fun findPrefixAnswer(cache: LruCache<String, Entry>, query: String): List<String>? {
+        for (length in query.length - 1 downTo 1) {
+            val entry = cache.get(query.substring(0, length)) ?: continue
+            val matching = entry.suggestions.filter { it.startsWith(query, ignoreCase = true) }
+            if (matching.isNotEmpty()) return matching
+        }
+        return null
+    }
+
+    fun clearCache() {
+        synchronized(lock) {
+            caches.clear()
+        }
+    }
+
+    companion object {
+        private const val TAG = "WebSuggestions"
+
+        private const val CACHE_SIZE = 64
+        private val CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(5)
+        private const val HTTP_CACHE_SIZE = 1024L * 1024L
+
+        val INSTANCE = MainThreadInitializedObject(::WebSuggestions)
+
+        private fun createClient(context: Context) = OkHttpClient.Builder()
+            .cache(Cache(File(context.cacheDir, "web_suggestions"), HTTP_CACHE_SIZE))
+            .connectTimeout(2, TimeUnit.SECONDS)
+            .readTimeout(2, TimeUnit.SECONDS)
+            .callTimeout(4, TimeUnit.SECONDS)
+            .build()
+
+        /**
+         * Parses an OpenSearch suggestions response and ranks the suggestions: those extending
+         * the query come first, then the others in the order of the provider.
+         */
+        @VisibleForTesting
+        fun parse(query: String, body: String): List<String> {
+            val suggestions = JSONArray(body).getJSONArray(1).toArrayList<String>()
+                .distinctBy { it.lowercase(Locale.getDefault()) }
+            val (extending, others) = suggestions.partition {
+                it.startsWith(query, ignoreCase = true)
+            }
+            return (extending + others).take(MAX_SUGGESTIONS)
+        }
+    }
+}
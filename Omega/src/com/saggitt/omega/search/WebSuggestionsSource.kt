@@ -0,0 +1,57 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.search
+
+import android.content.Context
+import com.saggitt.omega.util.prefs
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+
+/**
+ * The suggestions of the selected search provider
+ */
+class WebSuggestionsSource(private val context: Context) : SearchSource {
+
+    override val name = "web_suggestions"
+
+    // A bit longer than the call timeout of the suggestions client
+    override val deadlineMs = 5000L
+
+    override fun isEnabled() = context.prefs.searchGlobal.getValue()
+
+    override fun search(query: String): Flow<SearchSourceResult> = callbackFlow {
+        val provider = SearchProviderController.getInstance(context).searchProvider
+        // Cached suggestions are passed while requesting, the flow ends once the fetch does
+        val listener = object : WebSuggestions.Listener {
+            override fun onSuggestions(query: String, suggestions: List<String>) {
+                trySend(SearchSourceResult(suggestions = suggestions))
+            }
+
+            override fun onFinished(query: String, error: Exception?) {
+                close(error)
+            }
+        }
+        val request = WebSuggestions.INSTANCE.get(context).request(provider, query, listener)
+        if (request == null) {
+            close()
+        }
+        awaitClose { request?.cancel() }
+    }
+}
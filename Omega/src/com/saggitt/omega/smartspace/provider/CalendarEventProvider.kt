@@ -3,6 +3,7 @@ package com.saggitt.omega.smartspace.provider
 import android.annotation.SuppressLint
 import android.app.Activity
 import android.app.PendingIntent
+import android.content.ContentResolver
 import android.content.Context
 import android.content.Intent
 import android.content.pm.PackageManager
@@ -10,25 +11,43 @@ import android.graphics.drawable.Icon
 import android.net.Uri
 import android.provider.CalendarContract
 import android.text.format.DateFormat
-import android.util.Log
+import androidx.annotation.VisibleForTesting
 import com.android.launcher3.R
 import com.saggitt.omega.compose.navigation.Routes
 import com.saggitt.omega.preferences.PreferenceActivity
 import com.saggitt.omega.smartspace.model.SmartspaceScores
+import com.saggitt.omega.util.contentObserverFlow
 import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.flow
-import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
 import java.util.Date
 import java.util.concurrent.TimeUnit
 import kotlin.math.ceil
 
-class CalendarEventProvider(context: Context) : SmartspaceDataSource(
-    context, R.string.smartspace_provider_calendar
-) {
-    override var internalTargets: Flow<List<SmartspaceTarget>> = flowOf(disabledTargets)
+/**
+ * Shows the next calendar event. The events of the next day are kept in memory and read again
+ * only when the calendar changes. The target is updated when an event enters or leaves the
+ * shown range, and every minute while the time until the shown event counts down.
+ */
+class CalendarEventProvider @VisibleForTesting constructor(
+    context: Context,
+    private val resolver: ContentResolver,
+    private val calendarChanges: Flow<Unit>,
+) : SmartspaceDataSource(context, R.string.smartspace_provider_calendar) {
+
+    constructor(context: Context) : this(
+        context,
+        context.contentResolver,
+        contentObserverFlow(context.contentResolver, CalendarContract.CONTENT_URI)
+    )
 
     private val requiredPermissions = listOf(android.Manifest.permission.READ_CALENDAR)
     private val calendarProjection = arrayOf(
@@ -40,22 +59,35 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
         CalendarContract.Instances.CUSTOM_APP_PACKAGE
     )
     private val oneMinute = TimeUnit.MINUTES.toMillis(1)
-    private val includeBehind = oneMinute * 15
-    private val includeAhead = oneMinute * 60
-
-    init {
-        internalTargets = flow {
-            while (true) {
-                requiresSetup()
-                emit(calendarTarget())
-                delay(TimeUnit.MINUTES.toMillis(30))
+
+    @OptIn(FlowPreview::class)
+    override val internalTargets: Flow<List<SmartspaceTarget>> = channelFlow {
+        val reloads = Channel<Unit>(Channel.CONFLATED)
+        launch {
+            calendarChanges
+                .debounce(CHANGE_DEBOUNCE_MS)
+                .collect { reloads.trySend(Unit) }
+        }
+
+        var window = loadEvents(System.currentTimeMillis())
+        while (true) {
+            val now = System.currentTimeMillis()
+            if (now >= window.end) {
+                window = loadEvents(now)
+            }
+            send(calendarTarget(window.eventAt(now)))
+
+            // Wait for the next change of the shown event, unless the calendar changes first
+            val changed = withTimeoutOrNull(window.nextChange(now) - now) {
+                reloads.receive()
+            }
+            if (changed != null) {
+                window = loadEvents(System.currentTimeMillis())
             }
         }
-    }
+    }.flowOn(Dispatchers.IO)
 
-    private fun calendarTarget(): List<SmartspaceTarget> {
-        val event = getNextEvent()
-        Log.d("CalendarEventProvider", "calendarTarget " + event?.title)
+    private fun calendarTarget(event: CalendarEvent?): List<SmartspaceTarget> {
         if (event != null) {
             val timeText = "${formatTime(event.start)} – ${formatTime(event.end)}"
             val subtitle = if (event.location != null) {
@@ -113,32 +145,45 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
             data = Uri.parse("content://com.android.calendar/events/${event.id}")
             `package` = event.appPackage
         }
-        return PendingIntent.getActivity(context, 0, intent, 0)
+        return PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE)
     }
 
+    /**
+     * Reads the next [PREFETCH_COUNT] events of the next [PREFETCH_WINDOW_MS]
+     */
     @SuppressLint("Range")
-    private fun getNextEvent(): CalendarEvent? {
-        val currentTime = System.currentTimeMillis()
-        context.contentResolver.query(
+    private fun loadEvents(currentTime: Long): EventWindow {
+        val events = ArrayList<CalendarEvent>()
+        resolver.query(
             CalendarContract.Events.CONTENT_URI,
             calendarProjection,
-            "${CalendarContract.Events.DTSTART} >= ? AND ${CalendarContract.Events.DTSTART} <= ?",
-            arrayOf("${currentTime - includeBehind}", "${currentTime + includeAhead}"),
-            "${CalendarContract.Events.DTSTART} ASC LIMIT 1"
+            "${CalendarContract.Events.DTSTART} > ? AND ${CalendarContract.Events.DTSTART} <= ?",
+            arrayOf("${currentTime - INCLUDE_BEHIND_MS}", "${currentTime + PREFETCH_WINDOW_MS}"),
+            "${CalendarContract.Events.DTSTART} ASC LIMIT $PREFETCH_COUNT"
         )
             ?.use { c ->
                 while (c.moveToNext()) {
-                    return CalendarEvent(
-                        c.getLong(c.getColumnIndex(CalendarContract.Events._ID)),
-                        c.getString(c.getColumnIndex(CalendarContract.Events.TITLE)),
-                        c.getLong(c.getColumnIndex(CalendarContract.Events.DTSTART)),
-                        c.getLong(c.getColumnIndex(CalendarContract.Events.DTEND)),
-                        c.getString(c.getColumnIndex(CalendarContract.Events.EVENT_LOCATION)),
-                        c.getString(c.getColumnIndex(CalendarContract.Events.CUSTOM_APP_PACKAGE))
+                    events.add(
+                        CalendarEvent(
+                            c.getLong(c.getColumnIndex(CalendarContract.Events._ID)),
+                            c.getString(c.getColumnIndex(CalendarContract.Events.TITLE)),
+                            c.getLong(c.getColumnIndex(CalendarContract.Events.DTSTART)),
+                            c.getLong(c.getColumnIndex(CalendarContract.Events.DTEND)),
+                            c.getString(c.getColumnIndex(CalendarContract.Events.EVENT_LOCATION)),
+                            c.getString(
+                                c.getColumnIndex(CalendarContract.Events.CUSTOM_APP_PACKAGE)
+                            )
+                        )
                     )
                 }
             }
-        return null
+        // Later events may be missing when the limit is reached
+        val end = if (events.size < PREFETCH_COUNT) {
+            currentTime + PREFETCH_WINDOW_MS
+        } else {
+            events.last().start
+        } - INCLUDE_AHEAD_MS
+        return EventWindow(events, end.coerceAtLeast(currentTime + oneMinute))
     }
 
     private fun checkPermissionGranted(): Boolean {
@@ -164,6 +209,41 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
         )
     }
 
+    /**
+     * The events starting before [end] + [INCLUDE_AHEAD_MS], ordered by start time
+     */
+    @VisibleForTesting
+    class EventWindow(val events: List<CalendarEvent>, val end: Long) {
+
+        /**
+         * Returns the event to show at [time]
+         */
+        fun eventAt(time: Long): CalendarEvent? = events.firstOrNull {
+            it.start > time - INCLUDE_BEHIND_MS && it.start <= time + INCLUDE_AHEAD_MS
+        }
+
+        /**
+         * Returns when the event to show, or its text, changes next after [time]
+         */
+        fun nextChange(time: Long): Long {
+            var next = end
+            events.forEach {
+                for (boundary in longArrayOf(
+                    it.start - INCLUDE_AHEAD_MS, it.start, it.start + INCLUDE_BEHIND_MS
+                )) {
+                    if (boundary > time && boundary < next) next = boundary
+                }
+            }
+            // The title shows the minutes left until the start, rounded up
+            val shown = eventAt(time)
+            if (shown != null && shown.start > time) {
+                val minutesLeft = (shown.start - time + MINUTE_MS - 1) / MINUTE_MS
+                next = minOf(next, shown.start - (minutesLeft - 1) * MINUTE_MS)
+            }
+            return next
+        }
+    }
+
     data class CalendarEvent(
         val id: Long,
         val title: String,
@@ -172,4 +252,13 @@ class CalendarEventProvider(context: Context) : SmartspaceDataSource(
         val location: String?,
         val appPackage: String?
     )
+
+    companion object {
+        private val MINUTE_MS = TimeUnit.MINUTES.toMillis(1)
+        private val INCLUDE_BEHIND_MS = TimeUnit.MINUTES.toMillis(15)
+        private val INCLUDE_AHEAD_MS = TimeUnit.MINUTES.toMillis(60)
+        private val PREFETCH_WINDOW_MS = TimeUnit.DAYS.toMillis(1)
+        private const val PREFETCH_COUNT = 10
+        private const val CHANGE_DEBOUNCE_MS = 500L
+    }
 }
\ No newline at end of file
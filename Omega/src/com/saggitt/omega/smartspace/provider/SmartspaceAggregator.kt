@@ -0,0 +1,210 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace.provider
+
+import com.saggitt.omega.smartspace.provider.SmartspaceDataSource.State
+import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import java.io.PrintWriter
+
+/**
+ * Merges the states of several data sources into one, with the targets ordered by decreasing
+ * score. Each source keeps its last state in a slot, and the targets of the slots are merged
+ * through a heap of the slots, without concatenating their lists. A state is only emitted once
+ * every source has emitted, and when the merged targets or the sources requiring setup changed,
+ * keeping the same target instances when they are equal.
+ */
+class SmartspaceAggregator(private val sources: List<Flow<State>>) {
+
+    private val stats = Stats()
+
+    val state: Flow<State> = channelFlow {
+        val merger = Merger(sources.size, stats)
+        sources.forEachIndexed { index, source ->
+            launch {
+                source.collect { state ->
+                    val merged = synchronized(stats) { merger.update(index, state) }
+                    merged?.let { send(it) }
+                }
+            }
+        }
+    }
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        stats.dump(prefix, writer)
+    }
+
+    /**
+     * The slots of one collection of the sources
+     */
+    private class Merger(private val size: Int, private val stats: Stats) {
+        private val slots = arrayOfNulls<List<SmartspaceTarget>>(size)
+        private val setupSlots = arrayOfNulls<List<SmartspaceDataSource>>(size)
+        private var filledSlots = 0
+
+        // Reused by every merge: the slots by decreasing score of their next target
+        private val heap = IntArray(size)
+        private val cursors = IntArray(size)
+
+        private var merged = State()
+        private var emitted = false
+
+        /**
+         * Stores the state of the source at [index], and returns the merged state if it changed
+         */
+        fun update(index: Int, state: State): State? {
+            if (slots[index] == null) filledSlots++
+            slots[index] = sortedByScore(state.targets)
+            val setupChanged = setupSlots[index] != state.requiresSetup
+            setupSlots[index] = state.requiresSetup
+            if (filledSlots < size) return null
+
+            val targets = mergeTargets()
+            val requiresSetup = if (setupChanged) {
+                stats.allocations++
+                setupSlots.flatMap { it!! }
+            } else merged.requiresSetup
+            if (emitted && targets === merged.targets && requiresSetup === merged.requiresSetup) {
+                stats.skipped++
+                return null
+            }
+            stats.emissions++
+            stats.allocations++
+            emitted = true
+            merged = State(targets, requiresSetup)
+            return merged
+        }
+
+        private fun sortedByScore(targets: List<SmartspaceTarget>): List<SmartspaceTarget> {
+            for (i in 1 until targets.size) {
+                if (targets[i].score > targets[i - 1].score) {
+                    stats.allocations++
+                    return targets.sortedByDescending { it.score }
+                }
+            }
+            return targets
+        }
+
+        /**
+         * Merges the slots by decreasing score, the earlier sources first for equal scores.
+         * Returns the last merged targets if the result is equal to them.
+         */
+        private fun mergeTargets(): List<SmartspaceTarget> {
+            var heapSize = 0
+            for (slot in 0 until size) {
+                cursors[slot] = 0
+                if (slots[slot]!!.isNotEmpty()) {
+                    heap[heapSize] = slot
+                    siftUp(heapSize++)
+                }
+            }
+
+            val previous = merged.targets
+            var result: ArrayList<SmartspaceTarget>? = null
+            var count = 0
+            while (heapSize > 0) {
+                val slot = heap[0]
+                val target = slots[slot]!![cursors[slot]++]
+                if (cursors[slot] == slots[slot]!!.size) {
+                    heap[0] = heap[--heapSize]
+                }
+                if (heapSize > 0) siftDown(0, heapSize)
+
+                if (result == null && (count >= previous.size || previous[count] != target)) {
+                    // Only copy the targets once they differ from the last merge
+                    stats.allocations++
+                    result = ArrayList(count + remaining(heapSize) + 1)
+                    for (i in 0 until count) result.add(previous[i])
+                }
+                result?.add(target)
+                count++
+            }
+            if (result == null && count < previous.size) {
+                stats.allocations++
+                return previous.subList(0, count).toList()
+            }
+            return result ?: previous
+        }
+
+        private fun remaining(heapSize: Int): Int {
+            var remaining = 0
+            for (i in 0 until heapSize) {
+                val slot = heap[i]
+                remaining += slots[slot]!!.size - cursors[slot]
+            }
+            return remaining
+        }
+
+        private fun siftUp(position: Int) {
+            var child = position
+            while (child > 0) {
+                val parent = (child - 1) / 2
+                if (!isBefore(heap[child], heap[parent])) break
+                swap(child, parent)
+                child = parent
+            }
+        }
+
+        private fun siftDown(position: Int, heapSize: Int) {
+            var parent = position
+            while (true) {
+                val left = 2 * parent + 1
+                if (left >= heapSize) break
+                val right = left + 1
+                val child = if (right < heapSize && isBefore(heap[right], heap[left])) right
+                else left
+                if (!isBefore(heap[child], heap[parent])) break
+                swap(child, parent)
+                parent = child
+            }
+        }
+
+        private fun isBefore(slot: Int, other: Int): Boolean {
+            val score = slots[slot]!![cursors[slot]].score
+            val otherScore = slots[other]!![cursors[other]].score
+            return score > otherScore || (score == otherScore && slot < other)
+        }
+
+        private fun swap(i: Int, j: Int) {
+            val slot = heap[i]
+            heap[i] = heap[j]
+            heap[j] = slot
+        }
+    }
+
+    /**
+     * Counts the merged states, and the lists allocated to merge them
+     */
+    private class Stats {
+        var emissions = 0
+        var skipped = 0
+        var allocations = 0
+
+        @Synchronized
+        fun dump(prefix: String, writer: PrintWriter) {
+            val perEmission = if (emissions > 0) allocations.toFloat() / emissions else 0f
+            writer.println(
+                "${prefix}SmartspaceAggregator: emissions=$emissions skipped=$skipped " +
+                        "allocations=$allocations (%.2f per emission)".format(perEmission)
+            )
+        }
+    }
+}
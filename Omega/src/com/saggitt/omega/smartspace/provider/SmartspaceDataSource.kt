@@ -71,12 +71,5 @@ abstract class SmartspaceDataSource(
     data class State(
         val targets: List<SmartspaceTarget> = emptyList(),
         val requiresSetup: List<SmartspaceDataSource> = emptyList()
-    ) {
-        operator fun plus(other: State): State {
-            return State(
-                targets = this.targets + other.targets,
-                requiresSetup = this.requiresSetup + other.requiresSetup
-            )
-        }
-    }
+    )
 }
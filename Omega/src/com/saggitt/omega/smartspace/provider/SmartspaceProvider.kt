@@ -16,9 +16,9 @@ import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
 import kotlinx.coroutines.MainScope
 import kotlinx.coroutines.flow.SharingStarted
-import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.shareIn
+import java.io.PrintWriter
 
 class SmartspaceProvider private constructor(context: Context) {
     val prefs = NeoPrefs.getInstance(context)
@@ -44,9 +44,9 @@ class SmartspaceProvider private constructor(context: Context) {
         }?.let { dataSources.add(it) }
     }
 
-    val state = dataSources
-        .map { it.targets }
-        .reduce { acc, flow -> flow.combine(acc) { a, b -> a + b } }
+    private val aggregator = SmartspaceAggregator(dataSources.map { it.targets })
+
+    val state = aggregator.state
         .shareIn(
             MainScope(),
             SharingStarted.WhileSubscribed(),
@@ -87,6 +87,10 @@ class SmartspaceProvider private constructor(context: Context) {
             }
     }
 
+    fun dump(prefix: String, writer: PrintWriter) {
+        aggregator.dump(prefix, writer)
+    }
+
     companion object {
         @JvmField
         val INSTANCE = MainThreadInitializedObject(::SmartspaceProvider)
@@ -23,14 +23,11 @@ import android.content.Context
 import android.graphics.drawable.Icon
 import android.location.Criteria
 import android.location.LocationManager
-import android.util.Log
 import android.widget.Toast
 import com.android.launcher3.BuildConfig
 import com.android.launcher3.R
 import com.android.launcher3.Utilities
-import com.kwabenaberko.openweathermaplib.implementation.OpenWeatherMapHelper
-import com.kwabenaberko.openweathermaplib.implementation.callback.CurrentWeatherCallback
-import com.kwabenaberko.openweathermaplib.model.currentweather.CurrentWeather
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
 import com.saggitt.omega.neoApp
 import com.saggitt.omega.smartspace.model.SmartspaceScores
 import com.saggitt.omega.smartspace.model.WeatherData
@@ -41,115 +38,111 @@ import com.saggitt.omega.util.checkLocationAccess
 import com.saggitt.omega.widget.Temperature
 import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flatMapLatest
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
 import java.util.concurrent.TimeUnit
-import kotlin.math.roundToInt
 
 class OWMWeatherProvider(context: Context) : SmartspaceDataSource(
     context, R.string.weather_provider_owm
-), CurrentWeatherCallback {
+) {
     override val isAvailable = true
     override val disabledTargets = listOf(dummyTarget)
-    override var internalTargets: Flow<List<SmartspaceTarget>> = flowOf(disabledTargets)
 
-    private val owm by lazy { OpenWeatherMapHelper(prefs.smartspaceWeatherApiKey.getValue()) }
+    private val repository = WeatherRepository.INSTANCE.get(context)
+    private val transport = OWMWeatherTransport { prefs.smartspaceWeatherApiKey.getValue() }
     private val iconProvider by lazy { WeatherIconProvider(context) }
-    private var weatherData: WeatherData? = null
     private val locationAccess get() = context.checkLocationAccess()
-    private val locationManager: LocationManager? by lazy {
-        if (locationAccess) {
-            context.getSystemService(Context.LOCATION_SERVICE) as LocationManager?
-        } else null
-    }
+    private var keyErrorShown = false
+
+    // Only a change of the request restarts the weather of the repository
+    @OptIn(ExperimentalCoroutinesApi::class)
+    override val internalTargets: Flow<List<SmartspaceTarget>> =
+        prefs.smartspaceWeatherCity.get()
+            .flatMapLatest { city -> requests(city) }
+            .distinctUntilChanged()
+            .flatMapLatest { request ->
+                if (request == null) {
+                    flowOf(disabledTargets)
+                } else {
+                    repository.weather(request, transport, onFailure = ::onFailure)
+                        .map { createTargets(it) }
+                }
+            }
 
-    init {
-        updateData()
-        internalTargets = flow {
+    /**
+     * Emits the request of the weather of [city]. The location is read again every few minutes,
+     * so that moves and permission changes are followed.
+     */
+    private fun requests(city: String): Flow<WeatherRequest?> {
+        if (city != AUTO_CITY) return flowOf(OWMWeatherTransport.cityRequest(city))
+        return flow {
             while (true) {
-                updateData()
-                emit(updateWeatherData())
-                delay(TimeUnit.MINUTES.toMillis(10))
+                emit(locationRequest())
+                delay(LOCATION_CHECK_MS)
             }
         }
     }
 
-    private fun updateWeatherData(): List<SmartspaceTarget> {
-        if (weatherData != null) {
-            Log.d("OWM", "Updating weather data " + weatherData?.getTitle())
-            val target = SmartspaceTarget(
-                smartspaceTargetId = "OWMWeatherMap",
-                headerAction = SmartspaceAction(
-                    id = "OWMWeatherMap",
-                    icon = Icon.createWithBitmap(weatherData!!.icon),
-                    title = "",
-                    subtitle = weatherData?.getTitle(Temperature.unitFromString(prefs.smartspaceWeatherUnit.getValue())),
-                    pendingIntent = weatherData?.pendingIntent
-                ),
-                score = SmartspaceScores.SCORE_WEATHER,
-                featureType = SmartspaceTarget.FEATURE_WEATHER,
-            )
-            return listOf(target)
-        } else {
-            return disabledTargets
-        }
+    private fun createTargets(weather: WeatherResult?): List<SmartspaceTarget> {
+        if (weather == null) return disabledTargets
+        val weatherData = WeatherData(
+            iconProvider.getIcon(weather.condition),
+            Temperature(weather.temperature, weather.unit),
+            weather.forecastUrl
+        )
+        val unit = Temperature.unitFromString(prefs.smartspaceWeatherUnit.getValue())
+        val target = SmartspaceTarget(
+            smartspaceTargetId = "OWMWeatherMap",
+            headerAction = SmartspaceAction(
+                id = "OWMWeatherMap",
+                icon = Icon.createWithBitmap(weatherData.icon),
+                title = "",
+                subtitle = weatherData.getTitle(unit),
+                pendingIntent = weatherData.pendingIntent
+            ),
+            score = SmartspaceScores.SCORE_WEATHER,
+            featureType = SmartspaceTarget.FEATURE_WEATHER,
+        )
+        return listOf(target)
     }
 
     @SuppressLint("MissingPermission")
-    fun updateData() {
-        if (prefs.smartspaceWeatherCity.getValue() == "##Auto") {
-            if (!locationAccess) {
-                Utilities.requestLocationPermission(context.neoApp.activityHandler.foregroundActivity)
-                return
-            } else {
-                val locationProvider = locationManager?.getBestProvider(Criteria(), true)
-                val location = locationProvider?.let { locationManager?.getLastKnownLocation(it) }
-                if (location != null) {
-                    owm.getCurrentWeatherByGeoCoordinates(
-                        location.latitude,
-                        location.longitude,
-                        this
-                    )
-                }
-            }
-        } else {
-            owm.getCurrentWeatherByCityName(prefs.smartspaceWeatherCity.getValue(), this)
+    private fun locationRequest(): WeatherRequest? {
+        if (!locationAccess) {
+            Utilities.requestLocationPermission(context.neoApp.activityHandler.foregroundActivity)
+            return null
         }
+        val locationManager =
+            context.getSystemService(Context.LOCATION_SERVICE) as LocationManager? ?: return null
+        val location = locationManager.getBestProvider(Criteria(), true)
+            ?.let { locationManager.getLastKnownLocation(it) }
+            ?: return null
+        return OWMWeatherTransport.locationRequest(location.latitude, location.longitude)
     }
 
-    override fun onSuccess(currentWeather: CurrentWeather) {
-        val temp = currentWeather.main?.temp ?: return
-        val icon = currentWeather.weather.getOrNull(0)?.icon ?: return
-        weatherData = WeatherData(
-            iconProvider.getIcon(icon),
-            Temperature(
-                temp.roundToInt(),
-                Temperature.Unit.Kelvin
-            ),
-            "https://openweathermap.org/city/${currentWeather.id}"
-        )
-        updateWeatherData()
-    }
-
-    override fun onFailure(throwable: Throwable?) {
+    private fun onFailure(throwable: Throwable) {
+        // Failures are retried, only tell about the key once
+        if (keyErrorShown) return
         if ((prefs.smartspaceWeatherApiKey.getValue() == context.getString(R.string.default_owm_key)
                     && !BuildConfig.APPLICATION_ID.contains("debug")
                     && !BuildConfig.APPLICATION_ID.contains("alpha"))
-            || throwable?.message == apiKeyError
+            || throwable is OWMWeatherTransport.InvalidApiKeyException
         ) {
-            Toast.makeText(context, R.string.owm_get_your_own_key, Toast.LENGTH_LONG).show()
-        } else if (throwable != null) {
-            Log.d("OWM", "Updating weather data failed", throwable)
-            Toast.makeText(context, throwable.message, Toast.LENGTH_LONG).show()
+            keyErrorShown = true
+            MAIN_EXECUTOR.execute {
+                Toast.makeText(context, R.string.owm_get_your_own_key, Toast.LENGTH_LONG).show()
+            }
         }
-        updateWeatherData()
     }
 
     companion object {
-
-        private const val apiKeyError = "UnAuthorized. Please set a valid OpenWeatherMap API KEY" +
-                " by using the setApiKey method."
+        private const val AUTO_CITY = "##Auto"
+        private val LOCATION_CHECK_MS = TimeUnit.MINUTES.toMillis(10)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace.weather
+
+import androidx.annotation.VisibleForTesting
+import com.saggitt.omega.widget.Temperature
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import org.json.JSONObject
+import java.io.IOException
+import java.net.URLEncoder
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import kotlin.math.roundToInt
+
+/**
+ * Fetches the current weather from OpenWeatherMap
+ */
+class OWMWeatherTransport @VisibleForTesting constructor(
+    private val client: OkHttpClient,
+    private val apiKey: () -> String,
+    private val baseUrl: String,
+) : WeatherTransport {
+
+    constructor(apiKey: () -> String) : this(CLIENT, apiKey, BASE_URL)
+
+    override suspend fun fetch(request: WeatherRequest): WeatherResult =
+        withContext(Dispatchers.IO) {
+            val url = "$baseUrl?${request.query}".toHttpUrl().newBuilder()
+                .addQueryParameter("appid", apiKey())
+                .build()
+            client.newCall(Request.Builder().url(url).build()).execute().use { response ->
+                if (response.code == 401) throw InvalidApiKeyException()
+                if (!response.isSuccessful) throw IOException("HTTP ${response.code}")
+                parse(response.body.string())
+            }
+        }
+
+    class InvalidApiKeyException : IOException("Invalid OpenWeatherMap API key")
+
+    companion object {
+        private const val BASE_URL = "https://api.openweathermap.org/data/2.5/weather"
+
+        private val CLIENT by lazy {
+            OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .callTimeout(20, TimeUnit.SECONDS)
+                .build()
+        }
+
+        /**
+         * Returns the query of the weather of [city]
+         */
+        fun cityRequest(city: String) = WeatherRequest(
+            "owm", "q=" + URLEncoder.encode(city, "UTF-8")
+        )
+
+        /**
+         * Returns the query of the weather around a location, rounded to about a kilometer so
+         * that small moves share the same weather
+         */
+        fun locationRequest(latitude: Double, longitude: Double) = WeatherRequest(
+            "owm", "lat=%.2f&lon=%.2f".format(Locale.ROOT, latitude, longitude)
+        )
+
+        private fun parse(body: String): WeatherResult {
+            val json = JSONObject(body)
+            return WeatherResult(
+                json.getJSONObject("main").getDouble("temp").roundToInt(),
+                Temperature.Unit.Kelvin,
+                json.getJSONArray("weather").getJSONObject(0).getString("icon"),
+                "https://openweathermap.org/city/${json.getLong("id")}",
+            )
+        }
+    }
+}
@@ -36,10 +36,10 @@ import com.saggitt.omega.smartspace.weather.GoogleWeatherProvider.Companion.dumm
 import com.saggitt.omega.widget.Temperature
 import com.saulhdev.smartspace.SmartspaceAction
 import com.saulhdev.smartspace.SmartspaceTarget
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.asFlow
-import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
+import java.io.IOException
 import java.util.concurrent.TimeUnit
 
 class PixelWeatherProvider(context: Context) : SmartspaceDataSource(
@@ -47,36 +47,37 @@ class PixelWeatherProvider(context: Context) : SmartspaceDataSource(
 ) {
     override val isAvailable: Boolean
     override val disabledTargets = listOf(dummyTarget)
-    override lateinit var internalTargets: Flow<List<SmartspaceTarget>>
+    override val internalTargets: Flow<List<SmartspaceTarget>>
     private val contentResolver = context.contentResolver
-    private var weatherData: WeatherData? = null
 
     init {
         isAvailable = isAvailable(context)
         internalTargets = if (isAvailable) {
-            flow {
-                while (true) {
-                    updateData()
-                    emit(updateWeatherData())
-                    delay(TimeUnit.MINUTES.toMillis(30))
-                }
-            }
+            WeatherRepository.INSTANCE.get(context)
+                .weather(REQUEST, { fetchWeather() }, TimeUnit.MINUTES.toMillis(30))
+                .map { updateWeatherData(it) }
         } else {
-            listOf(disabledTargets).asFlow()
+            flowOf(disabledTargets)
         }
     }
 
-    private fun updateWeatherData(): List<SmartspaceTarget> {
-        if (weatherData != null) {
-            Log.d("PixelWeatherProvider", "Updating weather data " + weatherData?.getTitle())
+    private fun updateWeatherData(weather: WeatherResult?): List<SmartspaceTarget> {
+        if (weather != null) {
+            val weatherData = WeatherData(
+                getConditionIcon(weather.condition),
+                Temperature(weather.temperature, weather.unit), ""
+            )
+            Log.d("PixelWeatherProvider", "Updating weather data " + weatherData.getTitle())
             val target = SmartspaceTarget(
                 smartspaceTargetId = "PixelWeatherProvider",
                 headerAction = SmartspaceAction(
                     id = "PixelWeatherProvider",
-                    icon = Icon.createWithBitmap(weatherData!!.icon),
+                    icon = Icon.createWithBitmap(weatherData.icon),
                     title = "",
-                    subtitle = weatherData?.getTitle(Temperature.unitFromString(prefs.smartspaceWeatherUnit.getValue())),
-                    pendingIntent = weatherData?.pendingIntent
+                    subtitle = weatherData.getTitle(
+                        Temperature.unitFromString(prefs.smartspaceWeatherUnit.getValue())
+                    ),
+                    pendingIntent = weatherData.pendingIntent
                 ),
                 score = SmartspaceScores.SCORE_WEATHER,
                 featureType = SmartspaceTarget.FEATURE_WEATHER,
@@ -88,23 +89,19 @@ class PixelWeatherProvider(context: Context) : SmartspaceDataSource(
 
     }
 
-    private fun updateData() {
+    private fun fetchWeather(): WeatherResult {
         contentResolver.query(weatherUri, PROJECTION_DEFAULT_WEATHER, null, null, null)
             ?.use { cursor ->
-                val count = cursor.count
-                if (count > 0) {
-                    cursor.moveToPosition(0)
-                    val status = cursor.getInt(0)
-                    if (status == 0) {
-                        val conditions = cursor.getString(1)
-                        val temperature = cursor.getInt(2)
-                        weatherData = WeatherData(
-                            getConditionIcon(conditions),
-                            Temperature(temperature, Temperature.Unit.Celsius), ""
-                        )
-                    }
+                if (cursor.moveToFirst() && cursor.getInt(0) == 0) {
+                    return WeatherResult(
+                        cursor.getInt(2),
+                        Temperature.Unit.Celsius,
+                        cursor.getString(1),
+                        null
+                    )
                 }
             }
+        throw IOException("No weather from $authority")
     }
 
     @SuppressLint("DiscouragedApi")
@@ -139,6 +136,7 @@ class PixelWeatherProvider(context: Context) : SmartspaceDataSource(
 
     companion object {
         private const val authority = "org.pixelexperience.weather.client.provider"
+        private val REQUEST = WeatherRequest("pixel", "weather")
         private val weatherUri = Uri.parse("content://$authority/weather")!!
 
         private const val statusColumn = "status"
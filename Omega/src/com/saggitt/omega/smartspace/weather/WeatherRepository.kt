@@ -0,0 +1,219 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.smartspace.weather
+
+import android.content.Context
+import android.util.AtomicFile
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+import com.android.launcher3.util.MainThreadInitializedObject
+import com.saggitt.omega.neoApp
+import com.saggitt.omega.widget.Temperature
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.json.JSONObject
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * What a [WeatherTransport] fetches, identified by [key] across providers
+ */
+data class WeatherRequest(val source: String, val query: String) {
+    val key get() = "$source:$query"
+}
+
+/**
+ * The weather fetched at [time], with the [condition] in the terms of its source
+ */
+data class WeatherResult(
+    val temperature: Int,
+    val unit: Temperature.Unit,
+    val condition: String,
+    val forecastUrl: String?,
+    val time: Long = 0,
+)
+
+/**
+ * Fetches the current weather, throwing on failure
+ */
+fun interface WeatherTransport {
+    suspend fun fetch(request: WeatherRequest): WeatherResult
+}
+
+/**
+ * Keeps the last weather of each request on disk, and fetches it again once it is older than its
+ * time to live. Fetches only run while the launcher is in the foreground, concurrent fetches of
+ * the same request are shared, and failed fetches are retried with an exponential backoff.
+ */
+class WeatherRepository @VisibleForTesting constructor(
+    private val file: AtomicFile,
+    private val isInForeground: Flow<Boolean>,
+    private val minBackoffMs: Long = TimeUnit.SECONDS.toMillis(30),
+    private val maxBackoffMs: Long = TimeUnit.MINUTES.toMillis(30),
+) {
+
+    constructor(context: Context) : this(
+        AtomicFile(File(context.filesDir, FILE_NAME)),
+        context.neoApp.activityHandler.isInForeground
+    )
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO) +
+            CoroutineName("WeatherRepository")
+    private val lock = Mutex()
+
+    // Loaded from the file on first use, only accessed with the lock held
+    private var results: HashMap<String, WeatherResult>? = null
+    private val fetches = HashMap<String, Deferred<WeatherResult>>()
+
+    /**
+     * Emits the last known weather of [request], null if there is none, then the weather fetched
+     * by [transport] each time the last one is older than [ttlMs]. [onFailure] is called with the
+     * errors of the fetches.
+     */
+    fun weather(
+        request: WeatherRequest,
+        transport: WeatherTransport,
+        ttlMs: Long = DEFAULT_TTL_MS,
+        onFailure: (Throwable) -> Unit = {},
+    ): Flow<WeatherResult?> = flow {
+        var last = lock.withLock { loadResults()[request.key] }
+        emit(last)
+        var backoffMs = minBackoffMs
+        while (true) {
+            val expiry = (last?.time ?: 0L) + ttlMs
+            val now = System.currentTimeMillis()
+            if (now < expiry) {
+                delay(expiry - now)
+                // Another collector may have fetched it meanwhile
+                val stored = lock.withLock { loadResults()[request.key] }
+                if (stored != null && stored != last) {
+                    last = stored
+                    emit(stored)
+                }
+                continue
+            }
+
+            isInForeground.first { it }
+            try {
+                last = fetch(request, transport)
+                emit(last)
+                backoffMs = minBackoffMs
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Log.d(TAG, "Failed to fetch the weather of ${request.source}", e)
+                onFailure(e)
+                delay(backoffMs)
+                backoffMs = (backoffMs * 2).coerceAtMost(maxBackoffMs)
+            }
+        }
+    }.flowOn(Dispatchers.IO)
+
+    private suspend fun fetch(request: WeatherRequest, transport: WeatherTransport) =
+        lock.withLock {
+            fetches.getOrPut(request.key) {
+                scope.async {
+                    try {
+                        val result = transport.fetch(request)
+                            .copy(time = System.currentTimeMillis())
+                        lock.withLock {
+                            loadResults()[request.key] = result
+                            saveResults()
+                        }
+                        result
+                    } finally {
+                        lock.withLock { fetches.remove(request.key) }
+                    }
+                }
+            }
+        }.await()
+
+    private fun loadResults(): HashMap<String, WeatherResult> {
+        results?.let { return it }
+        val loaded = HashMap<String, WeatherResult>()
+        try {
+            if (file.baseFile.exists()) {
+                val json = JSONObject(String(file.readFully()))
+                json.keys().forEach { key ->
+                    val entry = json.getJSONObject(key)
+                    loaded[key] = WeatherResult(
+                        entry.getInt("temperature"),
+                        Temperature.Unit.valueOf(entry.getString("unit")),
+                        entry.getString("condition"),
+                        entry.optString("forecastUrl").takeIf { it.isNotEmpty() },
+                        entry.getLong("time"),
+                    )
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read the stored weather", e)
+        }
+        results = loaded
+        return loaded
+    }
+
+    private fun saveResults() {
+        val results = loadResults()
+        // Forget the locations which are no longer fetched
+        val oldest = System.currentTimeMillis() - MAX_AGE_MS
+        results.values.removeAll { it.time < oldest }
+
+        val json = JSONObject()
+        results.forEach { (key, result) ->
+            json.put(key, JSONObject()
+                .put("temperature", result.temperature)
+                .put("unit", result.unit.name)
+                .put("condition", result.condition)
+                .put("forecastUrl", result.forecastUrl ?: "")
+                .put("time", result.time))
+        }
+        var stream: FileOutputStream? = null
+        try {
+            stream = file.startWrite()
+            stream.write(json.toString().toByteArray())
+            file.finishWrite(stream)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to store the weather", e)
+            stream?.let { file.failWrite(it) }
+        }
+    }
+
+    companion object {
+        private const val TAG = "WeatherRepository"
+        private const val FILE_NAME = "weather.json"
+
+        val DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(15)
+        private val MAX_AGE_MS = TimeUnit.DAYS.toMillis(1)
+
+        val INSTANCE = MainThreadInitializedObject(::WeatherRepository)
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Neo Launcher
+ * Copyright (c) 2023   Neo Launcher Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.saggitt.omega.util
+
+import android.content.Context
+import android.content.Intent
+import android.content.pm.LauncherApps
+import androidx.annotation.MainThread
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.Utilities
+import com.android.launcher3.model.AllAppsList
+import com.android.launcher3.model.BaseModelUpdateTask
+import com.android.launcher3.model.BgDataModel
+import com.android.launcher3.model.data.AppInfo
+import com.android.launcher3.util.ComponentKey
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.MainThreadInitializedObject
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+
+/**
+ * The apps of all profiles, kept up to date from the apps bound by the launcher model, for the
+ * settings pages. The model doesn't contain the hidden apps, they are resolved separately so that
+ * they can still be unhidden. Unchanged apps keep their [App] across updates, with the icon they
+ * loaded.
+ */
+class AppCatalog @VisibleForTesting constructor(
+    private val context: Context,
+    attach: Boolean,
+    private val hiddenApps: () -> Set<String>,
+) {
+
+    constructor(context: Context) : this(
+        context,
+        true,
+        { Utilities.getOmegaPrefs(context).drawerHiddenAppSet.getValue() },
+    )
+
+    private val _apps = MutableStateFlow<List<App>>(emptyList())
+
+    /** The apps, ordered by [appComparator] */
+    val apps: StateFlow<List<App>> = _apps.asStateFlow()
+
+    // Only accessed on the main thread
+    private var appsByKey = HashMap<ComponentKey, App>()
+
+    init {
+        if (attach) {
+            // Only the apps are needed, the catalog doesn't take part in the workspace binds
+            LauncherAppState.getInstance(context).model.addAppsListener(::onAppsBound)
+            // The model only binds the apps when they change, start with the loaded ones
+            reload()
+        }
+    }
+
+    @WorkerThread
+    private fun onAppsBound(apps: Array<AppInfo>) {
+        // The bound apps are filtered, add the hidden ones
+        val data = withHiddenApps(apps)
+        MAIN_EXECUTOR.execute { update(data) }
+    }
+
+    private fun reload() {
+        LauncherAppState.getInstance(context).model
+            .enqueueModelUpdateTask(object : BaseModelUpdateTask() {
+                override fun execute(
+                    app: LauncherAppState,
+                    dataModel: BgDataModel,
+                    apps: AllAppsList
+                ) {
+                    onAppsBound(apps.copyData())
+                }
+            })
+    }
+
+    /**
+     * Returns [shownApps] with the hidden apps which are still installed
+     */
+    @VisibleForTesting
+    @WorkerThread
+    fun withHiddenApps(shownApps: Array<AppInfo>): Array<AppInfo> {
+        val hidden = hiddenApps()
+        if (hidden.isEmpty()) return shownApps
+        val shownKeys = shownApps.mapTo(HashSet()) { it.toComponentKey() }
+        val launcherApps = context.getSystemService(LauncherApps::class.java)
+        val iconCache = LauncherAppState.getInstance(context).iconCache
+        val hiddenInfos = hidden.mapNotNull { key ->
+            val componentKey = Utilities.makeComponentKey(context, key)
+            if (componentKey in shownKeys) return@mapNotNull null
+            val intent = Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setComponent(componentKey.componentName)
+            launcherApps.resolveActivity(intent, componentKey.user)?.let { info ->
+                AppInfo(context, info, componentKey.user)
+                    .also { iconCache.getTitleAndIcon(it, false) }
+            }
+        }
+        return shownApps + hiddenInfos
+    }
+
+    @VisibleForTesting
+    @MainThread
+    fun update(infos: Array<AppInfo>) {
+        val updated = HashMap<ComponentKey, App>(infos.size)
+        infos.forEach { info ->
+            val key = info.toComponentKey()
+            val current = appsByKey[key]
+            updated[key] = if (current != null && current.isSameAs(info)) current
+            else App(context, info)
+        }
+        appsByKey = updated
+        _apps.value = updated.values.sortedWith(appComparator)
+    }
+
+    companion object {
+        val INSTANCE = MainThreadInitializedObject(::AppCatalog)
+    }
+}
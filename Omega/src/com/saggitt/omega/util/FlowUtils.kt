@@ -1,9 +1,12 @@
 package com.saggitt.omega.util
 
 import android.content.BroadcastReceiver
+import android.content.ContentResolver
 import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
+import android.database.ContentObserver
+import android.net.Uri
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.collectAsState
 import kotlinx.coroutines.CoroutineScope
@@ -38,6 +41,16 @@ fun broadcastReceiverFlow(context: Context, filter: IntentFilter) = callbackFlow
     awaitClose { context.unregisterReceiver(receiver) }
 }
 
+fun contentObserverFlow(resolver: ContentResolver, uri: Uri) = callbackFlow {
+    val observer = object : ContentObserver(null) {
+        override fun onChange(selfChange: Boolean) {
+            trySend(Unit)
+        }
+    }
+    resolver.registerContentObserver(uri, true, observer)
+    awaitClose { resolver.unregisterContentObserver(observer) }
+}
+
 fun <T> Flow<T>.subscribeBlocking(
     scope: CoroutineScope,
     block: (T) -> Unit,
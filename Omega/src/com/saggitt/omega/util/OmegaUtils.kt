@@ -59,9 +59,8 @@ import com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR
 import com.android.launcher3.util.Themes
 import com.android.launcher3.views.OptionsPopupView
 import com.saggitt.omega.allapps.AppColorComparator
-import com.saggitt.omega.allapps.AppUsageComparator
 import com.saggitt.omega.allapps.InstallTimeComparator
-import com.saggitt.omega.data.AppTrackerRepository
+import com.saggitt.omega.data.AppUsageTracker
 import com.saggitt.omega.preferences.NeoPrefs
 import org.json.JSONObject
 import java.lang.reflect.Field
@@ -298,12 +297,7 @@ fun getAllAppsComparator(context: Context, sortType: Int): Comparator<AppInfo> {
             it.title.toString().lowercase()
         }
 
-        Config.SORT_MOST_USED       -> {
-            val repository = AppTrackerRepository.INSTANCE[context]
-            val appsCounter = repository.getAppsCount()
-            val mostUsedComparator = AppUsageComparator(appsCounter)
-            mostUsedComparator
-        }
+        Config.SORT_MOST_USED       -> AppUsageTracker.INSTANCE[context].getComparator()
 
         Config.SORT_BY_COLOR        -> AppColorComparator(context)
 
@@ -19,56 +19,79 @@
 package com.saggitt.omega.util
 
 import android.content.Context
-import android.content.pm.LauncherActivityInfo
-import android.content.pm.LauncherApps
 import android.graphics.Bitmap
-import android.os.Handler
+import android.os.SystemClock
+import android.util.Log
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.State
+import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
 import androidx.compose.ui.platform.LocalContext
 import com.android.launcher3.LauncherAppState
-import com.android.launcher3.Utilities
 import com.android.launcher3.model.data.AppInfo
-import com.android.launcher3.pm.UserCache
 import com.android.launcher3.util.ComponentKey
-import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
 import java.util.Locale
 
+private const val TAG = "AppList"
+
+/**
+ * Returns the apps of [AppCatalog], ordered by [comparator]
+ */
 @Composable
 fun appsState(
     comparator: Comparator<App> = appComparator
 ): State<List<App>> {
     val context = LocalContext.current
-    val appsState = remember { mutableStateOf(emptyList<App>()) }
+    val openTime = remember { SystemClock.elapsedRealtime() }
+    val catalog = remember { AppCatalog.INSTANCE.get(context).apps }
+    val appsState = remember(comparator) {
+        if (comparator === appComparator) catalog
+        else catalog.map { it.sortedWith(comparator) }
+    }.collectAsState(initial = remember(comparator) {
+        catalog.value.sortedWith(comparator)
+    })
     LaunchedEffect(true) {
-        Utilities.postAsyncCallback(Handler(MODEL_EXECUTOR.looper)) {
-            val launcherApps = context.getSystemService(LauncherApps::class.java)
-            val appsList = UserCache.INSTANCE.get(context).userProfiles.asSequence()
-                    .flatMap { launcherApps.getActivityList(null, it) }
-                    .map { App(context, it) }
-                    .sortedWith(comparator)
-                    .toList()
-            appsState.value = appsList
-        }
+        catalog.first { it.isNotEmpty() }
+        Log.d(TAG, "Apps available ${SystemClock.elapsedRealtime() - openTime}ms after opening")
     }
     return appsState
 }
 
-class App(context: Context, private val info: LauncherActivityInfo) {
+/**
+ * An app of [AppCatalog]. Its icon is the one loaded by the model, replaced by the high
+ * resolution icon when it is first shown if the model only has the low resolution one.
+ */
+class App(private val context: Context, private val info: AppInfo) {
+
+    val label = info.title.toString()
+    val packageName: String get() = key.componentName.packageName
+    val key: ComponentKey = info.toComponentKey()
+    internal val sortLabel = label.lowercase(Locale.getDefault())
+
+    // The icon of the model, to know whether this app is still up to date
+    private val modelIcon = info.bitmap
+    private val iconState = mutableStateOf(info.bitmap.icon)
+    private var highResRequested = false
 
-    val label get() = info.label.toString()
-    val packageName get() = info.componentName.packageName
     val icon: Bitmap
-    val key = ComponentKey(info.componentName, info.user)
+        get() {
+            if (!highResRequested && info.usingLowResIcon()) {
+                highResRequested = true
+                // Updates a copy, the info is shared with the model
+                LauncherAppState.getInstance(context).iconCache
+                    .updateIconInBackground({ iconState.value = it.bitmap.icon }, AppInfo(info))
+            }
+            return iconState.value
+        }
 
-    init {
-        val appInfo = AppInfo(context, info, info.user)
-        LauncherAppState.getInstance(context).iconCache.getTitleAndIcon(appInfo, false)
-        icon = appInfo.bitmap.icon
-    }
+    /**
+     * Returns whether this app still shows [other], which has the same key
+     */
+    fun isSameAs(other: AppInfo) = other.bitmap === modelIcon && other.title.toString() == label
 }
 
-val appComparator: Comparator<App> = comparing { it.label.lowercase(Locale.getDefault()) }
+val appComparator: Comparator<App> = comparing { it.sortLabel }
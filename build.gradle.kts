@@ -20,14 +20,12 @@ val vCoordinatorLayout = "1.2.0"
 val vCoroutines = "1.7.3"
 val vDynamicanimation = "1.1.0-alpha03"
 val vDSP = "1.0.0"
-val vHokoBlur = "1.5.2"
 val vKotlin = "1.9.10"
 val vLifecycle = "2.6.2"
 val vLifecycleExt = "2.2.0"
 val vMaterial = "1.10.0"
 val vNavigation = "2.7.4"
 val vOkhttp = "5.0.0-alpha.11"
-val vOWM = "2.1.0"
 val vPersianDate = "1.7.1"
 val vPalette = "1.0.0"
 val vPrefs = "1.2.1"
@@ -196,6 +194,13 @@ android {
             manifest.srcFile("AndroidManifest-common.xml")
         }
 
+        // The exported Room schemas, read by the migration tests
+        named("androidTest") {
+            assets.srcDirs(listOf("schemas"))
+        }
+
+        // The tests under tests/ aren't compiled by this build, including the ones relying on the
+        // schemas and mockwebserver above: they are run with the source sets below enabled.
         /*named("androidTest") {
             res.srcDirs(listOf("tests/res"))
             java.srcDirs(listOf("tests/src", "tests/tapl"))
@@ -271,12 +276,7 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:$vCoroutines")
     implementation("com.squareup.okhttp3:okhttp:$vOkhttp")
     implementation("com.github.samanzamani:PersianDate:$vPersianDate")
-    implementation("com.github.KwabenBerko:OpenWeatherMap-Android-Library:$vOWM") {
-        exclude("com.android.support", "support-compat")
-        exclude("com.android.support", "appcompat-v7")
-    }
     implementation("com.raedapps:alwan:$vAlwan")
-    implementation("io.github.hokofly:hoko-blur:$vHokoBlur")
     implementation("org.jetbrains.kotlinx:kotlinx-serialization-json:$vSerialization")
     implementation("me.xdrop:fuzzywuzzy:1.4.0")
 
@@ -318,6 +318,9 @@ dependencies {
     androidTestImplementation("androidx.test:runner:1.5.2")
     androidTestImplementation("androidx.test:rules:1.5.0")
     androidTestImplementation("androidx.test.uiautomator:uiautomator:2.2.0")
+    androidTestImplementation("androidx.room:room-testing:$vRoom")
+    androidTestImplementation("com.squareup.okhttp3:mockwebserver:$vOkhttp")
+    androidTestImplementation("com.squareup.okhttp3:okhttp-tls:$vOkhttp")
 
     androidTestImplementation("com.google.truth:truth:1.1.5")
     androidTestImplementation("org.mockito:mockito-core:5.0.0")
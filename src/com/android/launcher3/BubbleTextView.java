@@ -58,6 +58,7 @@ import androidx.annotation.VisibleForTesting;
 import com.android.launcher3.accessibility.BaseAccessibilityDelegate;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dragndrop.DragOptions.PreDragCondition;
 import com.android.launcher3.dragndrop.DraggableView;
 import com.android.launcher3.folder.FolderIcon;
@@ -73,6 +74,7 @@ import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.popup.PopupContainerWithArrow;
+import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.search.StringMatcherUtility;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.MultiTranslateDelegate;
@@ -312,6 +314,50 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
         }
     }
 
+    @Override
+    public void setTag(Object tag) {
+        super.setTag(tag);
+        if (isAttachedToWindow()) {
+            updateDotViewIndex();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateDotViewIndex();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        DotViewIndex index = getDotViewIndex();
+        if (index != null) {
+            index.removeView(this);
+        }
+    }
+
+    /**
+     * Registers the item of this view to have its dot updated when its notifications change.
+     */
+    private void updateDotViewIndex() {
+        DotViewIndex index = getDotViewIndex();
+        if (index == null) {
+            return;
+        }
+        if (getTag() instanceof ItemInfo) {
+            index.setItem(this, (ItemInfo) getTag());
+        } else {
+            index.removeView(this);
+        }
+    }
+
+    @Nullable
+    private DotViewIndex getDotViewIndex() {
+        PopupDataProvider provider = mActivity.getPopupDataProvider();
+        return provider == null ? null : provider.getDotViewIndex();
+    }
+
     private void cancelDotScaleAnim() {
         if (mDotScaleAnim != null) {
             mDotScaleAnim.cancel();
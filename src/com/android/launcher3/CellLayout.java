@@ -65,6 +65,7 @@ import com.android.launcher3.anim.Interpolators;
 import com.android.launcher3.celllayout.CellLayoutLayoutParams;
 import com.android.launcher3.celllayout.CellPosMapper.CellPos;
 import com.android.launcher3.celllayout.ReorderAlgorithm;
+import com.android.launcher3.celllayout.ReorderSolutionCache;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dragndrop.DraggableView;
 import com.android.launcher3.folder.PreviewBackground;
@@ -214,6 +215,7 @@ public class CellLayout extends ViewGroup {
     public final int[] mDirectionVector = new int[2];
 
     ItemConfiguration mPreviousSolution = null;
+    private final ReorderSolutionCache mReorderSolutionCache = new ReorderSolutionCache();
     private static final int INVALID_DIRECTION = -100;
 
     private final Rect mTempRect = new Rect();
@@ -498,7 +500,7 @@ public class CellLayout extends ViewGroup {
             debugPaint.setStrokeWidth(Utilities.dpToPx(1));
             for (int x = 0; x < mCountX; x++) {
                 for (int y = 0; y < mCountY; y++) {
-                    if (!mOccupied.cells[x][y]) {
+                    if (!mOccupied.isOccupied(x, y)) {
                         continue;
                     }
                     targetCell[0] = x;
@@ -1319,7 +1321,7 @@ public class CellLayout extends ViewGroup {
                     // First, let's see if this thing fits anywhere
                     for (int i = 0; i < minSpanX; i++) {
                         for (int j = 0; j < minSpanY; j++) {
-                            if (mOccupied.cells[x + i][y + j]) {
+                            if (mOccupied.isOccupied(x + i, y + j)) {
                                 continue inner;
                             }
                         }
@@ -1336,7 +1338,7 @@ public class CellLayout extends ViewGroup {
                     while (!(hitMaxX && hitMaxY)) {
                         if (incX && !hitMaxX) {
                             for (int j = 0; j < ySize; j++) {
-                                if (x + xSize > countX -1 || mOccupied.cells[x + xSize][y + j]) {
+                                if (x + xSize > countX -1 || mOccupied.isOccupied(x + xSize, y + j)) {
                                     // We can't move out horizontally
                                     hitMaxX = true;
                                 }
@@ -1346,7 +1348,7 @@ public class CellLayout extends ViewGroup {
                             }
                         } else if (!hitMaxY) {
                             for (int i = 0; i < xSize; i++) {
-                                if (y + ySize > countY - 1 || mOccupied.cells[x + i][y + ySize]) {
+                                if (y + ySize > countY - 1 || mOccupied.isOccupied(x + i, y + ySize)) {
                                     // We can't move out vertically
                                     hitMaxY = true;
                                 }
@@ -1774,16 +1776,17 @@ public class CellLayout extends ViewGroup {
      * @param spanX Horizontal span of the object.
      * @param spanY Vertical span of the object.
      * @param direction The favored direction in which the views should move from x, y
-     * @param occupied The array which represents which cells in the CellLayout are occupied
-     * @param blockOccupied The array which represents which cells in the specified block (cellX,
-     *        cellY, spanX, spanY) are occupied. This is used when try to move a group of views.
+     * @param occupied The occupancy of the cells in the CellLayout
+     * @param blockOccupied The occupancy of the cells in the specified block (cellX, cellY,
+     *        spanX, spanY). This is used when try to move a group of views.
      * @param result Array in which to place the result, or null (in which case a new array will
      *        be allocated)
      * @return The X, Y cell of a vacant area that can contain this object,
      *         nearest the requested location.
      */
     private int[] findNearestArea(int cellX, int cellY, int spanX, int spanY, int[] direction,
-                                  boolean[][] occupied, boolean blockOccupied[][], int[] result) {
+                                  GridOccupancy occupied, GridOccupancy blockOccupied,
+                                  int[] result) {
         // Keep track of best-scoring drop area
         final int[] bestXY = result != null ? result : new int[2];
         float bestDistance = Float.MAX_VALUE;
@@ -1798,7 +1801,8 @@ public class CellLayout extends ViewGroup {
                 // First, let's see if this thing fits anywhere
                 for (int i = 0; i < spanX; i++) {
                     for (int j = 0; j < spanY; j++) {
-                        if (occupied[x + i][y + j] && (blockOccupied == null || blockOccupied[i][j])) {
+                        if (occupied.isOccupied(x + i, y + j)
+                                && (blockOccupied == null || blockOccupied.isOccupied(i, j))) {
                             continue inner;
                         }
                     }
@@ -1838,7 +1842,7 @@ public class CellLayout extends ViewGroup {
         mTmpOccupied.markCells(rectOccupiedByPotentialDrop, true);
 
         findNearestArea(c.cellX, c.cellY, c.spanX, c.spanY, direction,
-                mTmpOccupied.cells, null, mTempLocation);
+                mTmpOccupied, null, mTempLocation);
 
         if (mTempLocation[0] >= 0 && mTempLocation[1] >= 0) {
             c.cellX = mTempLocation[0];
@@ -2321,7 +2325,7 @@ public class CellLayout extends ViewGroup {
 
         findNearestArea(boundingRect.left, boundingRect.top, boundingRect.width(),
                 boundingRect.height(), direction,
-                mTmpOccupied.cells, blockOccupied.cells, mTempLocation);
+                mTmpOccupied, blockOccupied, mTempLocation);
 
         // If we successfully found a location by pushing the block of views, we commit it
         if (mTempLocation[0] >= 0 && mTempLocation[1] >= 0) {
@@ -2399,14 +2403,24 @@ public class CellLayout extends ViewGroup {
         return true;
     }
 
-    public ReorderAlgorithm createReorderAlgorithm() {
+    /**
+     * Returns the rearrangements already explored during the current drag
+     */
+    public ReorderSolutionCache getReorderSolutionCache() {
+        return mReorderSolutionCache;
+    }
+
+    /**
+     * Returns the algorithm used to reorder the items of this layout
+     */
+    public ReorderAlgorithm getReorderAlgorithm() {
         return new ReorderAlgorithm(this);
     }
 
     protected ItemConfiguration findReorderSolution(int pixelX, int pixelY, int minSpanX,
                                                     int minSpanY, int spanX, int spanY, int[] direction, View dragView, boolean decX,
                                                     ItemConfiguration solution) {
-        return createReorderAlgorithm().findReorderSolution(pixelX, pixelY, minSpanX, minSpanY,
+        return getReorderAlgorithm().findReorderSolution(pixelX, pixelY, minSpanX, minSpanY,
                 spanX, spanY, direction, dragView, decX, solution);
     }
 
@@ -2415,13 +2429,17 @@ public class CellLayout extends ViewGroup {
         for (int i = 0; i < childCount; i++) {
             View child = mShortcutsAndWidgets.getChildAt(i);
             CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
-            CellAndSpan c;
-            if (temp) {
-                c = new CellAndSpan(lp.getTmpCellX(), lp.getTmpCellY(), lp.cellHSpan, lp.cellVSpan);
-            } else {
-                c = new CellAndSpan(lp.getCellX(), lp.getCellY(), lp.cellHSpan, lp.cellVSpan);
+            // Reuse the entries of a solution which is being recomputed, instead of allocating
+            // a new copy of every item
+            CellAndSpan c = solution.map.get(child);
+            if (c == null) {
+                c = new CellAndSpan();
+                solution.add(child, c);
             }
-            solution.add(child, c);
+            c.cellX = temp ? lp.getTmpCellX() : lp.getCellX();
+            c.cellY = temp ? lp.getTmpCellY() : lp.getCellY();
+            c.spanX = lp.cellHSpan;
+            c.spanY = lp.cellVSpan;
         }
     }
 
@@ -2442,7 +2460,7 @@ public class CellLayout extends ViewGroup {
      */
     public ItemConfiguration calculateReorder(int pixelX, int pixelY, int minSpanX, int minSpanY,
                                               int spanX, int spanY, View dragView) {
-        return createReorderAlgorithm().calculateReorder(pixelX, pixelY, minSpanX, minSpanY,
+        return getReorderAlgorithm().calculateReorder(pixelX, pixelY, minSpanX, minSpanY,
                 spanX, spanY, dragView);
     }
 
@@ -2639,6 +2657,7 @@ public class CellLayout extends ViewGroup {
     void onDragEnter() {
         mDragging = true;
         mPreviousSolution = null;
+        mReorderSolutionCache.clear();
     }
 
     /**
@@ -2654,6 +2673,7 @@ public class CellLayout extends ViewGroup {
 
         // Invalidate the drag data
         mPreviousSolution = null;
+        mReorderSolutionCache.clear();
         mDragCell[0] = mDragCell[1] = -1;
         mDragCellSpan[0] = mDragCellSpan[1] = -1;
         mDragOutlineAnims[mDragOutlineCurrent].animateOut();
@@ -2746,7 +2766,7 @@ public class CellLayout extends ViewGroup {
 
     public boolean isOccupied(int x, int y) {
         if (x < mCountX && y < mCountY) {
-            return mOccupied.cells[x][y];
+            return mOccupied.isOccupied(x, y);
         } else {
             throw new RuntimeException("Position exceeds the bound of this CellLayout");
         }
@@ -48,6 +48,7 @@ import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCH
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ONRESUME;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ONSTOP;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGET_RECONFIGURED;
+import static com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_ALLAPPS_OPEN;
 import static com.android.launcher3.model.ItemInstallQueue.FLAG_ACTIVITY_PAUSED;
 import static com.android.launcher3.model.ItemInstallQueue.FLAG_DRAG_AND_DROP;
 import static com.android.launcher3.popup.SystemShortcut.APP_INFO;
@@ -219,15 +220,20 @@ import com.android.systemui.plugins.shared.LauncherExterns;
 import com.android.systemui.plugins.shared.LauncherOverlayManager;
 import com.android.systemui.plugins.shared.LauncherOverlayManager.LauncherOverlay;
 import com.saggitt.omega.NeoLauncher;
+import com.saggitt.omega.data.AppUsageTracker;
 import com.saggitt.omega.preferences.NeoPrefs;
+import com.saggitt.omega.search.SearchAggregator;
+import com.saggitt.omega.smartspace.provider.SmartspaceProvider;
 import com.saggitt.omega.util.Config;
 import com.saulhdev.neolauncher.hotseat.ExpandableHotseat;
 import com.saulhdev.neolauncher.hotseat.ExpandableHotseatTransitionController;
 import com.saulhdev.neolauncher.hotseat.HotseatTransitionController;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -394,6 +400,8 @@ public class Launcher extends StatefulActivity<LauncherState>
     // User actions within AllApps state are logged with this InstanceId, to recreate AllApps
     // session on the server side.
     protected InstanceId mAllAppsSessionLogId;
+    // Start of the transition to the all apps state, 0 when not opening it
+    private long mAllAppsOpenStartTime;
     private LauncherState mPrevLauncherState;
 
     private StringCache mStringCache;
@@ -1116,6 +1124,7 @@ public class Launcher extends StatefulActivity<LauncherState>
                 && mAllAppsSessionLogId == null) {
             // creates new instance ID since new all apps session is started.
             mAllAppsSessionLogId = new InstanceIdSequence().newInstanceId();
+            mAllAppsOpenStartTime = SystemClock.uptimeMillis();
             if (getAllAppsEntryEvent().isPresent()) {
                 getStatsLogManager().logger()
                         .withContainerInfo(ContainerInfo.newBuilder()
@@ -1157,6 +1166,13 @@ public class Launcher extends StatefulActivity<LauncherState>
             getRotationHelper().setCurrentStateRequest(REQUEST_NONE);
         }
 
+        if (ALL_APPS.equals(state) && mAllAppsOpenStartTime != 0) {
+            getStatsLogManager().latencyLogger()
+                    .withLatency(SystemClock.uptimeMillis() - mAllAppsOpenStartTime)
+                    .log(LAUNCHER_LATENCY_ALLAPPS_OPEN);
+        }
+        mAllAppsOpenStartTime = 0;
+
         if (ALL_APPS.equals(mPrevLauncherState) && !ALL_APPS.equals(state)
                 // Making sure mAllAppsSessionLogId is not null to avoid double logging.
                 && mAllAppsSessionLogId != null) {
@@ -2136,6 +2152,10 @@ public class Launcher extends StatefulActivity<LauncherState>
         }
 
         boolean success = super.startActivitySafely(v, intent, item);
+        if (success && item != null && item.getTargetComponent() != null) {
+            AppUsageTracker.INSTANCE.get(this)
+                    .recordLaunch(item.getTargetComponent().getPackageName());
+        }
         if (success && v instanceof BubbleTextView) {
             // This is set to the view that launched the activity that navigated the user away
             // from launcher. Since there is no callback for when the activity has finished
@@ -3013,7 +3033,7 @@ public class Launcher extends StatefulActivity<LauncherState>
     }
 
     /**
-     * $ adb shell dumpsys activity com.android.launcher3.Launcher [--all]
+     * $ adb shell dumpsys activity com.android.launcher3.Launcher [--all] [--export-metrics]
      */
     @Override
     public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
@@ -3057,6 +3077,15 @@ public class Launcher extends StatefulActivity<LauncherState>
         mStateManager.dump(prefix, writer);
         mPopupDataProvider.dump(prefix, writer);
         mDeviceProfile.dump(prefix, writer);
+        SearchAggregator.dump(prefix, writer);
+        SmartspaceProvider.INSTANCE.get(this).dump(prefix, writer);
+        getStatsLogManager().dump(prefix, writer);
+        if (Arrays.asList(args).contains("--export-metrics")) {
+            File file = new File(getCacheDir(), "launcher_metrics.json");
+            if (getStatsLogManager().exportMetrics(file)) {
+                writer.println(prefix + "Metrics exported to " + file);
+            }
+        }
 
         try {
             FileLog.flushAll(writer);
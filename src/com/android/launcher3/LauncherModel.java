@@ -76,6 +76,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -113,6 +114,10 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
     @NonNull
     private final ArrayList<Callbacks> mCallbacksList = new ArrayList<>(1);
 
+    @NonNull
+    private final CopyOnWriteArrayList<Consumer<AppInfo[]>> mAppsListeners =
+            new CopyOnWriteArrayList<>();
+
     // < only access in worker thread >
     @NonNull
     private final AllAppsList mBgAllAppsList;
@@ -381,6 +386,30 @@ public class LauncherModel extends LauncherApps.Callback implements InstallSessi
         }
     }
 
+    /**
+     * Adds a listener which receives the apps on the model thread each time they are bound,
+     * without taking part in the workspace binds like {@link Callbacks}
+     */
+    public void addAppsListener(@NonNull final Consumer<AppInfo[]> listener) {
+        mAppsListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addAppsListener}
+     */
+    public void removeAppsListener(@NonNull final Consumer<AppInfo[]> listener) {
+        mAppsListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the apps listeners that {@param apps} are being bound
+     */
+    public void notifyAppsBound(@NonNull final AppInfo[] apps) {
+        for (Consumer<AppInfo[]> listener : mAppsListeners) {
+            MODEL_EXECUTOR.execute(() -> listener.accept(apps));
+        }
+    }
+
     /**
      * Starts the loader. Tries to bind {@params synchronousBindPage} synchronously if possible.
      * @return true if the page could be bound synchronously.
@@ -38,6 +38,8 @@ public class MultipageCellLayout extends CellLayout {
 
     private boolean mSeamWasAdded = false;
 
+    private MulticellReorderAlgorithm mReorderAlgorithm;
+
     public MultipageCellLayout(Context context) {
         this(context, null);
     }
@@ -71,14 +73,19 @@ public class MultipageCellLayout extends CellLayout {
             cellX++;
         }
         int finalCellX = cellX;
-        return ((MulticellReorderAlgorithm) createReorderAlgorithm()).simulateSeam(
+        return ((MulticellReorderAlgorithm) getReorderAlgorithm()).simulateSeam(
                 () -> super.createAreaForResize(finalCellX, cellY, spanX, spanY, dragView,
                         direction, commit));
     }
 
     @Override
-    public ReorderAlgorithm createReorderAlgorithm() {
-        return new MulticellReorderAlgorithm(this);
+    public ReorderAlgorithm getReorderAlgorithm() {
+        // Reuse the same algorithm so that the simulated seam is the same view across reorders,
+        // which keeps the solutions in the ReorderSolutionCache valid.
+        if (mReorderAlgorithm == null) {
+            mReorderAlgorithm = new MulticellReorderAlgorithm(this);
+        }
+        return mReorderAlgorithm;
     }
 
     @Override
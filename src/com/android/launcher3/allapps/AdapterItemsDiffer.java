@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies new lists of {@link AdapterItem}s to an adapter, computing the changes on a background
+ * thread. Submitting a list cancels the lists which were submitted before and not yet applied.
+ */
+public class AdapterItemsDiffer {
+
+    /**
+     * Lists up to this size are diffed on the calling thread, posting the work would cost more
+     * than the diff itself.
+     */
+    private static final int SYNC_DIFF_MAX_ITEMS = 64;
+
+    private volatile int mGeneration = 0;
+
+    /**
+     * Replaces {@code currentItems} with {@code newItems}.
+     *
+     * @param currentItems the items currently shown by the adapter
+     * @param newItems     the items to show
+     * @param adapter      the adapter to notify of the changes
+     * @param commit       swaps the items shown by the adapter, called on the main thread right
+     *                     before the changes are dispatched. It is not called if a newer list is
+     *                     submitted in the meantime.
+     */
+    @UiThread
+    public void submit(List<AdapterItem> currentItems, List<AdapterItem> newItems,
+            @Nullable RecyclerView.Adapter<?> adapter, Runnable commit) {
+        int generation = ++mGeneration;
+        if (adapter == null) {
+            commit.run();
+            return;
+        }
+        List<AdapterItem> oldItems = new ArrayList<>(currentItems);
+        if (oldItems.isEmpty() || newItems.isEmpty()
+                || Math.max(oldItems.size(), newItems.size()) <= SYNC_DIFF_MAX_ITEMS) {
+            DiffUtil.DiffResult result = calculateDiff(oldItems, newItems);
+            commit.run();
+            result.dispatchUpdatesTo(adapter);
+            return;
+        }
+
+        UI_HELPER_EXECUTOR.execute(() -> {
+            if (generation != mGeneration) {
+                return;
+            }
+            DiffUtil.DiffResult result = calculateDiff(oldItems, newItems);
+            MAIN_EXECUTOR.execute(() -> {
+                if (generation != mGeneration) {
+                    return;
+                }
+                // The items may have been changed directly while the diff was computed
+                boolean unchanged = isSameList(oldItems, currentItems);
+                commit.run();
+                if (unchanged) {
+                    result.dispatchUpdatesTo(adapter);
+                } else {
+                    adapter.notifyDataSetChanged();
+                }
+            });
+        });
+    }
+
+    private static DiffUtil.DiffResult calculateDiff(List<AdapterItem> oldItems,
+            List<AdapterItem> newItems) {
+        return DiffUtil.calculateDiff(new AdapterItemsDiffCallback(oldItems, newItems), false);
+    }
+
+    private static boolean isSameList(List<AdapterItem> a, List<AdapterItem> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class AdapterItemsDiffCallback extends DiffUtil.Callback {
+        private final List<AdapterItem> mOldList;
+        private final List<AdapterItem> mNewList;
+
+        AdapterItemsDiffCallback(List<AdapterItem> oldList, List<AdapterItem> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).isSameAs(mNewList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldList.get(oldItemPosition).isContentSame(mNewList.get(newItemPosition));
+        }
+    }
+}
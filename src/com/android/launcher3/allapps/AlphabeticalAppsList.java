@@ -15,12 +15,15 @@
  */
 package com.android.launcher3.allapps;
 
-import static com.saggitt.omega.util.OmegaUtilsKt.getAllAppsComparator;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 
 import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.Nullable;
-import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.launcher3.BaseDraggingActivity;
 import com.android.launcher3.LauncherAppState;
@@ -34,19 +37,23 @@ import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.views.ActivityContext;
+import com.saggitt.omega.allapps.DrawerAppsSorter;
 import com.saggitt.omega.groups.category.DrawerFolderInfo;
 import com.saggitt.omega.preferences.NeoPrefs;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * The alphabetically sorted list of applications.
@@ -89,7 +96,16 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     // The of ordered component names as a result of a search query
     private final ArrayList<AdapterItem> mSearchResults = new ArrayList<>();
     private BaseAllAppsAdapter<T> mAdapter;
-    private Comparator<AppInfo> mAppNameComparator;
+    private final DrawerAppsSorter mAppsSorter;
+    // Incremented for each update of the apps, results of older updates are dropped
+    private int mAppsUpdateId = 0;
+    private final AdapterItemsDiffer mItemsDiffer = new AdapterItemsDiffer();
+    // The ids given to the current items, by the key identifying them
+    private final HashMap<Object, Long> mStableIds = new HashMap<>();
+    private long mNextStableId = 0;
+    // The ids of the current adapter items. The items can be shared with the search results and
+    // the lists being diffed, so the ids are kept apart from them.
+    private Map<AdapterItem, Long> mItemIds = new IdentityHashMap<>();
     private final int mNumAppsPerRowAllApps;
     private int mNumAppRowsInAdapter;
     private Predicate<ItemInfo> mItemFilter;
@@ -108,8 +124,8 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         }
 
         prefs = Utilities.getOmegaPrefs(context);
-        mAppNameComparator = getAllAppsComparator(context, prefs.getDrawerSortMode().getValue());
         mLauncher = BaseDraggingActivity.fromContext(context);
+        mAppsSorter = new DrawerAppsSorter(mLauncher);
     }
 
     public void updateItemFilter(Predicate<ItemInfo> itemFilter) {
@@ -138,6 +154,14 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         return mAdapterItems;
     }
 
+    /**
+     * Returns the stable id of the adapter item at {@code position}.
+     */
+    public long getItemId(int position) {
+        Long id = mItemIds.get(mAdapterItems.get(position));
+        return id != null ? id : RecyclerView.NO_ID;
+    }
+
     /**
      * Returns the child adapter item with IME launch focus.
      */
@@ -197,43 +221,70 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     }
 
     /**
-     * Updates internals when the set of apps are updated.
+     * Updates internals when the set of apps are updated. The apps are sorted in the background,
+     * the adapter items are updated once they are ready.
      */
     @Override
     public void onAppsUpdated() {
         if (mAllAppsStore == null) {
             return;
         }
-        // Sort the list of apps
-        mApps.clear();
-        mAppNameComparator = getAllAppsComparator(mLauncher, prefs.getDrawerSortMode().getValue());
-
-        Stream<AppInfo> appSteam = Stream.of(mAllAppsStore.getApps());
+        // The store replaces its array on updates, it can be read from any thread
+        AppInfo[] storeApps = mAllAppsStore.getApps();
+        List<AppInfo> apps;
         if (!hasSearchResults() && mItemFilter != null) {
-            appSteam = appSteam.filter(mItemFilter);
+            // The filters rely on state of the main thread, only the sort is moved
+            apps = new ArrayList<>(storeApps.length);
+            for (AppInfo info : storeApps) {
+                if (mItemFilter.test(info)) {
+                    apps.add(info);
+                }
+            }
+        } else {
+            apps = Arrays.asList(storeApps);
         }
-        appSteam = appSteam.sorted(mAppNameComparator);
+        int sortMode = prefs.getDrawerSortMode().getValue();
+        Locale curLocale = mActivityContext.getResources().getConfiguration().locale;
+        int updateId = ++mAppsUpdateId;
+        long startTime = SystemClock.elapsedRealtime();
+        UI_HELPER_EXECUTOR.execute(() -> {
+            List<AppInfo> sortedApps = sortApps(apps, sortMode, curLocale);
+            MAIN_EXECUTOR.execute(() -> {
+                if (updateId != mAppsUpdateId) {
+                    return;
+                }
+                mApps.clear();
+                mApps.addAll(sortedApps);
+                // Recompose the set of adapter items from the current set of apps
+                if (mSearchResults.isEmpty()) {
+                    updateAdapterItems();
+                }
+                Log.d(TAG, "Updated " + mApps.size() + " apps in "
+                        + (SystemClock.elapsedRealtime() - startTime) + " ms");
+            });
+        });
+    }
+
+    private List<AppInfo> sortApps(List<AppInfo> apps, int sortMode, Locale curLocale) {
+        List<AppInfo> sortedApps = mAppsSorter.sort(apps, sortMode);
 
         // As a special case for some languages (currently only Simplified Chinese), we may need to
         // coalesce sections
-        Locale curLocale = mActivityContext.getResources().getConfiguration().locale;
         boolean localeRequiresSectionSorting = curLocale.equals(Locale.SIMPLIFIED_CHINESE);
         if (localeRequiresSectionSorting) {
             // Compute the section headers. We use a TreeMap with the section name comparator to
             // ensure that the sections are ordered when we iterate over it later
-            appSteam = appSteam.collect(Collectors.groupingBy(
+            sortedApps = sortedApps.stream()
+                    .collect(Collectors.groupingBy(
                             info -> info.sectionName,
                             () -> new TreeMap<>(new LabelComparator()),
                             Collectors.toCollection(ArrayList::new)))
                     .values()
                     .stream()
-                    .flatMap(ArrayList::stream);
-        }
-        appSteam.forEachOrdered(mApps::add);
-        // Recompose the set of adapter items from the current set of apps
-        if (mSearchResults.isEmpty()) {
-            updateAdapterItems();
+                    .flatMap(ArrayList::stream)
+                    .collect(Collectors.toList());
         }
+        return sortedApps;
     }
 
     /**
@@ -241,45 +292,45 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
      */
     public void updateAdapterItems() {
-        List<AdapterItem> oldItems = new ArrayList<>(mAdapterItems);
-        // Prepare to update the list of sections, filtered apps, etc.
-        mFastScrollerSections.clear();
-        mAdapterItems.clear();
-        mAccessibilityResultsCount = 0;
+        // Prepare the new list of sections, filtered apps, etc. They replace the current ones
+        // once the changes to the adapter are known.
+        List<FastScrollSectionInfo> fastScrollerSections = new ArrayList<>();
+        List<AdapterItem> adapterItems = new ArrayList<>();
         // Recreate the filtered and sectioned apps (for convenience for the grid layout) from the
         // ordered set of sections
         if (hasSearchResults()) {
-            mAdapterItems.addAll(mSearchResults);
+            adapterItems.addAll(mSearchResults);
         } else {
             int position = 0;
             boolean addApps = true;
             if (mWorkProviderManager != null) {
-                position += mWorkProviderManager.addWorkItems(mAdapterItems);
+                position += mWorkProviderManager.addWorkItems(adapterItems);
                 addApps = mWorkProviderManager.shouldShowWorkApps();
             }
             if (addApps) {
                 String lastSectionName = null;
                 for (AppInfo info : mApps) {
-                    mAdapterItems.add(AdapterItem.asApp(info));
+                    adapterItems.add(AdapterItem.asApp(info));
                     String sectionName = info.sectionName;
                     // Create a new section if the section names do not match
                     if (!sectionName.equals(lastSectionName)) {
                         lastSectionName = sectionName;
-                        mFastScrollerSections.add(new FastScrollSectionInfo(sectionName, position));
+                        fastScrollerSections.add(new FastScrollSectionInfo(sectionName, position));
                     }
                     position++;
                 }
             }
         }
-        mAccessibilityResultsCount = (int) mAdapterItems.stream()
+        int accessibilityResultsCount = (int) adapterItems.stream()
                 .filter(AdapterItem::isCountedForAccessibility).count();
+        int numAppRowsInAdapter = mNumAppRowsInAdapter;
         if (mNumAppsPerRowAllApps != 0) {
             // Update the number of rows in the adapter after we do all the merging (otherwise, we
             // would have to shift the values again)
             int numAppsInSection = 0;
             int numAppsInRow = 0;
             int rowIndex = -1;
-            for (AdapterItem item : mAdapterItems) {
+            for (AdapterItem item : adapterItems) {
                 item.rowIndex = 0;
                 if (BaseAllAppsAdapter.isDividerViewType(item.viewType)) {
                     numAppsInSection = 0;
@@ -294,12 +345,52 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                     numAppsInRow++;
                 }
             }
-            mNumAppRowsInAdapter = rowIndex + 1;
+            numAppRowsInAdapter = rowIndex + 1;
         }
-        if (mAdapter != null) {
-            DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
-                    .dispatchUpdatesTo(mAdapter);
+        Map<AdapterItem, Long> itemIds = assignStableIds(adapterItems);
+
+        int finalNumAppRowsInAdapter = numAppRowsInAdapter;
+        mItemsDiffer.submit(mAdapterItems, adapterItems, mAdapter, () -> {
+            mFastScrollerSections.clear();
+            mFastScrollerSections.addAll(fastScrollerSections);
+            mAdapterItems.clear();
+            mAdapterItems.addAll(adapterItems);
+            mItemIds = itemIds;
+            mAccessibilityResultsCount = accessibilityResultsCount;
+            mNumAppRowsInAdapter = finalNumAppRowsInAdapter;
+        });
+    }
+
+    /**
+     * Returns the ids of {@code items}, each item keeping the id it had in the previous lists, so
+     * that the adapter can keep the views of items which are only moved. The ids of the keys
+     * which aren't in {@code items} anymore are dropped.
+     */
+    private Map<AdapterItem, Long> assignStableIds(List<AdapterItem> items) {
+        Map<AdapterItem, Long> itemIds = new IdentityHashMap<>();
+        Set<Long> usedIds = new HashSet<>();
+        Set<Object> keys = new HashSet<>();
+        for (AdapterItem item : items) {
+            Object key = item.getStableKey();
+            if (key != null) {
+                keys.add(key);
+            }
+            Long id = key == null ? null : mStableIds.get(key);
+            if (id == null) {
+                id = mNextStableId++;
+                if (key != null) {
+                    mStableIds.put(key, id);
+                }
+            }
+            if (!usedIds.add(id)) {
+                // The same app can be shown more than once, ids must be unique within a list
+                id = mNextStableId++;
+                usedIds.add(id);
+            }
+            itemIds.put(item, id);
         }
+        mStableIds.keySet().retainAll(keys);
+        return itemIds;
     }
 
     /**
@@ -326,34 +417,4 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                 .getDrawerFolders()
                 .getHiddenComponents();
     }
-
-    private static class MyDiffCallback extends DiffUtil.Callback {
-        private final List<AdapterItem> mOldList;
-        private final List<AdapterItem> mNewList;
-
-        MyDiffCallback(List<AdapterItem> oldList, List<AdapterItem> newList) {
-            mOldList = oldList;
-            mNewList = newList;
-        }
-
-        @Override
-        public int getOldListSize() {
-            return mOldList.size();
-        }
-
-        @Override
-        public int getNewListSize() {
-            return mNewList.size();
-        }
-
-        @Override
-        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-            return mOldList.get(oldItemPosition).isSameAs(mNewList.get(newItemPosition));
-        }
-
-        @Override
-        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-            return mOldList.get(oldItemPosition).isContentSame(mNewList.get(newItemPosition));
-        }
-    }
-}
\ No newline at end of file
+}
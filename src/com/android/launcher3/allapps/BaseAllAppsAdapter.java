@@ -40,8 +40,12 @@ import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.views.ActivityContext;
+import com.saggitt.omega.data.models.PeopleInfo;
 import com.saggitt.omega.groups.DrawerFolderItem;
 import com.saggitt.omega.groups.category.DrawerFolderInfo;
+import com.saggitt.omega.search.PeopleSearchSource;
+
+import java.util.Objects;
 
 /**
  * Adapter for all the apps.
@@ -66,7 +70,10 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
     // Drawer folders
     public static final int VIEW_TYPE_FOLDER = 1 << 6;
 
-    public static final int NEXT_ID = 7;
+    // A contact in the search results
+    public static final int VIEW_TYPE_CONTACT = 1 << 7;
+
+    public static final int NEXT_ID = 8;
 
     // Common view type masks
     public static final int VIEW_TYPE_MASK_DIVIDER = VIEW_TYPE_ALL_APPS_DIVIDER;
@@ -107,11 +114,37 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
         public AppInfo itemInfo = null;
         // The associated folder for the folder
         public DrawerFolderItem folderItem = null;
+        // The associated contact for the contact
+        public PeopleInfo contactInfo = null;
+
+        private Object mStableKey;
 
         public AdapterItem(int viewType) {
             this.viewType = viewType;
         }
 
+        /**
+         * Returns the object identifying this item in successive lists, or null if the item
+         * can't be matched with the items of other lists.
+         */
+        @Nullable
+        public Object getStableKey() {
+            if (mStableKey == null) {
+                if (itemInfo != null) {
+                    mStableKey = itemInfo.toComponentKey();
+                } else if (folderItem != null) {
+                    mStableKey = folderItem.getInfo();
+                } else if (contactInfo != null) {
+                    mStableKey = "contact/" + contactInfo.getContactId();
+                } else if (viewType == VIEW_TYPE_ALL_APPS_DIVIDER
+                        || viewType == VIEW_TYPE_WORK_EDU_CARD
+                        || viewType == VIEW_TYPE_WORK_DISABLED_CARD) {
+                    mStableKey = viewType;
+                }
+            }
+            return mStableKey;
+        }
+
         /**
          * Factory method for AppIcon AdapterItem
          */
@@ -127,6 +160,12 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
             return item;
         }
 
+        public static AdapterItem asContact(PeopleInfo contactInfo) {
+            AdapterItem item = new AdapterItem(VIEW_TYPE_CONTACT);
+            item.contactInfo = contactInfo;
+            return item;
+        }
+
         protected boolean isCountedForAccessibility() {
             return viewType == VIEW_TYPE_ICON;
         }
@@ -135,7 +174,8 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
          * Returns true if the items represent the same object
          */
         public boolean isSameAs(AdapterItem other) {
-            return (other.viewType == viewType) && (other.getClass() == getClass());
+            return (other.viewType == viewType) && (other.getClass() == getClass())
+                    && Objects.equals(getStableKey(), other.getStableKey());
         }
 
         /**
@@ -143,7 +183,8 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
          * as well. Returning true will prevent redrawing of thee item.
          */
         public boolean isContentSame(AdapterItem other) {
-            return itemInfo == null && other.itemInfo == null;
+            return itemInfo == null && other.itemInfo == null
+                    && Objects.equals(contactInfo, other.contactInfo);
         }
 
         /**
@@ -177,6 +218,7 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
         mAdapterProvider = adapterProvider;
         mExtraTextHeight = Utilities.calculateTextHeight(
                 mActivityContext.getDeviceProfile().allAppsIconTextSizePx);
+        setHasStableIds(true);
     }
 
     /**
@@ -241,6 +283,9 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
                         mActivityContext.getDeviceProfile().allAppsCellHeightPx);
                 folder.setLayoutParams(lp);
                 return new ViewHolder(folder);
+            case VIEW_TYPE_CONTACT:
+                return new ViewHolder(mLayoutInflater.inflate(
+                        R.layout.all_apps_contact, parent, false));
             case VIEW_TYPE_WORK_EDU_CARD:
                 return new ViewHolder(mLayoutInflater.inflate(
                         R.layout.work_apps_edu, parent, false));
@@ -285,6 +330,10 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
                 container.removeAllViews();
                 container.addView(folderIcon);
                 break;
+            case VIEW_TYPE_CONTACT:
+                PeopleSearchSource.bindContactView((TextView) holder.itemView,
+                        mApps.getAdapterItems().get(position).contactInfo);
+                break;
             case VIEW_TYPE_WORK_EDU_CARD:
                 ((WorkEduCard) holder.itemView).setPosition(position);
                 break;
@@ -306,6 +355,11 @@ public abstract class BaseAllAppsAdapter<T extends Context & ActivityContext> ex
         return mApps.getAdapterItems().size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mApps.getItemId(position);
+    }
+
     @Override
     public int getItemViewType(int position) {
         AdapterItem item = mApps.getAdapterItems().get(position);
@@ -41,7 +41,7 @@ import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.allapps.SearchUiManager;
 import com.android.launcher3.search.SearchCallback;
 import com.android.launcher3.views.ActivityContext;
-import com.saggitt.omega.search.NeoAppSearchAlgorithm;
+import com.saggitt.omega.search.SearchAggregator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -132,7 +132,7 @@ public class AppsSearchContainerLayout extends ExtendedEditText
     public void initializeSearch(ActivityAllAppsContainerView<?> appsView) {
         mAppsView = appsView;
         mSearchBarController.initialize(
-                new NeoAppSearchAlgorithm(getContext()),
+                SearchAggregator.create(getContext()),
                 this, mLauncher, this);
     }
 
@@ -116,11 +116,9 @@ public class MulticellReorderAlgorithm extends ReorderAlgorithm {
         for (int x = 0; x < mCellLayout.getCountX(); x++) {
             for (int y = 0; y < mCellLayout.getCountY(); y++) {
                 int offset = x >= mCellLayout.getCountX() / 2 ? 1 : 0;
-                if (x == mCellLayout.getCountX() / 2) {
-                    grid.cells[x][y] = true;
-                } else {
-                    grid.cells[x][y] = gridOccupancy.cells[x - offset][y];
-                }
+                boolean occupied = x == mCellLayout.getCountX() / 2
+                        || gridOccupancy.isOccupied(x - offset, y);
+                grid.markCells(x, y, 1, 1, occupied);
             }
         }
         return grid;
@@ -15,10 +15,13 @@
  */
 package com.android.launcher3.celllayout;
 
+import android.os.SystemClock;
 import android.view.View;
 
 import com.android.launcher3.CellLayout;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Contains the logic of a reorder.
  * <p>
@@ -27,8 +30,18 @@ import com.android.launcher3.CellLayout;
  */
 public class ReorderAlgorithm {
 
+    /**
+     * Time {@link #calculateReorder} may spend looking for a reorder which shrinks the item,
+     * roughly half a frame so that drag moves don't drop frames.
+     */
+    private static final long REORDER_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
     CellLayout mCellLayout;
 
+    private long mDeadlineNanos = NO_DEADLINE;
+
     public ReorderAlgorithm(CellLayout cellLayout) {
         mCellLayout = cellLayout;
     }
@@ -61,9 +74,6 @@ public class ReorderAlgorithm {
                                                             CellLayout.ItemConfiguration solution) {
         // Copy the current state into the solution. This solution will be manipulated as necessary.
         mCellLayout.copyCurrentStateToSolution(solution, false);
-        // Copy the current occupied array into the temporary occupied array. This array will be
-        // manipulated as necessary to find a solution.
-        mCellLayout.getOccupied().copyTo(mCellLayout.mTmpOccupied);
 
         // We find the nearest cell into which we would place the dragged item, assuming there's
         // nothing in its way.
@@ -73,10 +83,16 @@ public class ReorderAlgorithm {
         boolean success;
         // First we try the exact nearest position of the item being dragged,
         // we will then want to try to move this around to other neighbouring positions
-        success = mCellLayout.rearrangementExists(result[0], result[1], spanX, spanY, direction,
-                dragView, solution);
+        success = rearrangementExists(result[0], result[1], spanX, spanY, direction, dragView,
+                solution);
 
         if (!success) {
+            if (SystemClock.elapsedRealtimeNanos() > mDeadlineNanos) {
+                // Out of time, calculateReorder falls back to the solutions which don't push
+                // any item.
+                solution.isSolution = false;
+                return solution;
+            }
             // We try shrinking the widget down to size in an alternating pattern, shrink 1 in
             // x, then 1 in y etc.
             if (spanX > minSpanX && (minSpanY == spanY || decX)) {
@@ -97,6 +113,28 @@ public class ReorderAlgorithm {
         return solution;
     }
 
+    /**
+     * Same as {@link CellLayout#rearrangementExists} but reuses the result of previous attempts
+     * with the same arguments during the current drag.
+     */
+    private boolean rearrangementExists(int cellX, int cellY, int spanX, int spanY,
+            int[] direction, View dragView, CellLayout.ItemConfiguration solution) {
+        ReorderSolutionCache cache = mCellLayout.getReorderSolutionCache();
+        cache.validate(solution, mCellLayout.getOccupied(), dragView);
+        int key = ReorderSolutionCache.getKey(cellX, cellY, spanX, spanY, direction);
+        if (cache.contains(key)) {
+            return cache.restore(key, direction, solution);
+        }
+
+        // Copy the current occupied array into the temporary occupied array. This array will be
+        // manipulated as necessary to find a solution.
+        mCellLayout.getOccupied().copyTo(mCellLayout.mTmpOccupied);
+        boolean success = mCellLayout.rearrangementExists(cellX, cellY, spanX, spanY, direction,
+                dragView, solution);
+        cache.put(key, success, direction, solution);
+        return success;
+    }
+
     /**
      * Returns a "reorder" if there is empty space without rearranging anything.
      *
@@ -174,6 +212,17 @@ public class ReorderAlgorithm {
      */
     public CellLayout.ItemConfiguration calculateReorder(int pixelX, int pixelY, int minSpanX,
                                                          int minSpanY, int spanX, int spanY, View dragView) {
+        mDeadlineNanos = SystemClock.elapsedRealtimeNanos() + REORDER_BUDGET_NANOS;
+        try {
+            return calculateReorderInternal(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY,
+                    dragView);
+        } finally {
+            mDeadlineNanos = NO_DEADLINE;
+        }
+    }
+
+    private CellLayout.ItemConfiguration calculateReorderInternal(int pixelX, int pixelY,
+            int minSpanX, int minSpanY, int spanX, int spanY, View dragView) {
         mCellLayout.getDirectionVectorForDrop(pixelX, pixelY, spanX, spanY, dragView,
                 mCellLayout.mDirectionVector);
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import android.util.ArrayMap;
+import android.util.SparseArray;
+import android.view.View;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.GridOccupancy;
+
+import java.util.ArrayList;
+
+/**
+ * Remembers the outcome of {@link CellLayout#rearrangementExists} for each (cell, span,
+ * direction) explored during a drag, so that drag moves over an area which was already explored
+ * don't run the push search again.
+ * <p>
+ * Results are only valid for the item positions and occupancy they were computed from, the cache
+ * drops all its entries as soon as either changes.
+ */
+public class ReorderSolutionCache {
+
+    private static final int NO_KEY = -1;
+
+    private final SparseArray<Entry> mEntries = new SparseArray<>();
+    private final ArrayMap<View, CellAndSpan> mState = new ArrayMap<>();
+    private GridOccupancy mOccupied;
+    private View mDragView;
+
+    /**
+     * Makes sure the cached entries were computed from the given state, clearing them otherwise.
+     *
+     * @param currentState the positions of the items before any rearrangement
+     * @param occupied     the occupancy of the CellLayout before any rearrangement
+     * @param dragView     the view being dragged, if it belongs to the CellLayout
+     */
+    public void validate(ItemConfiguration currentState, GridOccupancy occupied, View dragView) {
+        if (dragView == mDragView && occupied.equals(mOccupied) && isSameState(currentState)) {
+            return;
+        }
+        clear();
+        mDragView = dragView;
+        mOccupied = occupied.copy();
+        currentState.map.forEach((view, c) -> mState.put(view, new CellAndSpan(
+                c.cellX, c.cellY, c.spanX, c.spanY)));
+    }
+
+    private boolean isSameState(ItemConfiguration currentState) {
+        if (currentState.map.size() != mState.size()) {
+            return false;
+        }
+        for (int i = currentState.map.size() - 1; i >= 0; i--) {
+            CellAndSpan cached = mState.get(currentState.map.keyAt(i));
+            CellAndSpan c = currentState.map.valueAt(i);
+            if (cached == null || cached.cellX != c.cellX || cached.cellY != c.cellY
+                    || cached.spanX != c.spanX || cached.spanY != c.spanY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key under which the result of a rearrangement is stored, or -1 if the
+     * arguments can't be cached.
+     */
+    public static int getKey(int cellX, int cellY, int spanX, int spanY, int[] direction) {
+        if (cellX < 0 || cellY < 0 || cellX >= Long.SIZE || cellY >= Long.SIZE
+                || spanX <= 0 || spanY <= 0 || spanX > Long.SIZE || spanY > Long.SIZE
+                || Math.abs(direction[0]) > 1 || Math.abs(direction[1]) > 1) {
+            return NO_KEY;
+        }
+        // 6 bits per cell coordinate, 7 bits per span and 2 bits per direction component
+        return cellX | cellY << 6 | (spanX - 1) << 12 | (spanY - 1) << 19
+                | (direction[0] + 1) << 26 | (direction[1] + 1) << 28;
+    }
+
+    public boolean contains(int key) {
+        return key != NO_KEY && mEntries.get(key) != null;
+    }
+
+    /**
+     * Applies a cached rearrangement to the solution and to the direction vector, the same way
+     * {@link CellLayout#rearrangementExists} would.
+     *
+     * @return whether a rearrangement exists
+     */
+    public boolean restore(int key, int[] direction, ItemConfiguration solution) {
+        Entry entry = mEntries.get(key);
+        direction[0] = entry.directionX;
+        direction[1] = entry.directionY;
+        if (!entry.success) {
+            return false;
+        }
+        entry.positions.forEach((view, c) -> {
+            CellAndSpan target = solution.map.get(view);
+            if (target != null) {
+                target.copyFrom(c);
+            }
+        });
+        solution.intersectingViews = new ArrayList<>(entry.intersectingViews);
+        return true;
+    }
+
+    /**
+     * Stores the outcome of {@link CellLayout#rearrangementExists} for the given key.
+     */
+    public void put(int key, boolean success, int[] direction, ItemConfiguration solution) {
+        if (key == NO_KEY) {
+            return;
+        }
+        Entry entry = new Entry(success, direction[0], direction[1]);
+        if (success) {
+            solution.map.forEach((view, c) -> entry.positions.put(view, new CellAndSpan(
+                    c.cellX, c.cellY, c.spanX, c.spanY)));
+            entry.intersectingViews.addAll(solution.intersectingViews);
+        }
+        mEntries.put(key, entry);
+    }
+
+    public void clear() {
+        mEntries.clear();
+        mState.clear();
+        mOccupied = null;
+        mDragView = null;
+    }
+
+    private static class Entry {
+        final boolean success;
+        final int directionX;
+        final int directionY;
+        final ArrayMap<View, CellAndSpan> positions = new ArrayMap<>();
+        final ArrayList<View> intersectingViews = new ArrayList<>();
+
+        Entry(boolean success, int directionX, int directionY) {
+            this.success = success;
+            this.directionX = directionX;
+            this.directionY = directionY;
+        }
+    }
+}
@@ -261,6 +261,11 @@ public final class FeatureFlags {
             "ENABLE_PREMIUM_HAPTICS_ALL_APPS", false,
             "Enables haptics opening/closing All apps");
 
+    // Neo Launcher only, without a tracking bug
+    public static final BooleanFlag ENABLE_WORKSPACE_SNAPSHOT = getDebugFlag(0,
+            "ENABLE_WORKSPACE_SNAPSHOT", true,
+            "Bind the last known workspace from a snapshot before the database load completes");
+
     public static class BooleanFlag {
 
         private final boolean mCurrentValue;
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.dot;
+
+import android.util.ArraySet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Indexes the attached views which can show a notification dot by the {@link PackageUserKey}s of
+ * the items they show, so that a notification change only updates the views of its packages.
+ */
+public class DotViewIndex {
+
+    private final HashMap<PackageUserKey, ArrayList<View>> mViewsByKey = new HashMap<>();
+    private final HashMap<View, ArrayList<PackageUserKey>> mKeysByView = new HashMap<>();
+    private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+
+    /**
+     * Indexes the view under the key of the item, replacing its previous keys.
+     */
+    public void setItem(@NonNull View view, @NonNull ItemInfo item) {
+        setItems(view, Collections.singletonList(item));
+    }
+
+    /**
+     * Indexes the view under the keys of the items, replacing its previous keys.
+     */
+    public void setItems(@NonNull View view, @NonNull Collection<? extends ItemInfo> items) {
+        removeView(view);
+        ArrayList<PackageUserKey> keys = null;
+        for (ItemInfo item : items) {
+            if (item == null || !mTempKey.updateFromItemInfo(item)) {
+                continue;
+            }
+            if (keys == null) {
+                keys = new ArrayList<>(1);
+            } else if (keys.contains(mTempKey)) {
+                continue;
+            }
+            PackageUserKey key = new PackageUserKey(mTempKey.mPackageName, mTempKey.mUser);
+            keys.add(key);
+            mViewsByKey.computeIfAbsent(key, k -> new ArrayList<>(1)).add(view);
+        }
+        if (keys != null) {
+            mKeysByView.put(view, keys);
+        }
+    }
+
+    public void removeView(@NonNull View view) {
+        ArrayList<PackageUserKey> keys = mKeysByView.remove(view);
+        if (keys == null) {
+            return;
+        }
+        for (PackageUserKey key : keys) {
+            ArrayList<View> views = mViewsByKey.get(key);
+            views.remove(view);
+            if (views.isEmpty()) {
+                mViewsByKey.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Calls the action once with each view showing an item of one of the keys.
+     */
+    public void forEachView(@NonNull Set<PackageUserKey> keys, @NonNull Consumer<View> action) {
+        ArraySet<View> views = new ArraySet<>();
+        for (PackageUserKey key : keys) {
+            ArrayList<View> keyViews = mViewsByKey.get(key);
+            if (keyViews != null) {
+                views.addAll(keyViews);
+            }
+        }
+        // The action may update the index
+        for (int i = 0; i < views.size(); i++) {
+            action.accept(views.valueAt(i));
+        }
+    }
+
+    public int getViewCount() {
+        return mKeysByView.size();
+    }
+}
@@ -23,6 +23,7 @@ import static com.android.launcher3.compat.AccessibilityManagerCompat.sendCustom
 import static com.android.launcher3.config.FeatureFlags.ALWAYS_USE_HARDWARE_OPTIMIZATION_FOR_FOLDER_ANIMATIONS;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_FOLDER_LABEL_UPDATED;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ITEM_DROP_COMPLETED;
+import static com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_FOLDER_OPEN;
 import static com.android.launcher3.util.window.RefreshRateTracker.getSingleFrameMs;
 import static java.lang.Math.round;
 
@@ -39,6 +40,7 @@ import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
+import android.os.SystemClock;
 import android.text.InputType;
 import android.text.Selection;
 import android.text.TextUtils;
@@ -698,6 +700,7 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
      * is played.
      */
     private void animateOpen(List<WorkspaceItemInfo> items, int pageNo) {
+        long startTime = SystemClock.uptimeMillis();
         Folder openFolder = getOpen(mActivityContext);
         if (openFolder != null && openFolder != this) {
             // Close any open folder before opening a folder.
@@ -747,6 +750,9 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
                 setState(STATE_OPEN);
                 announceAccessibilityChanges();
                 AccessibilityManagerCompat.sendFolderOpenedEventToTest(getContext());
+                mStatsLogManager.latencyLogger()
+                        .withLatency(SystemClock.uptimeMillis() - startTime)
+                        .log(LAUNCHER_LATENCY_FOLDER_OPEN);
 
                 mContent.setFocusOnFirstChild();
             }
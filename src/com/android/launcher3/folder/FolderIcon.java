@@ -41,6 +41,7 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.android.launcher3.Alarm;
 import com.android.launcher3.BubbleTextView;
@@ -58,6 +59,7 @@ import com.android.launcher3.Workspace;
 import com.android.launcher3.allapps.ActivityAllAppsContainerView;
 import com.android.launcher3.anim.Interpolators;
 import com.android.launcher3.celllayout.CellLayoutLayoutParams;
+import com.android.launcher3.dot.DotViewIndex;
 import com.android.launcher3.dot.FolderDotInfo;
 import com.android.launcher3.dragndrop.BaseItemDragListener;
 import com.android.launcher3.dragndrop.DragLayer;
@@ -74,6 +76,7 @@ import com.android.launcher3.model.data.FolderInfo.LabelState;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemFactory;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.touch.ItemClickHandler;
 import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.MultiTranslateDelegate;
@@ -718,8 +721,43 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         mPreviewItemManager.updatePreviewItems(itemCheck);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateDotViewIndex();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        DotViewIndex index = getDotViewIndex();
+        if (index != null) {
+            index.removeView(this);
+        }
+    }
+
+    /**
+     * Registers the contents of the folder to have the dot updated when their notifications
+     * change.
+     */
+    private void updateDotViewIndex() {
+        DotViewIndex index = getDotViewIndex();
+        if (index != null && mInfo != null) {
+            index.setItems(this, mInfo.contents);
+        }
+    }
+
+    @Nullable
+    private DotViewIndex getDotViewIndex() {
+        PopupDataProvider provider = mActivity == null ? null : mActivity.getPopupDataProvider();
+        return provider == null ? null : provider.getDotViewIndex();
+    }
+
     @Override
     public void onAdd(WorkspaceItemInfo item, int rank) {
+        if (isAttachedToWindow()) {
+            updateDotViewIndex();
+        }
         updatePreviewItems(false);
         boolean wasDotted = mDotInfo.hasDot();
         mDotInfo.addDotInfo(mActivity.getDotInfoForItem(item));
@@ -732,6 +770,9 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
 
     @Override
     public void onRemove(List<WorkspaceItemInfo> items) {
+        if (isAttachedToWindow()) {
+            updateDotViewIndex();
+        }
         updatePreviewItems(false);
         boolean wasDotted = mDotInfo.hasDot();
         items.stream().map(mActivity::getDotInfoForItem).forEach(mDotInfo::subtractDotInfo);
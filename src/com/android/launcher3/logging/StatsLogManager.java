@@ -35,6 +35,8 @@ import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.ResourceBasedOverride;
 import com.android.launcher3.views.ActivityContext;
 
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.List;
 
 /**
@@ -676,6 +678,38 @@ public class StatsLogManager implements ResourceBasedOverride {
         }
     }
 
+    /**
+     * Launcher latency events, logged with {@link StatsLatencyLogger#withLatency(long)}. They are
+     * only recorded on the device, their ids are not reserved UI event ids.
+     */
+    public enum LauncherLatencyEvent implements EventEnum {
+
+        // Time spent by the launcher starting an app, from the tap to the start request.
+        LAUNCHER_LATENCY_APP_LAUNCH(20001),
+
+        // Duration of the transition to the all apps state.
+        LAUNCHER_LATENCY_ALLAPPS_OPEN(20002),
+
+        // Time from a search query to its first results.
+        LAUNCHER_LATENCY_SEARCH_FIRST_RESULT(20003),
+
+        // Duration of the folder open animation, from the request to open the folder.
+        LAUNCHER_LATENCY_FOLDER_OPEN(20004),
+
+        // Time from the request to open the widget picker to the end of its open animation.
+        LAUNCHER_LATENCY_WIDGET_PICKER_OPEN(20005);
+
+        private final int mId;
+
+        LauncherLatencyEvent(int id) {
+            mId = id;
+        }
+
+        public int getId() {
+            return mId;
+        }
+    }
+
     /**
      * Helps to construct and log launcher event.
      */
@@ -997,6 +1031,19 @@ public class StatsLogManager implements ResourceBasedOverride {
         return this;
     }
 
+    /**
+     * Dumps the events recorded on the device, if any.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+    }
+
+    /**
+     * Writes the events recorded on the device to the file, returns whether any were written.
+     */
+    public boolean exportMetrics(File file) {
+        return false;
+    }
+
     /**
      * Creates a new instance of {@link StatsLogManager} based on provided context.
      */
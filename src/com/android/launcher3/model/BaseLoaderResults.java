@@ -33,6 +33,7 @@ import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.testing.shared.TestProtocol;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
@@ -95,9 +96,23 @@ public abstract class BaseLoaderResults {
             mMyBindingId = mBgDataModel.lastBindId;
         }
 
+        // Callbacks without pages to bind don't change the pages whose icons are loaded first
+        IntSet boundPages = new IntSet();
         for (Callbacks cb : mCallbacksList) {
-            new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel, mMyBindingId,
-                    workspaceItems, appWidgets, extraItems, orderedScreenIds).bind();
+            boundPages.addAll(new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel,
+                    mMyBindingId, workspaceItems, appWidgets, extraItems, orderedScreenIds).bind());
+        }
+        if (!boundPages.isEmpty()) {
+            mBgDataModel.lastSynchronouslyBoundPages = boundPages;
+        }
+    }
+
+    /**
+     * Notifies the callbacks that the icons or titles of already bound items have been updated.
+     */
+    public void bindWorkspaceItemsChanged(List<WorkspaceItemInfo> updated) {
+        if (!updated.isEmpty()) {
+            executeCallbacksTask(c -> c.bindWorkspaceItemsChanged(updated), mUiExecutor);
         }
     }
 
@@ -108,6 +123,7 @@ public abstract class BaseLoaderResults {
         AppInfo[] apps = mBgAllAppsList.copyData();
         int flags = mBgAllAppsList.getFlags();
         executeCallbacksTask(c -> c.bindAllApplications(apps, flags), mUiExecutor);
+        mApp.getModel().notifyAppsBound(apps);
     }
 
     public abstract void bindWidgets();
@@ -203,7 +219,10 @@ public abstract class BaseLoaderResults {
             mOrderedScreenIds = orderedScreenIds;
         }
 
-        private void bind() {
+        /**
+         * Binds the workspace and returns the pages which were bound synchronously
+         */
+        private IntSet bind() {
             final IntSet currentScreenIds =
                     mCallbacks.getPagesToBindSynchronously(mOrderedScreenIds);
             Objects.requireNonNull(currentScreenIds, "Null screen ids provided by " + mCallbacks);
@@ -268,6 +287,7 @@ public abstract class BaseLoaderResults {
                     }, mUiExecutor);
 
             mCallbacks.bindStringCache(mBgDataModel.stringCache.clone());
+            return currentScreenIds;
         }
 
         private void bindWorkspaceItems(
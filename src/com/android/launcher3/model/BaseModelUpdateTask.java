@@ -148,6 +148,7 @@ public abstract class BaseModelUpdateTask implements ModelUpdateTask {
             AppInfo[] apps = mAllAppsList.copyData();
             int flags = mAllAppsList.getFlags();
             scheduleCallbackTask(c -> c.bindAllApplications(apps, flags));
+            mModel.notifyAppsBound(apps);
         }
     }
 }
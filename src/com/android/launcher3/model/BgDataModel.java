@@ -123,6 +123,12 @@ public class BgDataModel {
      */
     public int lastBindId = 0;
 
+    /**
+     * Pages which were bound synchronously during the last workspace bind. The loader loads
+     * high-res icons for these pages before binding, and defers the other pages.
+     */
+    public volatile IntSet lastSynchronouslyBoundPages = IntSet.wrap(Workspace.FIRST_SCREEN_ID);
+
     /**
      * Clears all the data
      */
@@ -53,7 +53,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -408,21 +408,25 @@ public class GridSizeMigrationTaskV2 {
         }
 
         public void find() {
-            Iterator<DbEntry> iterator = mSortedItemsToPlace.iterator();
-            while (iterator.hasNext()) {
-                final DbEntry entry = iterator.next();
+            // Entries are removed in a single pass at the end, as removing them one by one from
+            // the middle of the list is quadratic for large layouts.
+            Set<DbEntry> handledEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (DbEntry entry : mSortedItemsToPlace) {
                 if (mMatchingScreenIdOnly && entry.screenId < mScreenId) continue;
                 if (mMatchingScreenIdOnly && entry.screenId > mScreenId) break;
                 if (entry.minSpanX > mTrgX || entry.minSpanY > mTrgY) {
-                    iterator.remove();
+                    handledEntries.add(entry);
                     continue;
                 }
-                if (findPlacement(entry)) {
+                if (!mOccupied.isFull() && findPlacement(entry)) {
                     insertEntryInDb(mDb, mContext, entry, mSrcReader.mTableName,
                             mDestReader.mTableName);
-                    iterator.remove();
+                    handledEntries.add(entry);
                 }
             }
+            if (!handledEntries.isEmpty()) {
+                mSortedItemsToPlace.removeIf(handledEntries::contains);
+            }
         }
 
         /**
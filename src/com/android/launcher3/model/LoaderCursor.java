@@ -52,6 +52,7 @@ import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.util.ContentWriter;
 import com.android.launcher3.util.GridOccupancy;
 import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSet;
 import com.android.launcher3.util.IntSparseArrayMap;
 
 import java.net.URISyntaxException;
@@ -370,6 +371,15 @@ public class LoaderCursor extends CursorWrapper {
                 container == LauncherSettings.Favorites.CONTAINER_HOTSEAT;
     }
 
+    /**
+     * Returns true if the item is in the hotseat or on one of the given workspace screens
+     */
+    public boolean isInHotseatOrOnScreen(IntSet screenIds) {
+        return container == LauncherSettings.Favorites.CONTAINER_HOTSEAT
+                || (container == LauncherSettings.Favorites.CONTAINER_DESKTOP
+                && screenIds.contains(getInt(screenIndex)));
+    }
+
     /**
      * Applies the following properties:
      * {@link ItemInfo#id}
@@ -426,18 +436,18 @@ public class LoaderCursor extends CursorWrapper {
             }
 
             if (hotseatOccupancy != null) {
-                if (hotseatOccupancy.cells[(int) item.screenId][0]) {
+                if (hotseatOccupancy.isOccupied(item.screenId, 0)) {
                     Log.e(TAG, "Error loading shortcut into hotseat " + item
                             + " into position (" + item.screenId + ":" + item.cellX + ","
                             + item.cellY + ") already occupied");
                     return false;
                 } else {
-                    hotseatOccupancy.cells[item.screenId][0] = true;
+                    hotseatOccupancy.markCells(item.screenId, 0, 1, 1, true);
                     return true;
                 }
             } else {
                 final GridOccupancy occupancy = new GridOccupancy(mIDP.numDatabaseHotseatIcons, 1);
-                occupancy.cells[item.screenId][0] = true;
+                occupancy.markCells(item.screenId, 0, 1, 1, true);
                 occupied.put(LauncherSettings.Favorites.CONTAINER_HOTSEAT, occupancy);
                 return true;
             }
@@ -106,6 +106,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CancellationException;
 
 /**
@@ -146,6 +147,12 @@ public class LoaderTask implements Runnable {
     private boolean mItemsDeleted = false;
     private String mDbName;
 
+    // Pages whose icons are loaded before binding; null if all icons should be loaded upfront
+    @Nullable
+    private IntSet mPriorityScreenIds;
+    private final List<IconRequestInfo<WorkspaceItemInfo>> mDeferredIconRequests =
+            new ArrayList<>();
+
     public LoaderTask(LauncherAppState app, AllAppsList bgAllAppsList, BgDataModel dataModel,
                       ModelDelegate modelDelegate, LoaderResults results) {
         mApp = app;
@@ -204,6 +211,10 @@ public class LoaderTask implements Runnable {
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
+            if (FeatureFlags.ENABLE_WORKSPACE_SNAPSHOT.get() && bindWorkspaceSnapshot()) {
+                logASplit(logger, "bindWorkspaceSnapshot");
+            }
+
             Trace.beginSection("LoadWorkspace");
             try {
                 loadWorkspace(allShortcuts, memoryLogger);
@@ -226,6 +237,16 @@ public class LoaderTask implements Runnable {
             mResults.bindWorkspace(true /* incrementBindId */);
             logASplit(logger, "bindWorkspace");
 
+            loadDeferredWorkspaceIcons();
+            logASplit(logger, "loadDeferredWorkspaceIcons");
+
+            if (FeatureFlags.ENABLE_WORKSPACE_SNAPSHOT.get()
+                    && mApp.getInvariantDeviceProfile().dbFile.equals(mDbName)) {
+                WorkspaceSnapshot.write(mApp.getContext(), mApp.getInvariantDeviceProfile(),
+                        mBgDataModel);
+                logASplit(logger, "writeWorkspaceSnapshot");
+            }
+
             mModelDelegate.workspaceLoadComplete();
             // Notify the installer packages of packages with active installs on the first screen.
             sendFirstScreenActiveInstallsBroadcast();
@@ -325,14 +346,83 @@ public class LoaderTask implements Runnable {
         TraceHelper.INSTANCE.endSection(traceToken);
     }
 
+    /**
+     * Binds the workspace recorded by the last successful load, if any, so that the first screen
+     * is visible while the database is being loaded. The workspace is rebound once the actual
+     * load completes.
+     */
+    private boolean bindWorkspaceSnapshot() {
+        Context context = mApp.getContext();
+        if (context instanceof LauncherPreviewRenderer.PreviewContext) {
+            return false;
+        }
+        Trace.beginSection("BindWorkspaceSnapshot");
+        try {
+            if (!WorkspaceSnapshot.read(context, mApp.getInvariantDeviceProfile(), mIconCache,
+                    mBgDataModel)) {
+                return false;
+            }
+            verifyNotStopped();
+            mResults.bindWorkspace(true /* incrementBindId */);
+            return true;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
     public synchronized void stopLocked() {
         mStopped = true;
         this.notify();
     }
 
     private void loadWorkspace(List<ShortcutInfo> allDeepShortcuts, LoaderMemoryLogger logger) {
-        loadWorkspace(allDeepShortcuts, LauncherSettings.Favorites.CONTENT_URI,
-                null /* selection */, logger);
+        // Only the hotseat and the pages which will be bound synchronously need their high-res
+        // icons before binding, the other pages are updated by loadDeferredWorkspaceIcons.
+        mPriorityScreenIds = mBgDataModel.lastSynchronouslyBoundPages;
+        try {
+            loadWorkspace(allDeepShortcuts, LauncherSettings.Favorites.CONTENT_URI,
+                    null /* selection */, logger);
+        } finally {
+            mPriorityScreenIds = null;
+        }
+    }
+
+    /**
+     * Loads the high-res icons of the items which were bound with low-res icons because they are
+     * not on the pages bound synchronously, one page at a time, and notifies the callbacks.
+     */
+    private void loadDeferredWorkspaceIcons() {
+        if (mDeferredIconRequests.isEmpty()) {
+            return;
+        }
+        TreeMap<Integer, List<IconRequestInfo<WorkspaceItemInfo>>> requestsByScreen =
+                new TreeMap<>();
+        for (IconRequestInfo<WorkspaceItemInfo> request : mDeferredIconRequests) {
+            requestsByScreen.computeIfAbsent(request.itemInfo.screenId, k -> new ArrayList<>())
+                    .add(request);
+        }
+        mDeferredIconRequests.clear();
+
+        Trace.beginSection("LoadDeferredWorkspaceIcons");
+        try {
+            for (List<IconRequestInfo<WorkspaceItemInfo>> requests : requestsByScreen.values()) {
+                verifyNotStopped();
+                List<WorkspaceItemInfo> updated = new ArrayList<>(requests.size());
+                synchronized (mBgDataModel) {
+                    mIconCache.getTitlesAndIconsInBulk(requests);
+                    for (IconRequestInfo<WorkspaceItemInfo> request : requests) {
+                        // Skip items which were removed since the workspace was bound
+                        if (mBgDataModel.itemsIdMap.get(request.itemInfo.id)
+                                == request.itemInfo) {
+                            updated.add(request.itemInfo);
+                        }
+                    }
+                }
+                mResults.bindWorkspaceItemsChanged(updated);
+            }
+        } finally {
+            Trace.endSection();
+        }
     }
 
     protected void loadWorkspace(
@@ -361,6 +451,7 @@ public class LoaderTask implements Runnable {
 
         if (clearDb) {
             Log.d(TAG, "loadWorkspace: resetting launcher database");
+            WorkspaceSnapshot.delete(context, mApp.getInvariantDeviceProfile());
             LauncherSettings.Settings.call(contentResolver,
                     LauncherSettings.Settings.METHOD_CREATE_EMPTY_DB);
         }
@@ -372,6 +463,7 @@ public class LoaderTask implements Runnable {
         synchronized (mBgDataModel) {
             mBgDataModel.clear();
             mPendingPackages.clear();
+            mDeferredIconRequests.clear();
 
             final HashMap<PackageUserKey, SessionInfo> installingPkgs =
                     mSessionHelper.getActiveSessions();
@@ -551,6 +643,15 @@ public class LoaderTask implements Runnable {
                                 }
 
                                 boolean useLowResIcon = !c.isOnWorkspaceOrHotseat();
+                                boolean deferHighResIcon = !useLowResIcon
+                                        && mPriorityScreenIds != null
+                                        && c.restoreFlag == 0
+                                        && c.itemType
+                                        == LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
+                                        && !c.isInHotseatOrOnScreen(mPriorityScreenIds);
+                                if (deferHighResIcon) {
+                                    useLowResIcon = true;
+                                }
 
                                 if (c.restoreFlag != 0) {
                                     // Already verified above that user is same as default user
@@ -655,6 +756,10 @@ public class LoaderTask implements Runnable {
                                         }
                                     }
 
+                                    if (deferHighResIcon) {
+                                        mDeferredIconRequests.add(
+                                                c.createIconRequestInfo(info, false));
+                                    }
                                     c.checkAndAddItem(info, mBgDataModel, logger);
                                 } else {
                                     throw new RuntimeException("Unexpected null WorkspaceItemInfo");
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_FOLDER;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.folder.Folder;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact, columnar copy of the last bound workspace. It is written by {@link LoaderTask} after
+ * every successful workspace load and memory-mapped on the next cold start, so that the first
+ * screen can be bound before the favorites table has been queried. The snapshot is never the
+ * source of truth: the regular database load always runs afterwards and rebinds the workspace.
+ *
+ * Only plain application shortcuts and folders are recorded, as they can be restored without
+ * resolving intents, pinned shortcuts or widget providers.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header:  magic, version, numColumns, numRows, numHotseat, dbFile, count
+ *   columns: id[], container[], screenId[], cellX[], cellY[], rank[], itemType[], options[],
+ *            userSerial[] (long), component[] (string index), title[] (string index)
+ *   strings: length-prefixed UTF-8 entries, referenced by index
+ * </pre>
+ */
+public class WorkspaceSnapshot {
+
+    private static final String TAG = "WorkspaceSnapshot";
+
+    private static final String FILE_SUFFIX = "-snapshot";
+
+    private static final int MAGIC = 0x4E57534E; // "NWSN"
+    private static final int VERSION = 1;
+
+    private static final int INT_COLUMNS = 8;
+    private static final int NO_STRING = -1;
+
+    private WorkspaceSnapshot() {
+    }
+
+    /**
+     * Records the bindable workspace items of {@param dataModel}. Must be called on the model
+     * thread once the workspace has been loaded from {@param idp}'s database.
+     */
+    public static void write(Context context, InvariantDeviceProfile idp, BgDataModel dataModel) {
+        ArrayList<ItemInfo> items = new ArrayList<>();
+        synchronized (dataModel) {
+            for (ItemInfo info : dataModel.workspaceItems) {
+                if (info instanceof FolderInfo) {
+                    items.add(info);
+                    for (WorkspaceItemInfo child : ((FolderInfo) info).contents) {
+                        if (isSnapshotItem(child)) {
+                            items.add(child);
+                        }
+                    }
+                } else if (isSnapshotItem(info)) {
+                    items.add(info);
+                }
+            }
+        }
+
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        List<String> strings = new ArrayList<>();
+        int count = items.size();
+        int[][] columns = new int[INT_COLUMNS][count];
+        long[] users = new long[count];
+        int[] components = new int[count];
+        int[] titles = new int[count];
+        for (int i = 0; i < count; i++) {
+            ItemInfo info = items.get(i);
+            columns[0][i] = info.id;
+            columns[1][i] = info.container;
+            columns[2][i] = info.screenId;
+            columns[3][i] = info.cellX;
+            columns[4][i] = info.cellY;
+            columns[5][i] = info.rank;
+            columns[6][i] = info.itemType;
+            columns[7][i] = info instanceof FolderInfo ? ((FolderInfo) info).options : 0;
+            users[i] = userCache.getSerialNumberForUser(info.user);
+
+            ComponentName cn = info.getTargetComponent();
+            components[i] = addString(strings, cn == null ? null : cn.flattenToString());
+            titles[i] = addString(strings, info.title == null ? null : info.title.toString());
+        }
+
+        File file = getFile(context, idp);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(idp.numColumns);
+            out.writeInt(idp.numRows);
+            out.writeInt(idp.numDatabaseHotseatIcons);
+            writeString(out, idp.dbFile);
+            out.writeInt(count);
+            for (int[] column : columns) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+            for (long user : users) {
+                out.writeLong(user);
+            }
+            for (int index : components) {
+                out.writeInt(index);
+            }
+            for (int index : titles) {
+                out.writeInt(index);
+            }
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                writeString(out, s);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write workspace snapshot", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Unable to commit workspace snapshot");
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Reads the last snapshot into {@param dataModel} and loads the icons of the restored items
+     * from the icon cache database. Returns false if there is no snapshot usable with the
+     * current grid, in which case the model is left untouched.
+     */
+    public static boolean read(Context context, InvariantDeviceProfile idp, IconCache iconCache,
+            BgDataModel dataModel) {
+        File file = getFile(context, idp);
+        if (!file.exists()) {
+            return false;
+        }
+
+        List<ItemInfo> items;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            items = parse(buffer, idp, UserCache.INSTANCE.get(context));
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable workspace snapshot", e);
+            file.delete();
+            return false;
+        }
+        if (items == null || items.isEmpty()) {
+            return false;
+        }
+
+        List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos = new ArrayList<>();
+        synchronized (dataModel) {
+            dataModel.clear();
+            for (ItemInfo info : items) {
+                if (info instanceof WorkspaceItemInfo) {
+                    iconRequestInfos.add(new IconRequestInfo<>((WorkspaceItemInfo) info,
+                            null /* launcherActivityInfo */, !isOnWorkspaceOrHotseat(info)));
+                }
+                dataModel.addItem(context, info, false /* newItem */);
+            }
+            for (FolderInfo folder : dataModel.folders) {
+                folder.contents.sort(Folder.ITEM_POS_COMPARATOR);
+            }
+        }
+        iconCache.getTitlesAndIconsInBulk(iconRequestInfos);
+        return true;
+    }
+
+    /**
+     * Removes any stored snapshot, e.g. when the workspace database is reset.
+     */
+    public static void delete(Context context, InvariantDeviceProfile idp) {
+        getFile(context, idp).delete();
+    }
+
+    @VisibleForTesting
+    @Nullable
+    static List<ItemInfo> parse(MappedByteBuffer buffer, InvariantDeviceProfile idp,
+            UserCache userCache) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        if (buffer.getInt() != idp.numColumns
+                || buffer.getInt() != idp.numRows
+                || buffer.getInt() != idp.numDatabaseHotseatIcons
+                || !idp.dbFile.equals(readString(buffer))) {
+            // The grid changed since the snapshot was taken, the migration will run first.
+            return null;
+        }
+
+        int count = buffer.getInt();
+        int intColumnsStart = buffer.position();
+        int usersStart = intColumnsStart + INT_COLUMNS * count * Integer.BYTES;
+        int componentsStart = usersStart + count * Long.BYTES;
+        int titlesStart = componentsStart + count * Integer.BYTES;
+        buffer.position(titlesStart + count * Integer.BYTES);
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+
+        ArrayList<ItemInfo> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int itemType = buffer.getInt(intColumn(intColumnsStart, count, 6, i));
+            UserHandle user = userCache.getUserForSerialNumber(
+                    buffer.getLong(usersStart + i * Long.BYTES));
+            if (user == null) {
+                continue;
+            }
+            String title = stringAt(strings, buffer.getInt(titlesStart + i * Integer.BYTES));
+
+            ItemInfo info;
+            if (itemType == ITEM_TYPE_FOLDER) {
+                FolderInfo folder = new FolderInfo();
+                folder.title = title;
+                folder.options = buffer.getInt(intColumn(intColumnsStart, count, 7, i));
+                info = folder;
+            } else if (itemType == ITEM_TYPE_APPLICATION) {
+                ComponentName cn = ComponentName.unflattenFromString(stringAt(strings,
+                        buffer.getInt(componentsStart + i * Integer.BYTES)));
+                if (cn == null) {
+                    continue;
+                }
+                WorkspaceItemInfo app = new WorkspaceItemInfo();
+                app.intent = AppInfo.makeLaunchIntent(cn);
+                app.title = title;
+                info = app;
+            } else {
+                continue;
+            }
+            info.itemType = itemType;
+            info.user = user;
+            info.id = buffer.getInt(intColumn(intColumnsStart, count, 0, i));
+            info.container = buffer.getInt(intColumn(intColumnsStart, count, 1, i));
+            info.screenId = buffer.getInt(intColumn(intColumnsStart, count, 2, i));
+            info.cellX = buffer.getInt(intColumn(intColumnsStart, count, 3, i));
+            info.cellY = buffer.getInt(intColumn(intColumnsStart, count, 4, i));
+            info.rank = buffer.getInt(intColumn(intColumnsStart, count, 5, i));
+            info.spanX = 1;
+            info.spanY = 1;
+            items.add(info);
+        }
+        return items;
+    }
+
+    private static boolean isSnapshotItem(ItemInfo info) {
+        if (info.itemType != ITEM_TYPE_APPLICATION || !(info instanceof WorkspaceItemInfo)) {
+            return false;
+        }
+        WorkspaceItemInfo wi = (WorkspaceItemInfo) info;
+        return !wi.isPromise() && !wi.isDisabled() && wi.getTargetComponent() != null;
+    }
+
+    private static boolean isOnWorkspaceOrHotseat(ItemInfo info) {
+        return info.container == CONTAINER_DESKTOP || info.container == CONTAINER_HOTSEAT;
+    }
+
+    private static int intColumn(int start, int count, int column, int row) {
+        return start + (column * count + row) * Integer.BYTES;
+    }
+
+    private static int addString(List<String> strings, @Nullable String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        strings.add(value);
+        return strings.size() - 1;
+    }
+
+    @Nullable
+    private static String stringAt(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The snapshot is kept next to the database it mirrors, so that it is removed along with the
+     * databases of unused grids.
+     */
+    @NonNull
+    private static File getFile(Context context, InvariantDeviceProfile idp) {
+        return context.getDatabasePath(idp.dbFile + FILE_SUFFIX);
+    }
+}
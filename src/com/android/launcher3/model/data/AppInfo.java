@@ -39,6 +39,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.PackageManagerHelper;
+import com.saggitt.omega.allapps.AppColorComparator;
 
 import java.util.Comparator;
 
@@ -64,6 +65,11 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
     // Section name used for indexing.
     public String sectionName = "";
 
+    // Cached result of getColorSortKey() and the icon color it was computed for
+    private int mColorSortKey;
+    private int mColorSortKeyColor;
+    private boolean mHasColorSortKey = false;
+
     public AppInfo() {
         itemType = LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
     }
@@ -102,6 +108,25 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
         title = Utilities.trim(info.title);
         intent = new Intent(info.intent);
         this.iconColor = info.iconColor;
+        mColorSortKey = info.mColorSortKey;
+        mColorSortKeyColor = info.mColorSortKeyColor;
+        mHasColorSortKey = info.mHasColorSortKey;
+    }
+
+    /**
+     * Returns the key ordering the apps by their icon color, it is only computed again when
+     * {@link #iconColor} changes.
+     *
+     * @see AppColorComparator#getColorSortKey
+     */
+    public int getColorSortKey() {
+        int color = iconColor;
+        if (!mHasColorSortKey || mColorSortKeyColor != color) {
+            mColorSortKey = AppColorComparator.getColorSortKey(color);
+            mColorSortKeyColor = color;
+            mHasColorSortKey = true;
+        }
+        return mColorSortKey;
     }
 
     @VisibleForTesting
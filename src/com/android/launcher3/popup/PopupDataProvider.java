@@ -17,13 +17,20 @@
 package com.android.launcher3.popup;
 
 import android.content.ComponentName;
+import android.os.SystemClock;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
+import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.dot.DotInfo;
+import com.android.launcher3.dot.DotViewIndex;
+import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.notification.NotificationKeyData;
@@ -38,6 +45,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -53,6 +61,10 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     private static final boolean LOGD = false;
     private static final String TAG = "PopupDataProvider";
 
+    /** The minimum time between two updates of the dots, while notifications keep changing. */
+    @VisibleForTesting
+    static final long DOT_UPDATE_INTERVAL_MS = 100;
+
     private final Consumer<Predicate<PackageUserKey>> mNotificationDotsChangeListener;
 
     /**
@@ -71,15 +83,82 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
 
     private PopupDataChangeListener mChangeListener = PopupDataChangeListener.INSTANCE;
 
+    /** The attached views showing dots, by the packages of their items. */
+    private final DotViewIndex mDotViewIndex = new DotViewIndex();
+    /** The packages whose dots changed since the last update of the dots. */
+    private final HashSet<PackageUserKey> mPendingDotUpdates = new HashSet<>();
+    private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+    private final Choreographer.FrameCallback mDotUpdateCallback = frameTimeNanos ->
+            applyPendingDotUpdates();
+    private boolean mDotUpdateScheduled;
+    private long mLastDotUpdateTime;
+    private int mDotUpdateCount;
+
     public PopupDataProvider(Consumer<Predicate<PackageUserKey>> notificationDotsChangeListener) {
         mNotificationDotsChangeListener = notificationDotsChangeListener;
     }
 
+    /**
+     * Returns the index which the views showing dots register to, to be updated when the
+     * notifications of their items change.
+     */
+    public DotViewIndex getDotViewIndex() {
+        return mDotViewIndex;
+    }
+
     private void updateNotificationDots(Predicate<PackageUserKey> updatedDots) {
         mNotificationDotsChangeListener.accept(updatedDots);
         mChangeListener.onNotificationDotsUpdated(updatedDots);
     }
 
+    /**
+     * Updates the dots of the package on the next frame, along with the other packages changing
+     * until then. The updates are at least {@link #DOT_UPDATE_INTERVAL_MS} apart, so a burst of
+     * notifications only updates the dots a few times.
+     */
+    private void scheduleDotUpdate(PackageUserKey packageUserKey) {
+        mPendingDotUpdates.add(packageUserKey);
+        if (mDotUpdateScheduled) {
+            return;
+        }
+        mDotUpdateScheduled = true;
+        long delay = mLastDotUpdateTime + DOT_UPDATE_INTERVAL_MS - SystemClock.uptimeMillis();
+        Choreographer.getInstance().postFrameCallbackDelayed(mDotUpdateCallback,
+                Math.max(0, delay));
+    }
+
+    private void cancelDotUpdate() {
+        if (mDotUpdateScheduled) {
+            mDotUpdateScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mDotUpdateCallback);
+        }
+    }
+
+    /**
+     * Updates the views of the packages whose dots changed, found through the index.
+     */
+    @VisibleForTesting
+    void applyPendingDotUpdates() {
+        mDotUpdateScheduled = false;
+        mLastDotUpdateTime = SystemClock.uptimeMillis();
+        if (mPendingDotUpdates.isEmpty()) {
+            return;
+        }
+        mDotUpdateCount++;
+        HashSet<PackageUserKey> updatedDots = new HashSet<>(mPendingDotUpdates);
+        mPendingDotUpdates.clear();
+        mDotViewIndex.forEachView(updatedDots, view -> updateDot(view, updatedDots));
+        mChangeListener.onNotificationDotsUpdated(updatedDots::contains);
+    }
+
+    private void updateDot(View view, HashSet<PackageUserKey> updatedDots) {
+        if (view instanceof BubbleTextView && view.getTag() instanceof ItemInfo) {
+            ((BubbleTextView) view).applyDotState((ItemInfo) view.getTag(), true /* animate */);
+        } else if (view instanceof FolderIcon) {
+            ((FolderIcon) view).updateIconDots(updatedDots::contains, mTempKey);
+        }
+    }
+
     @Override
     public void onNotificationPosted(PackageUserKey postedPackageUserKey,
                                      NotificationKeyData notificationKey) {
@@ -89,7 +168,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             mPackageUserToDotInfos.put(postedPackageUserKey, dotInfo);
         }
         if (dotInfo.addOrUpdateNotificationKey(notificationKey)) {
-            updateNotificationDots(postedPackageUserKey::equals);
+            scheduleDotUpdate(postedPackageUserKey);
         }
     }
 
@@ -101,7 +180,7 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             if (oldDotInfo.getNotificationKeys().size() == 0) {
                 mPackageUserToDotInfos.remove(removedPackageUserKey);
             }
-            updateNotificationDots(removedPackageUserKey::equals);
+            scheduleDotUpdate(removedPackageUserKey);
             trimNotifications(mPackageUserToDotInfos);
         }
     }
@@ -109,9 +188,8 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     @Override
     public void onNotificationFullRefresh(List<StatusBarNotification> activeNotifications) {
         if (activeNotifications == null) return;
-        // This will contain the PackageUserKeys which have updated dots.
-        HashMap<PackageUserKey, DotInfo> updatedDots = new HashMap<>(mPackageUserToDotInfos);
-        mPackageUserToDotInfos.clear();
+        Map<PackageUserKey, DotInfo> previousDots = mPackageUserToDotInfos;
+        mPackageUserToDotInfos = new HashMap<>();
         for (StatusBarNotification notification : activeNotifications) {
             PackageUserKey packageUserKey = PackageUserKey.fromNotification(notification);
             DotInfo dotInfo = mPackageUserToDotInfos.get(packageUserKey);
@@ -122,21 +200,28 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
             dotInfo.addOrUpdateNotificationKey(NotificationKeyData.fromNotification(notification));
         }
 
-        // Add and remove from updatedDots so it contains the PackageUserKeys of updated dots.
-        for (PackageUserKey packageUserKey : mPackageUserToDotInfos.keySet()) {
-            DotInfo prevDot = updatedDots.get(packageUserKey);
-            DotInfo newDot = mPackageUserToDotInfos.get(packageUserKey);
+        // The dots which were removed, added or whose count changed, along with the pending ones.
+        // No need to update a dot which already existed with the same count (no visual change).
+        HashMap<PackageUserKey, DotInfo> updatedDots = new HashMap<>();
+        for (PackageUserKey packageUserKey : previousDots.keySet()) {
+            if (!mPackageUserToDotInfos.containsKey(packageUserKey)) {
+                updatedDots.put(packageUserKey, null);
+            }
+        }
+        for (Map.Entry<PackageUserKey, DotInfo> entry : mPackageUserToDotInfos.entrySet()) {
+            DotInfo prevDot = previousDots.get(entry.getKey());
             if (prevDot == null
-                    || prevDot.getNotificationCount() != newDot.getNotificationCount()) {
-                updatedDots.put(packageUserKey, newDot);
-            } else {
-                // No need to update the dot if it already existed (no visual change).
-                // Note that if the dot was removed entirely, we wouldn't reach this point because
-                // this loop only includes active notifications added above.
-                updatedDots.remove(packageUserKey);
+                    || prevDot.getNotificationCount() != entry.getValue().getNotificationCount()) {
+                updatedDots.put(entry.getKey(), entry.getValue());
             }
         }
+        for (PackageUserKey packageUserKey : mPendingDotUpdates) {
+            updatedDots.put(packageUserKey, mPackageUserToDotInfos.get(packageUserKey));
+        }
+        mPendingDotUpdates.clear();
+        cancelDotUpdate();
 
+        // Many dots may change at once, update all the views rather than only the indexed ones
         if (!updatedDots.isEmpty()) {
             updateNotificationDots(updatedDots::containsKey);
         }
@@ -277,6 +362,9 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "PopupDataProvider:");
         writer.println(prefix + "\tmPackageUserToDotInfos:" + mPackageUserToDotInfos);
+        writer.println(prefix + "\tdotUpdates=" + mDotUpdateCount
+                + " pendingDotUpdates=" + mPendingDotUpdates.size()
+                + " indexedDotViews=" + mDotViewIndex.getViewCount());
     }
 
     /**
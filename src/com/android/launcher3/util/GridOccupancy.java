@@ -4,20 +4,37 @@ import android.graphics.Rect;
 
 import com.android.launcher3.model.data.ItemInfo;
 
+import java.util.Arrays;
+
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * Each row is stored as a bitmask, where bit x is set if the cell (x, y) is occupied, so that
+ * region checks and updates work on a whole row at once. Grids are limited to 64 columns.
  */
 public class GridOccupancy extends AbsGridOccupancy {
 
+    private static final int UNKNOWN = -1;
+
     private final int mCountX;
     private final int mCountY;
+    private final long mFullRow;
+
+    private final long[] mRows;
 
-    public final boolean[][] cells;
+    // Area of the largest vacant rectangle, computed on read. Occupying cells keeps it as an upper
+    // bound, freeing cells resets it.
+    private int mLargestVacantArea = UNKNOWN;
+    private boolean mIsLargestVacantAreaExact;
 
     public GridOccupancy(int countX, int countY) {
+        if (countX > Long.SIZE) {
+            throw new IllegalArgumentException("Grid too wide: " + countX);
+        }
         mCountX = countX;
         mCountY = countY;
-        cells = new boolean[countX][countY];
+        mFullRow = countX == Long.SIZE ? -1L : (1L << countX) - 1;
+        mRows = new long[countY];
     }
 
     /**
@@ -30,15 +47,36 @@ public class GridOccupancy extends AbsGridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
-        return super.findVacantCell(vacantOut, cells, mCountX, mCountY, spanX, spanY);
+        if (mLargestVacantArea != UNKNOWN && spanX * spanY > mLargestVacantArea) {
+            return false;
+        }
+        return super.findVacantCell(vacantOut, mRows, mCountX, mCountY, spanX, spanY);
+    }
+
+    /**
+     * Returns a new grid with the same size and occupancy as this one
+     */
+    public GridOccupancy copy() {
+        GridOccupancy copy = new GridOccupancy(mCountX, mCountY);
+        copyTo(copy);
+        return copy;
     }
 
     public void copyTo(GridOccupancy dest) {
-        for (int i = 0; i < mCountX; i++) {
-            for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
-            }
+        System.arraycopy(mRows, 0, dest.mRows, 0, Math.min(mCountY, dest.mCountY));
+        boolean sameSize = mCountX == dest.mCountX && mCountY == dest.mCountY;
+        dest.mLargestVacantArea = sameSize ? mLargestVacantArea : UNKNOWN;
+        dest.mIsLargestVacantAreaExact = mIsLargestVacantAreaExact;
+    }
+
+    /**
+     * Returns true if the cell at (x, y) is occupied
+     */
+    public boolean isOccupied(int x, int y) {
+        if (x < 0 || y < 0 || x >= mCountX || y >= mCountY) {
+            throw new ArrayIndexOutOfBoundsException("Invalid cell: " + x + ", " + y);
         }
+        return (mRows[y] & (1L << x)) != 0;
     }
 
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
@@ -47,22 +85,26 @@ public class GridOccupancy extends AbsGridOccupancy {
         if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
             return false;
         }
-        for (int i = x; i <= x2; i++) {
-            for (int j = y; j <= y2; j++) {
-                if (cells[i][j]) {
-                    return false;
-                }
+        long mask = rowMask(x, spanX);
+        for (int j = y; j <= y2; j++) {
+            if ((mRows[j] & mask) != 0) {
+                return false;
             }
         }
         return true;
     }
 
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
-        if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
-                cells[x][y] = value;
-            }
+        if (cellX < 0 || cellY < 0 || cellX >= mCountX) return;
+        long mask = rowMask(cellX, Math.min(spanX, mCountX - cellX));
+        int endY = Math.min(cellY + spanY, mCountY);
+        for (int y = cellY; y < endY; y++) {
+            mRows[y] = value ? mRows[y] | mask : mRows[y] & ~mask;
+        }
+        if (value) {
+            mIsLargestVacantAreaExact = false;
+        } else {
+            mLargestVacantArea = UNKNOWN;
         }
     }
 
@@ -78,7 +120,79 @@ public class GridOccupancy extends AbsGridOccupancy {
         markCells(item.cellX, item.cellY, item.spanX, item.spanY, value);
     }
 
+    /**
+     * Returns true if every cell of the grid is occupied
+     */
+    public boolean isFull() {
+        for (long row : mRows) {
+            if (row != mFullRow) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void clear() {
         markCells(0, 0, mCountX, mCountY, false);
     }
+
+    /**
+     * Returns the area of the largest vacant rectangle in the grid. No item with a larger area
+     * can be placed, which lets {@link #findVacantCell} fail fast on crowded grids once it is
+     * known.
+     */
+    public int getLargestVacantArea() {
+        if (mLargestVacantArea == UNKNOWN || !mIsLargestVacantAreaExact) {
+            mLargestVacantArea = computeLargestVacantArea();
+            mIsLargestVacantAreaExact = true;
+        }
+        return mLargestVacantArea;
+    }
+
+    /**
+     * Largest rectangle in a histogram, where each column's height is the number of vacant
+     * cells directly above and including the current row.
+     */
+    private int computeLargestVacantArea() {
+        int[] heights = new int[mCountX + 1];
+        int[] stack = new int[mCountX + 1];
+        int largest = 0;
+        for (int y = 0; y < mCountY; y++) {
+            long row = mRows[y];
+            for (int x = 0; x < mCountX; x++) {
+                heights[x] = (row & (1L << x)) != 0 ? 0 : heights[x] + 1;
+            }
+            int top = 0;
+            for (int x = 0; x <= mCountX; x++) {
+                int h = x == mCountX ? 0 : heights[x];
+                while (top > 0 && heights[stack[top - 1]] >= h) {
+                    int height = heights[stack[--top]];
+                    int left = top == 0 ? -1 : stack[top - 1];
+                    largest = Math.max(largest, height * (x - left - 1));
+                }
+                stack[top++] = x;
+            }
+        }
+        return largest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridOccupancy)) return false;
+        GridOccupancy other = (GridOccupancy) o;
+        return mCountX == other.mCountX && Arrays.equals(mRows, other.mRows);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mCountX + Arrays.hashCode(mRows);
+    }
+
+    private long rowMask(int x, int spanX) {
+        if (spanX <= 0) {
+            return 0;
+        }
+        return ((spanX >= Long.SIZE ? -1L : (1L << spanX) - 1) << x) & mFullRow;
+    }
 }
@@ -18,6 +18,7 @@ package com.android.launcher3.views;
 import static com.android.launcher3.logging.KeyboardStateManager.KeyboardState.HIDE;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ALLAPPS_KEYBOARD_CLOSED;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_APP_LAUNCH_TAP;
+import static com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_APP_LAUNCH;
 import static com.android.launcher3.model.WidgetsModel.GO_DISABLE_WIDGETS;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
@@ -35,6 +36,7 @@ import android.os.Bundle;
 import android.os.IBinder;
 import android.os.Process;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.util.Log;
 import android.view.Display;
@@ -328,6 +330,7 @@ public interface ActivityContext {
     default boolean startActivitySafely(
             View v, Intent intent, @Nullable ItemInfo item) {
         Preconditions.assertUIThread();
+        long startTime = SystemClock.uptimeMillis();
         Context context = (Context) this;
         if (isAppBlockedForSafeMode() && !PackageManagerHelper.isSystemApp(context, intent)) {
             Toast.makeText(context, R.string.safemode_shortcut_error, Toast.LENGTH_SHORT).show();
@@ -367,7 +370,12 @@ public interface ActivityContext {
             }
             if (item != null) {
                 InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-                logAppLaunch(getStatsLogManager(), item, instanceId);
+                StatsLogManager statsLogManager = getStatsLogManager();
+                logAppLaunch(statsLogManager, item, instanceId);
+                statsLogManager.latencyLogger()
+                        .withInstanceId(instanceId)
+                        .withLatency(SystemClock.uptimeMillis() - startTime)
+                        .log(LAUNCHER_LATENCY_APP_LAUNCH);
             }
             return true;
         } catch (NullPointerException | ActivityNotFoundException | SecurityException e) {
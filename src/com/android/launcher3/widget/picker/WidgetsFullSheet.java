@@ -19,6 +19,7 @@ import static android.view.View.MeasureSpec.makeMeasureSpec;
 import static com.android.launcher3.LauncherAnimUtils.VIEW_TRANSLATE_Y;
 import static com.android.launcher3.config.FeatureFlags.LARGE_SCREEN_WIDGET_PICKER;
 import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_WIDGETSTRAY_SEARCHED;
+import static com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_WIDGET_PICKER_OPEN;
 import static com.android.launcher3.testing.shared.TestProtocol.NORMAL_STATE_ORDINAL;
 
 import android.animation.Animator;
@@ -31,6 +32,7 @@ import android.content.res.Resources;
 import android.graphics.Outline;
 import android.graphics.Rect;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.AttributeSet;
@@ -713,7 +715,7 @@ public class WidgetsFullSheet extends BaseWidgetSheet
         }
     }
 
-    private void open(boolean animate) {
+    private void open(boolean animate, long startTime) {
         if (animate) {
             if (getPopupContainer().getInsets().bottom > 0) {
                 mContent.setAlpha(0);
@@ -729,6 +731,7 @@ public class WidgetsFullSheet extends BaseWidgetSheet
                 @Override
                 public void onAnimationEnd(Animator animation) {
                     mOpenCloseAnimator.removeListener(this);
+                    logOpenLatency(startTime);
                 }
             });
             post(() -> {
@@ -738,9 +741,16 @@ public class WidgetsFullSheet extends BaseWidgetSheet
         } else {
             setTranslationShift(TRANSLATION_SHIFT_OPENED);
             post(this::announceAccessibilityChanges);
+            logOpenLatency(startTime);
         }
     }
 
+    private void logOpenLatency(long startTime) {
+        mActivityContext.getStatsLogManager().latencyLogger()
+                .withLatency(SystemClock.uptimeMillis() - startTime)
+                .log(LAUNCHER_LATENCY_WIDGET_PICKER_OPEN);
+    }
+
     @Override
     protected void handleClose(boolean animate) {
         handleClose(animate, mActivityContext.getDeviceProfile().bottomSheetCloseDuration);
@@ -777,6 +787,7 @@ public class WidgetsFullSheet extends BaseWidgetSheet
 
     /** Shows the {@link WidgetsFullSheet} on the launcher. */
     public static WidgetsFullSheet show(Launcher launcher, boolean animate) {
+        long startTime = SystemClock.uptimeMillis();
         WidgetsFullSheet sheet = (WidgetsFullSheet) launcher.getLayoutInflater()
                 .inflate(LARGE_SCREEN_WIDGET_PICKER.get()
                         && launcher.getDeviceProfile().isTablet
@@ -785,7 +796,7 @@ public class WidgetsFullSheet extends BaseWidgetSheet
                         : R.layout.widgets_full_sheet, launcher.getDragLayer(), false);
         sheet.attachToContainer();
         sheet.mIsOpen = true;
-        sheet.open(animate);
+        sheet.open(animate, startTime);
         return sheet;
     }
 
@@ -51,4 +51,35 @@ public abstract class AbsGridOccupancy {
         }
         return false;
     }
+
+    /**
+     * Same as {@link #findVacantCell(int[], boolean[][], int, int, int, int)}, for a grid where
+     * each row is a bitmask of its occupied cells. The rows covered by the span are combined
+     * first, then every horizontal position of the row is tested at once.
+     */
+    protected boolean findVacantCell(int[] vacantOut, long[] rows, int countX, int countY,
+                                     int spanX, int spanY) {
+        if (spanX > countX || spanY > countY) {
+            return false;
+        }
+        long fullRow = countX == Long.SIZE ? -1L : (1L << countX) - 1;
+        for (int y = 0; (y + spanY) <= countY; y++) {
+            long occupied = 0;
+            for (int j = y; j < y + spanY; j++) {
+                occupied |= rows[j];
+            }
+            // Bit x of fits is set if the cells x to x + spanX - 1 are all vacant
+            long vacant = ~occupied & fullRow;
+            long fits = vacant;
+            for (int i = 1; i < spanX && fits != 0; i++) {
+                fits &= vacant >>> i;
+            }
+            if (fits != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(fits);
+                vacantOut[1] = y;
+                return true;
+            }
+        }
+        return false;
+    }
 }
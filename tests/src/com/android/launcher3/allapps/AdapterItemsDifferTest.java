@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AdapterItemsDifferTest {
+
+    private static final int ITEM_COUNT = 500;
+
+    private final List<AdapterItem> mItems = new ArrayList<>();
+    private final AdapterItemsDiffer mDiffer = new AdapterItemsDiffer();
+
+    @Test
+    public void onlyTheLatestListIsApplied() throws Exception {
+        List<AdapterItem> first = createItems(0, ITEM_COUNT);
+        List<AdapterItem> second = createItems(1, ITEM_COUNT);
+        List<AdapterItem> third = createItems(2, ITEM_COUNT);
+        CountingAdapter adapter = new CountingAdapter();
+        int[] commits = new int[1];
+
+        MAIN_EXECUTOR.submit(() -> {
+            setItems(first);
+            submit(second, adapter, commits);
+            submit(third, adapter, commits);
+        }).get();
+        waitForDiff();
+
+        assertEquals(1, commits[0]);
+        assertEquals(third, mItems);
+    }
+
+    @Test
+    public void itemsOfTheSameAppMatch() {
+        AdapterItem a = AdapterItem.asApp(createApp(1));
+        AdapterItem b = AdapterItem.asApp(createApp(1));
+        AdapterItem c = AdapterItem.asApp(createApp(2));
+
+        assertEquals(a.getStableKey(), b.getStableKey());
+        assertTrue(a.isSameAs(b));
+        assertNotEquals(a.getStableKey(), c.getStableKey());
+        assertFalse(a.isSameAs(c));
+    }
+
+    @Test
+    public void changesToTheCurrentListDuringTheDiffAreNotLost() throws Exception {
+        List<AdapterItem> first = createItems(0, ITEM_COUNT);
+        List<AdapterItem> second = createItems(1, ITEM_COUNT);
+        CountingAdapter adapter = new CountingAdapter();
+
+        MAIN_EXECUTOR.submit(() -> {
+            setItems(first);
+            submit(second, adapter, new int[1]);
+            // Like WorkEduCard removing itself
+            mItems.remove(0);
+        }).get();
+        waitForDiff();
+
+        assertEquals(second, mItems);
+        assertEquals(1, adapter.mDataSetChanges);
+    }
+
+    private void setItems(List<AdapterItem> items) {
+        mItems.clear();
+        mItems.addAll(items);
+    }
+
+    private void submit(List<AdapterItem> items, RecyclerView.Adapter<?> adapter, int[] commits) {
+        mDiffer.submit(mItems, items, adapter, () -> {
+            commits[0]++;
+            setItems(items);
+        });
+    }
+
+    private static void waitForDiff() throws Exception {
+        // The diff is posted to the main thread once it is computed
+        UI_HELPER_EXECUTOR.submit(() -> { }).get();
+        MAIN_EXECUTOR.submit(() -> { }).get();
+    }
+
+    /**
+     * Returns the items of apps {@code offset} to {@code offset + count}
+     */
+    private static List<AdapterItem> createItems(int offset, int count) {
+        List<AdapterItem> items = new ArrayList<>();
+        for (int i = offset; i < offset + count; i++) {
+            items.add(AdapterItem.asApp(createApp(i)));
+        }
+        return items;
+    }
+
+    private static AppInfo createApp(int index) {
+        ComponentName cn = new ComponentName("com.example.app" + index, "Activity");
+        return new AppInfo(cn, "App " + index, Process.myUserHandle(),
+                new Intent().setComponent(cn));
+    }
+
+    private class CountingAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        int mDataSetChanges = 0;
+
+        CountingAdapter() {
+            registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+                @Override
+                public void onChanged() {
+                    mDataSetChanges++;
+                }
+            });
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) { };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) { }
+
+        @Override
+        public int getItemCount() {
+            return mItems.size();
+        }
+    }
+}
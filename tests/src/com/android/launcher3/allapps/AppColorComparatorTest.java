@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static com.saggitt.omega.allapps.AppColorComparator.REPETITIONS;
+import static com.saggitt.omega.allapps.AppColorComparator.remap;
+import static com.saggitt.omega.allapps.AppColorComparator.remapHue;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Color;
+import android.os.Process;
+
+import androidx.core.graphics.ColorUtils;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.saggitt.omega.allapps.AppColorComparator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that sorting by the cached color keys gives the same order as comparing the HSL values
+ * of the icon colors.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppColorComparatorTest {
+
+    private static final int APP_COUNT = 400;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void sortMatchesHslComparison() {
+        Random random = new Random(42);
+        List<AppInfo> apps = new ArrayList<>();
+        for (int i = 0; i < APP_COUNT; i++) {
+            // Include greys and duplicate colors, which are ordered by their title
+            int color = i % 10 == 0 ? Color.rgb(i % 256, i % 256, i % 256)
+                    : i % 7 == 0 ? Color.RED
+                    : random.nextInt() | 0xFF000000;
+            apps.add(createApp(i, color));
+        }
+
+        List<AppInfo> expected = new ArrayList<>(apps);
+        expected.sort(new HslComparator(mContext));
+        List<AppInfo> actual = new ArrayList<>(apps);
+        actual.sort(new AppColorComparator(mContext));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void keyIsUpdatedWhenTheColorChanges() {
+        AppInfo app = createApp(0, Color.RED);
+        int redKey = app.getColorSortKey();
+        app.iconColor = Color.BLUE;
+
+        assertEquals(AppColorComparator.getColorSortKey(Color.BLUE), app.getColorSortKey());
+        assertEquals(redKey, AppColorComparator.getColorSortKey(Color.RED));
+    }
+
+    private static AppInfo createApp(int index, int color) {
+        ComponentName cn = new ComponentName("com.example.app" + index, "Activity");
+        AppInfo app = new AppInfo(cn, "App " + index, Process.myUserHandle(),
+                new Intent().setComponent(cn));
+        app.iconColor = color;
+        return app;
+    }
+
+    /**
+     * The comparison done by {@link AppColorComparator} before the keys were cached.
+     */
+    private static class HslComparator extends AppInfoComparator {
+
+        HslComparator(Context context) {
+            super(context);
+        }
+
+        @Override
+        public int compare(AppInfo a, AppInfo b) {
+            float[] hslA = new float[3];
+            float[] hslB = new float[3];
+            ColorUtils.colorToHSL(a.iconColor, hslA);
+            ColorUtils.colorToHSL(b.iconColor, hslB);
+            int h2A = remapHue(hslA[0]);
+            int h2B = remapHue(hslB[0]);
+            int s2A = remap(hslA[1]);
+            int s2B = remap(hslB[1]);
+            int l2A = remap(hslA[2]);
+            int l2B = remap(hslB[2]);
+            if (h2A % 2 == 1) {
+                s2A = REPETITIONS - s2A;
+                l2A = REPETITIONS - l2A;
+            }
+            if (h2B % 2 == 1) {
+                s2B = REPETITIONS - s2B;
+                l2B = REPETITIONS - l2B;
+            }
+            int result = Integer.compare(h2A, h2B);
+            if (result != 0) {
+                return result;
+            }
+            result = Integer.compare(l2A, l2B);
+            if (result != 0) {
+                return result;
+            }
+            result = Integer.compare(s2A, s2B);
+            return result != 0 ? result : super.compare(a, b);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.allapps
+
+import android.content.ComponentName
+import android.content.Intent
+import android.os.Process
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.model.data.AppInfo
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.AppUsageTracker
+import com.saggitt.omega.data.NeoLauncherDb
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/** Tests the decayed launch scores of [AppUsageTracker] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class AppUsageTrackerTest {
+
+    private lateinit var db: NeoLauncherDb
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private var now = TimeUnit.DAYS.toMillis(19_000)
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            NeoLauncherDb::class.java
+        ).build()
+    }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+        db.close()
+    }
+
+    @Test
+    fun oldLaunches_decay() = runBlocking {
+        val tracker = createTracker()
+        repeat(10) { tracker.recordLaunch("old.habit") }
+        now += TimeUnit.DAYS.toMillis(30)
+        tracker.recordLaunch("new.habit")
+
+        assertThat(tracker.getTopPackages(2)).containsExactly("new.habit", "old.habit").inOrder()
+        assertThat(tracker.getScore("old.habit")).isWithin(0.01).of(10 * Math.pow(2.0, -30 / 7.0))
+        assertThat(tracker.getScore("unknown")).isEqualTo(0.0)
+    }
+
+    @Test
+    fun ranking_matchesTheCurrentScores() = runBlocking {
+        val tracker = createTracker()
+        val random = Random(7)
+        val packages = (0 until 50).map { "app$it" }
+        repeat(2000) {
+            now += random.nextInt(TimeUnit.HOURS.toMillis(6).toInt())
+            tracker.recordLaunch(packages[random.nextInt(packages.size)])
+        }
+
+        val byScore = packages.sortedByDescending { tracker.getScore(it) }
+        assertThat(tracker.getTopPackages(packages.size)).isEqualTo(byScore)
+        assertThat(packages.sortedByDescending { tracker.getRankValue(it) }).isEqualTo(byScore)
+    }
+
+    @Test
+    fun usage_isRestored() = runBlocking {
+        val tracker = createTracker()
+        repeat(3) { tracker.recordLaunch("a") }
+        tracker.recordLaunch("b")
+        val contextualScore = tracker.getContextualScore("a")
+        tracker.flush()
+
+        val restored = createTracker()
+        assertThat(restored.getTopPackages(2)).containsExactly("a", "b").inOrder()
+        assertThat(restored.getScore("a")).isEqualTo(tracker.getScore("a"))
+        assertThat(restored.getContextualScore("a")).isEqualTo(contextualScore)
+    }
+
+    @Test
+    fun launchesBeforeLoading_areKept() = runBlocking {
+        createTracker().apply {
+            recordLaunch("a")
+            flush()
+        }
+
+        // Not waiting for the stored usage to be loaded
+        val tracker = AppUsageTracker(db.appUsageDao(), scope) { now }
+        tracker.recordLaunch("a")
+        tracker.loadJob.join()
+
+        assertThat(tracker.getScore("a")).isWithin(0.001).of(2.0)
+    }
+
+    @Test
+    fun comparator_ignoresLaterLaunches() = runBlocking {
+        val tracker = createTracker()
+        repeat(3) { tracker.recordLaunch("a") }
+        tracker.recordLaunch("b")
+        val comparator = tracker.getComparator()
+
+        // Like a launch recorded while the drawer is sorting
+        repeat(10) { tracker.recordLaunch("b") }
+
+        assertThat(comparator.compare(createApp("a"), createApp("b"))).isLessThan(0)
+        assertThat(tracker.getComparator().compare(createApp("a"), createApp("b")))
+            .isGreaterThan(0)
+    }
+
+    @Test
+    fun rankedPackages_followTheRanking() = runBlocking {
+        val tracker = createTracker()
+        tracker.recordLaunch("a")
+        repeat(2) { tracker.recordLaunch("b") }
+        now += TimeUnit.DAYS.toMillis(14)
+        tracker.recordLaunch("c")
+
+        assertThat(tracker.getRankedPackages()).containsExactly("c", "b", "a").inOrder()
+    }
+
+    @Test
+    fun usageOfThousandApps_staysUnderFewHundredKb() = runBlocking {
+        // The names are held by the apps, only the tracker's own structures are measured
+        val packages = (0 until 1000).map { "com.example.app$it" }
+        val before = usedMemory()
+        val tracker = createTracker()
+        packages.forEach { tracker.recordLaunch(it) }
+        val used = usedMemory() - before
+
+        assertThat(tracker.getRankedPackages()).hasSize(packages.size)
+        assertThat(used).isLessThan(300 * 1024L)
+    }
+
+    private fun usedMemory(): Long {
+        val runtime = Runtime.getRuntime()
+        repeat(3) {
+            runtime.gc()
+            System.runFinalization()
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    private fun createApp(packageName: String): AppInfo {
+        val cn = ComponentName(packageName, "Activity")
+        return AppInfo(cn, packageName, Process.myUserHandle(), Intent().setComponent(cn))
+    }
+
+    private suspend fun createTracker() =
+        AppUsageTracker(db.appUsageDao(), scope) { now }.also { it.loadJob.join() }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.allapps
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.Intent
+import android.os.Process
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.model.data.AppInfo
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.allapps.DrawerAppsSorter
+import com.saggitt.omega.util.Config
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.Locale
+
+/** Tests the alphabetical sorts of [DrawerAppsSorter] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class DrawerAppsSorterTest {
+
+    private val defaultLocale = Locale.getDefault()
+    private val sorter = DrawerAppsSorter(ApplicationProvider.getApplicationContext<Context>())
+
+    @After
+    fun tearDown() {
+        Locale.setDefault(defaultLocale)
+    }
+
+    @Test
+    fun sortAZ_ignoresCaseAndKeepsTheStoreOrder() {
+        Locale.setDefault(Locale.ENGLISH)
+        val apps = listOf(
+            createApp("banana", "Banana"),
+            createApp("apple2", "apple"),
+            createApp("cherry", "cherry"),
+            createApp("apple1", "Apple"),
+        )
+
+        assertThat(packages(sorter.sort(apps, Config.SORT_AZ)))
+            .containsExactly("apple2", "apple1", "banana", "cherry").inOrder()
+        assertThat(packages(sorter.sort(apps, Config.SORT_ZA)))
+            .containsExactly("cherry", "banana", "apple2", "apple1").inOrder()
+    }
+
+    @Test
+    fun sortAZ_collatesAccents() {
+        Locale.setDefault(Locale.FRENCH)
+        val apps = listOf(
+            createApp("f", "Fichiers"),
+            createApp("e2", "Exemple"),
+            createApp("e1", "Écran"),
+        )
+
+        assertThat(packages(sorter.sort(apps, Config.SORT_AZ)))
+            .containsExactly("e1", "e2", "f").inOrder()
+    }
+
+    @Test
+    fun renamedApps_areSortedByTheirNewTitle() {
+        Locale.setDefault(Locale.ENGLISH)
+        val first = createApp("first", "Alpha")
+        val second = createApp("second", "Beta")
+        assertThat(packages(sorter.sort(listOf(first, second), Config.SORT_AZ)))
+            .containsExactly("first", "second").inOrder()
+
+        first.title = "Gamma"
+
+        assertThat(packages(sorter.sort(listOf(first, second), Config.SORT_AZ)))
+            .containsExactly("second", "first").inOrder()
+    }
+
+    @Test
+    fun localeChange_updatesTheOrder() {
+        val apps = listOf(createApp("z", "Zebra"), createApp("o", "Ödeme"))
+        Locale.setDefault(Locale.GERMAN)
+        assertThat(packages(sorter.sort(apps, Config.SORT_AZ)))
+            .containsExactly("o", "z").inOrder()
+
+        // Swedish sorts Ö after Z
+        Locale.setDefault(Locale("sv", "SE"))
+        assertThat(packages(sorter.sort(apps, Config.SORT_AZ)))
+            .containsExactly("z", "o").inOrder()
+    }
+
+    private fun packages(apps: List<AppInfo>) = apps.map { it.componentName.packageName }
+
+    private fun createApp(packageName: String, title: String): AppInfo {
+        val cn = ComponentName(packageName, "Activity")
+        return AppInfo(cn, title, Process.myUserHandle(), Intent().setComponent(cn))
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.CellLayout.ItemConfiguration;
+import com.android.launcher3.celllayout.testcases.FullReorderCase;
+import com.android.launcher3.celllayout.testcases.MoveOutReorderCase;
+import com.android.launcher3.celllayout.testcases.PushReorderCase;
+import com.android.launcher3.celllayout.testcases.ReorderTestCase;
+import com.android.launcher3.celllayout.testcases.SimpleReorderCase;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.CellAndSpan;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the reorder algorithm directly on a {@link CellLayout} built from the boards used by
+ * {@link ReorderWidgets}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderAlgorithmTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new ActivityContextWrapper(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void cachedSolutionsMatchUncachedSolutions() {
+        for (Map.Entry<Point, ReorderTestCase> entry : getTestCases()) {
+            Point size = entry.getKey();
+            CellLayout cellLayout = new CellLayout(mContext);
+            View dragView = buildFromBoard(cellLayout, size, entry.getValue().mStart);
+
+            List<ItemConfiguration> uncached = new ArrayList<>();
+            for (int y = 0; y < size.y; y++) {
+                for (int x = 0; x < size.x; x++) {
+                    cellLayout.getReorderSolutionCache().clear();
+                    uncached.add(findReorderSolution(cellLayout, dragView, x, y));
+                }
+            }
+            // Explore every cell again without clearing the cache, in the opposite order
+            for (int y = size.y - 1; y >= 0; y--) {
+                for (int x = size.x - 1; x >= 0; x--) {
+                    assertSameSolution(uncached.get(y * size.x + x),
+                            findReorderSolution(cellLayout, dragView, x, y));
+                }
+            }
+        }
+    }
+
+    private static List<Map.Entry<Point, ReorderTestCase>> getTestCases() {
+        List<Map.Entry<Point, ReorderTestCase>> testCases = new ArrayList<>();
+        testCases.addAll(SimpleReorderCase.TEST_BY_GRID_SIZE.entrySet());
+        testCases.addAll(PushReorderCase.TEST_BY_GRID_SIZE.entrySet());
+        testCases.addAll(FullReorderCase.TEST_BY_GRID_SIZE.entrySet());
+        testCases.addAll(MoveOutReorderCase.TEST_BY_GRID_SIZE.entrySet());
+        return testCases;
+    }
+
+    /**
+     * Adds a view for each item of the board and returns the main widget, marked as being
+     * dragged.
+     */
+    private View buildFromBoard(CellLayout cellLayout, Point size, CellLayoutBoard board) {
+        cellLayout.setGridSize(size.x, size.y);
+        View mainWidget = null;
+        int id = 0;
+        for (CellLayoutBoard.WidgetRect widgetRect : board.getWidgets()) {
+            CellLayoutLayoutParams lp = new CellLayoutLayoutParams(widgetRect.getCellX(),
+                    widgetRect.getCellY(), widgetRect.getSpanX(), widgetRect.getSpanY());
+            // Ignored cells stand for items which can't be moved, like the smartspace
+            lp.canReorder = !widgetRect.shouldIgnore();
+            View view = new View(mContext);
+            cellLayout.addViewToCellLayout(view, -1, id++, lp, true);
+            if (widgetRect.mType == CellLayoutBoard.CellType.MAIN_WIDGET) {
+                mainWidget = view;
+            }
+        }
+        for (CellLayoutBoard.IconPoint icon : board.getIcons()) {
+            CellLayoutLayoutParams lp = new CellLayoutLayoutParams(icon.getCoord().x,
+                    icon.getCoord().y, 1, 1);
+            cellLayout.addViewToCellLayout(new View(mContext), -1, id++, lp, true);
+        }
+        assertNotNull("Board without main widget", mainWidget);
+        cellLayout.markCellsAsUnoccupiedForView(mainWidget);
+        return mainWidget;
+    }
+
+    private ItemConfiguration findReorderSolution(CellLayout cellLayout, View dragView, int x,
+            int y) {
+        CellLayoutLayoutParams lp = (CellLayoutLayoutParams) dragView.getLayoutParams();
+        int[] center = getCenter(cellLayout, x, y, lp.cellHSpan, lp.cellVSpan);
+        int[] direction = new int[2];
+        cellLayout.getDirectionVectorForDrop(center[0], center[1], lp.cellHSpan, lp.cellVSpan,
+                dragView, direction);
+        return cellLayout.getReorderAlgorithm().findReorderSolution(center[0], center[1], 1, 1,
+                lp.cellHSpan, lp.cellVSpan, direction, dragView, true, new ItemConfiguration());
+    }
+
+    private static int[] getCenter(CellLayout cellLayout, int x, int y, int spanX, int spanY) {
+        Rect rect = new Rect();
+        cellLayout.cellToRect(x, y, spanX, spanY, rect);
+        return new int[] {rect.centerX(), rect.centerY()};
+    }
+
+    private static void assertSameSolution(ItemConfiguration expected, ItemConfiguration actual) {
+        assertEquals(expected.isSolution, actual.isSolution);
+        if (!expected.isSolution) {
+            return;
+        }
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.map.size(), actual.map.size());
+        for (int i = 0; i < expected.map.size(); i++) {
+            CellAndSpan c = actual.map.get(expected.map.keyAt(i));
+            assertNotNull(c);
+            assertEquals(expected.map.valueAt(i).toString(), c.toString());
+        }
+    }
+}
@@ -494,6 +494,54 @@ class GridSizeMigrationTaskV2Test {
         disableNewMigrationLogic()
     }
 
+    /**
+     * Migrates a dense 7x7 layout with 10 pages to 5x5 and checks that every item is placed
+     * without overlaps.
+     */
+    @Test
+    @Throws(Exception::class)
+    fun migrateLargeDenseLayout() {
+        val pages = 10
+        var id = 100
+        for (screen in 0 until pages) for (y in 0 until 7) for (x in 0 until 7) {
+            modelHelper.addItem(APP_ICON, screen, DESKTOP, x, y, TEST_PACKAGE, id++,
+                TMP_CONTENT_URI)
+        }
+
+        idp.numDatabaseHotseatIcons = 4
+        idp.numColumns = 5
+        idp.numRows = 5
+        val srcReader = DbReader(db, TMP_TABLE, context, validPackages)
+        val destReader = DbReader(db, TABLE_NAME, context, validPackages)
+        val task = GridSizeMigrationTaskV2(
+            context,
+            db,
+            srcReader,
+            destReader,
+            idp.numDatabaseHotseatIcons,
+            Point(idp.numColumns, idp.numRows)
+        )
+        task.migrate(DeviceGridState(context), DeviceGridState(idp))
+
+        val c = context.contentResolver.query(
+            CONTENT_URI,
+            arrayOf(SCREEN, CELLX, CELLY),
+            "container=$CONTAINER_DESKTOP",
+            null,
+            null,
+            null
+        ) ?: throw IllegalStateException()
+        val cells = HashSet<Triple<Int, Int, Int>>()
+        while (c.moveToNext()) {
+            val cell = Triple(c.getInt(0), c.getInt(1), c.getInt(2))
+            assertThat(cell.second).isLessThan(5)
+            assertThat(cell.third).isLessThan(5)
+            assertThat(cells.add(cell)).isTrue()
+        }
+        c.close()
+        assertThat(cells.size).isEqualTo(pages * 49)
+    }
+
     private fun enableNewMigrationLogic(srcGridSize: String) {
         context.getSharedPreferences(FeatureFlags.FLAGS_PREF_NAME, Context.MODE_PRIVATE)
             .edit()
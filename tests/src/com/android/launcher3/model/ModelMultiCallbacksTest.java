@@ -31,6 +31,7 @@ import androidx.test.filters.SmallTest;
 import com.android.launcher3.model.BgDataModel.Callbacks;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
@@ -147,6 +148,74 @@ public class ModelMultiCallbacksTest {
         assertFalse(cb2.allApps().contains(TestUtil.DUMMY_PACKAGE));
     }
 
+    @Test
+    public void testOffscreenPages_highResIconsLoadedAfterBind() throws Exception {
+        setupWorkspacePages(3);
+
+        MyCallbacks cb = spy(MyCallbacks.class);
+        Executors.MAIN_EXECUTOR.execute(() -> mModelHelper.getModel().addCallbacksAndLoad(cb));
+        waitForLoaderAndTempMainThread();
+        cb.verifySynchronouslyBound(3);
+
+        // Items outside the synchronously bound page are updated once their icons are loaded
+        assertEquals(2, cb.mUpdatedItems.size());
+        for (WorkspaceItemInfo info : cb.mUpdatedItems) {
+            assertFalse(cb.mPageToBindSync.contains(info.screenId));
+        }
+        mModelHelper.executeSimpleTask(model -> {
+            model.forAllWorkspaceItemInfos(Process.myUserHandle(),
+                    info -> assertFalse(info.usingLowResIcon()));
+            return null;
+        });
+    }
+
+    @Test
+    public void testCallbacksWithoutPages_keepBoundPagesOfOtherCallbacks() throws Exception {
+        setupWorkspacePages(3);
+
+        MyCallbacks cb1 = spy(MyCallbacks.class);
+        cb1.mPageToBindSync = IntSet.wrap(1);
+        MyCallbacks cb2 = spy(MyCallbacks.class);
+        cb2.mPageToBindSync = new IntSet();
+        Executors.MAIN_EXECUTOR.execute(() -> {
+            mModelHelper.getModel().addCallbacks(cb1);
+            mModelHelper.getModel().addCallbacksAndLoad(cb2);
+        });
+        waitForLoaderAndTempMainThread();
+        cb1.verifySynchronouslyBound(3);
+
+        // The empty pages of cb2 don't replace the page bound by cb1
+        IntSet boundPages = mModelHelper.executeSimpleTask(
+                model -> model.lastSynchronouslyBoundPages);
+        assertEquals(IntSet.wrap(1), boundPages);
+
+        // So only the items outside of that page wait for their high-res icons
+        assertEquals(2, cb1.mUpdatedItems.size());
+        for (WorkspaceItemInfo info : cb1.mUpdatedItems) {
+            assertFalse(cb1.mPageToBindSync.contains(info.screenId));
+        }
+    }
+
+    @Test
+    public void testConsecutiveReloads_keepModelConsistent() throws Exception {
+        setupWorkspacePages(4);
+
+        MyCallbacks cb = spy(MyCallbacks.class);
+        Executors.MAIN_EXECUTOR.execute(() -> mModelHelper.getModel().addCallbacksAndLoad(cb));
+        for (int i = 0; i < 5; i++) {
+            mModelHelper.getModel().startLoader();
+        }
+        waitForLoaderAndTempMainThread();
+
+        int itemCount = mModelHelper.executeSimpleTask(model -> {
+            for (ItemInfo info : model.workspaceItems) {
+                assertEquals(info, model.itemsIdMap.get(info.id));
+            }
+            return model.itemsIdMap.size();
+        });
+        assertEquals(4, itemCount);
+    }
+
     private void waitForLoaderAndTempMainThread() throws Exception {
         Executors.MAIN_EXECUTOR.submit(() -> {
         }).get();
@@ -168,6 +237,7 @@ public class ModelMultiCallbacksTest {
     private abstract static class MyCallbacks implements Callbacks {
 
         final List<ItemInfo> mItems = new ArrayList<>();
+        final List<WorkspaceItemInfo> mUpdatedItems = new ArrayList<>();
         IntSet mPageToBindSync = IntSet.wrap(0);
         IntSet mPageBoundSync = new IntSet();
         RunnableList mPendingTasks;
@@ -193,6 +263,11 @@ public class ModelMultiCallbacksTest {
             mItems.addAll(shortcuts);
         }
 
+        @Override
+        public void bindWorkspaceItemsChanged(List<WorkspaceItemInfo> updated) {
+            mUpdatedItems.addAll(updated);
+        }
+
         @Override
         public void bindAllApplications(AppInfo[] apps, int flags) {
             mAppInfos = apps;
@@ -205,6 +280,7 @@ public class ModelMultiCallbacksTest {
 
         public void reset() {
             mItems.clear();
+            mUpdatedItems.clear();
             mPageBoundSync = new IntSet();
             mPendingTasks = null;
             mAppInfos = null;
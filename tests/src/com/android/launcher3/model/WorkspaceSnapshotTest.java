@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_ACTIVITY;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.FolderInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for {@link WorkspaceSnapshot}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WorkspaceSnapshotTest {
+
+    private LauncherModelHelper mModelHelper;
+    private Context mContext;
+    private InvariantDeviceProfile mIdp;
+    private LauncherAppState mApp;
+
+    @Before
+    public void setup() {
+        mModelHelper = new LauncherModelHelper();
+        mContext = mModelHelper.sandboxContext;
+        mIdp = InvariantDeviceProfile.INSTANCE.get(mContext);
+        mApp = LauncherAppState.getInstance(mContext);
+        WorkspaceSnapshot.delete(mContext, mIdp);
+    }
+
+    @After
+    public void tearDown() {
+        WorkspaceSnapshot.delete(mContext, mIdp);
+        mModelHelper.destroy();
+    }
+
+    @Test
+    public void readWithoutSnapshot_leavesModelUntouched() {
+        BgDataModel model = new BgDataModel();
+        assertFalse(WorkspaceSnapshot.read(mContext, mIdp, mApp.getIconCache(), model));
+        assertEquals(0, model.itemsIdMap.size());
+    }
+
+    @Test
+    public void writeThenRead_restoresAppsAndFolders() {
+        BgDataModel source = new BgDataModel();
+        source.addItem(mContext, newApp(1, CONTAINER_DESKTOP, 0, 1, 2), false);
+        source.addItem(mContext, newApp(2, CONTAINER_HOTSEAT, 3, 3, 0), false);
+
+        FolderInfo folder = source.findOrMakeFolder(3);
+        folder.id = 3;
+        folder.container = CONTAINER_DESKTOP;
+        folder.screenId = 1;
+        folder.title = "Folder";
+        source.addItem(mContext, folder, false);
+        WorkspaceItemInfo child = newApp(4, 3, 0, 0, 0);
+        child.rank = 0;
+        source.addItem(mContext, child, false);
+
+        WorkspaceSnapshot.write(mContext, mIdp, source);
+
+        BgDataModel restored = new BgDataModel();
+        assertTrue(WorkspaceSnapshot.read(mContext, mIdp, mApp.getIconCache(), restored));
+        assertEquals(source.itemsIdMap.size(), restored.itemsIdMap.size());
+        for (ItemInfo expected : source.itemsIdMap) {
+            ItemInfo actual = restored.itemsIdMap.get(expected.id);
+            assertNotNull(actual);
+            assertEquals(expected.itemType, actual.itemType);
+            assertEquals(expected.container, actual.container);
+            assertEquals(expected.screenId, actual.screenId);
+            assertEquals(expected.cellX, actual.cellX);
+            assertEquals(expected.cellY, actual.cellY);
+            assertEquals(expected.getTargetComponent(), actual.getTargetComponent());
+        }
+        assertEquals(1, restored.folders.get(3).contents.size());
+        assertEquals("Folder", restored.folders.get(3).title.toString());
+    }
+
+    @Test
+    public void gridChange_invalidatesSnapshot() {
+        BgDataModel source = new BgDataModel();
+        source.addItem(mContext, newApp(1, CONTAINER_DESKTOP, 0, 0, 0), false);
+        WorkspaceSnapshot.write(mContext, mIdp, source);
+
+        int numColumns = mIdp.numColumns;
+        mIdp.numColumns = numColumns + 1;
+        try {
+            assertFalse(WorkspaceSnapshot.read(
+                    mContext, mIdp, mApp.getIconCache(), new BgDataModel()));
+        } finally {
+            mIdp.numColumns = numColumns;
+        }
+    }
+
+    private WorkspaceItemInfo newApp(int id, int container, int screenId, int x, int y) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.container = container;
+        info.screenId = screenId;
+        info.cellX = x;
+        info.cellY = y;
+        info.user = Process.myUserHandle();
+        info.title = "App " + id;
+        info.intent = AppInfo.makeLaunchIntent(new ComponentName(TEST_PACKAGE, TEST_ACTIVITY));
+        return info;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.popup;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+import static com.android.launcher3.popup.PopupDataProvider.DOT_UPDATE_INTERVAL_MS;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Notification;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.dot.DotViewIndex;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.notification.NotificationKeyData;
+import com.android.launcher3.util.PackageUserKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Tests the batched notification dot updates of {@link PopupDataProvider}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PopupDataProviderTest {
+
+    private static final String TAG = "PopupDataProviderTest";
+
+    private final List<Predicate<PackageUserKey>> mFullUpdates = new ArrayList<>();
+    private final List<Predicate<PackageUserKey>> mUpdates = new ArrayList<>();
+    private final PopupDataProvider mProvider = new PopupDataProvider(mFullUpdates::add);
+
+    @Test
+    public void testIndex_findsOnlyTheViewsOfTheKeys() {
+        DotViewIndex index = new DotViewIndex();
+        View alpha = createView();
+        View folder = createView();
+        View beta = createView();
+        index.setItem(alpha, createApp("alpha"));
+        index.setItems(folder, List.of(createApp("alpha"), createApp("gamma")));
+        index.setItem(beta, createApp("beta"));
+
+        assertEquals(Set.of(alpha, folder), viewsOf(index, "alpha"));
+        assertEquals(Set.of(folder), viewsOf(index, "gamma"));
+        assertEquals(Set.of(alpha, folder, beta), viewsOf(index, "alpha", "beta"));
+
+        index.removeView(folder);
+        index.setItem(beta, createApp("gamma"));
+        assertEquals(Set.of(alpha), viewsOf(index, "alpha"));
+        assertEquals(Set.of(beta), viewsOf(index, "gamma"));
+        assertEquals(2, index.getViewCount());
+    }
+
+    @Test
+    public void testNotificationsOfAFrame_updateTheDotsOnce() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            mProvider.setChangeListener(createListener());
+            post("alpha", 1);
+            post("beta", 2);
+            post("alpha", 3);
+            // The dots are known right away, only the views are updated later
+            assertNotNull(mProvider.getDotInfoForItem(createApp("alpha")));
+            assertTrue(mUpdates.isEmpty());
+        }).get();
+
+        waitForUpdates(1);
+        MAIN_EXECUTOR.submit(() -> {
+            assertEquals(1, mUpdates.size());
+            assertTrue(mUpdates.get(0).test(key("alpha")));
+            assertTrue(mUpdates.get(0).test(key("beta")));
+            assertTrue(mFullUpdates.isEmpty());
+        }).get();
+    }
+
+    @Test
+    public void testRemovedNotification_updatesTheDot() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            mProvider.setChangeListener(createListener());
+            post("alpha", 1);
+            mProvider.applyPendingDotUpdates();
+            mProvider.onNotificationRemoved(key("alpha"), notificationKey("alpha", 1));
+            mProvider.applyPendingDotUpdates();
+
+            assertNull(mProvider.getDotInfoForItem(createApp("alpha")));
+            assertEquals(2, mUpdates.size());
+        }).get();
+    }
+
+    @Test
+    public void testFullRefresh_updatesTheChangedDotsRightAway() throws Exception {
+        MAIN_EXECUTOR.submit(() -> {
+            mProvider.setChangeListener(createListener());
+            post("alpha", 1);
+            mProvider.applyPendingDotUpdates();
+            post("beta", 2);
+            mProvider.onNotificationFullRefresh(List.of(
+                    createNotification("alpha", 1), createNotification("gamma", 3)));
+
+            assertEquals(1, mFullUpdates.size());
+            Predicate<PackageUserKey> updated = mFullUpdates.get(0);
+            assertFalse(updated.test(key("alpha")));
+            assertTrue(updated.test(key("beta")));
+            assertTrue(updated.test(key("gamma")));
+            // The pending update was part of the refresh
+            mProvider.applyPendingDotUpdates();
+            assertEquals(2, mUpdates.size());
+        }).get();
+    }
+
+    @Test
+    public void testBatchedUpdates_onlyIncludeThePostedPackages() throws Exception {
+        int packages = 20;
+        int frames = 10;
+        MAIN_EXECUTOR.submit(() -> {
+            mProvider.setChangeListener(createListener());
+            for (int frame = 0; frame < frames; frame++) {
+                // Ten notifications of five packages per frame
+                for (int i = 0; i < 10; i++) {
+                    post("app" + (frame * 5 + i % 5) % packages, frame * 10 + i);
+                }
+                mProvider.applyPendingDotUpdates();
+            }
+
+            assertEquals(frames, mUpdates.size());
+            for (int frame = 0; frame < frames; frame++) {
+                Set<Integer> updated = new HashSet<>();
+                for (int i = 0; i < packages; i++) {
+                    if (mUpdates.get(frame).test(key("app" + i))) {
+                        updated.add(i);
+                    }
+                }
+                int first = frame * 5 % packages;
+                assertEquals(Set.of(first, first + 1, first + 2, first + 3, first + 4), updated);
+            }
+            assertTrue(mFullUpdates.isEmpty());
+        }).get();
+    }
+
+    /**
+     * Posts 100 notifications per second for a second, spread over 20 packages with 10 indexed
+     * views each, and reports the number of dot updates and the cost of the notifications. The
+     * numbers depend on the device and its frame rate, so they are only logged, not checked.
+     */
+    @Test
+    public void testBenchmark_hundredNotificationsPerSecond() throws Exception {
+        int packages = 20;
+        int notifications = 100;
+        long[] postTimeNanos = new long[1];
+        CountDownLatch posted = new CountDownLatch(notifications);
+        MAIN_EXECUTOR.submit(() -> {
+            mProvider.setChangeListener(createListener());
+            DotViewIndex index = mProvider.getDotViewIndex();
+            for (int i = 0; i < packages * 10; i++) {
+                index.setItem(createView(), createApp("app" + (i % packages)));
+            }
+        }).get();
+
+        long start = SystemClock.uptimeMillis();
+        for (int i = 0; i < notifications; i++) {
+            int id = i;
+            MAIN_EXECUTOR.getHandler().postAtTime(() -> {
+                long postStart = System.nanoTime();
+                post("app" + (id % packages), id);
+                postTimeNanos[0] += System.nanoTime() - postStart;
+                posted.countDown();
+            }, start + i * 1000L / notifications);
+        }
+        assertTrue(posted.await(5, TimeUnit.SECONDS));
+        long duration = SystemClock.uptimeMillis() - start;
+        Thread.sleep(2 * DOT_UPDATE_INTERVAL_MS);
+
+        MAIN_EXECUTOR.submit(() -> {
+            Log.d(TAG, "Posted " + notifications + " notifications in " + duration + "ms: "
+                    + mUpdates.size() + " dot updates, " + postTimeNanos[0] / notifications
+                    + "ns per notification");
+            // Every package is updated eventually, whatever the batching
+            for (int i = 0; i < packages; i++) {
+                PackageUserKey key = key("app" + i);
+                assertTrue(mUpdates.stream().anyMatch(update -> update.test(key)));
+            }
+        }).get();
+    }
+
+    private void waitForUpdates(int count) throws Exception {
+        long end = SystemClock.uptimeMillis() + 1000;
+        while (MAIN_EXECUTOR.submit(mUpdates::size).get() < count
+                && SystemClock.uptimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+
+    private PopupDataProvider.PopupDataChangeListener createListener() {
+        return new PopupDataProvider.PopupDataChangeListener() {
+            @Override
+            public void onNotificationDotsUpdated(Predicate<PackageUserKey> updatedDots) {
+                mUpdates.add(updatedDots);
+            }
+        };
+    }
+
+    private void post(String packageName, int id) {
+        mProvider.onNotificationPosted(key(packageName), notificationKey(packageName, id));
+    }
+
+    private static Set<View> viewsOf(DotViewIndex index, String... packageNames) {
+        Set<PackageUserKey> keys = new HashSet<>();
+        for (String packageName : packageNames) {
+            keys.add(key(packageName));
+        }
+        Set<View> views = new HashSet<>();
+        index.forEachView(keys, views::add);
+        return views;
+    }
+
+    private static View createView() {
+        return new View(getApplicationContext());
+    }
+
+    private static PackageUserKey key(String packageName) {
+        return new PackageUserKey(packageName, Process.myUserHandle());
+    }
+
+    private static NotificationKeyData notificationKey(String packageName, int id) {
+        return NotificationKeyData.fromNotification(createNotification(packageName, id));
+    }
+
+    private static StatusBarNotification createNotification(String packageName, int id) {
+        return new StatusBarNotification(packageName, packageName, id, null, Process.myUid(), 0,
+                new Notification(), Process.myUserHandle(), null, 0);
+    }
+
+    private static AppInfo createApp(String packageName) {
+        ComponentName cn = new ComponentName(packageName, "Activity");
+        return new AppInfo(cn, packageName, Process.myUserHandle(),
+                new Intent().setComponent(cn));
+    }
+}
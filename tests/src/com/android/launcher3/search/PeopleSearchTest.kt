@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.search
+
+import androidx.room.Room
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.NeoLauncherDb
+import com.saggitt.omega.data.PeopleDao
+import com.saggitt.omega.data.PeopleRepository
+import com.saggitt.omega.data.models.PeopleInfo
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests the full text search of the contacts in [PeopleDao] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class PeopleSearchTest {
+
+    private lateinit var db: NeoLauncherDb
+    private lateinit var dao: PeopleDao
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder(
+            ApplicationProvider.getApplicationContext(),
+            NeoLauncherDb::class.java
+        ).build()
+        dao = db.peopleDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun wordPrefixes_matchNames() = runBlocking {
+        dao.insertAll(
+            listOf(
+                contact(1, "John Smith"),
+                contact(2, "Jo Adams"),
+                contact(3, "Émile Smithson"),
+                contact(4, "Joanna Blacksmith"),
+            )
+        )
+
+        assertThat(names("jo sm")).containsExactly("John Smith")
+        assertThat(names("smith")).containsExactly("John Smith", "Émile Smithson").inOrder()
+        // Accents and case are ignored
+        assertThat(names("EMILE")).containsExactly("Émile Smithson")
+        assertThat(names("-")).isEmpty()
+    }
+
+    @Test
+    fun mostUsedContacts_comeFirst() = runBlocking {
+        dao.insertAll(listOf(contact(1, "Anna Bell"), contact(2, "Anna Carter")))
+        dao.markUsed("2")
+
+        assertThat(names("anna")).containsExactly("Anna Carter", "Anna Bell").inOrder()
+
+        // Syncing the contacts again keeps their usage
+        dao.insertAll(listOf(contact(1, "Anna Bell"), contact(2, "Anna Carter")))
+        assertThat(names("anna")).containsExactly("Anna Carter", "Anna Bell").inOrder()
+    }
+
+    @Test
+    fun updatedContacts_areReindexed() = runBlocking {
+        dao.insert(contact(1, "Robert Smith"))
+        dao.insert(contact(1, "Bob Smith"))
+
+        assertThat(names("robert")).isEmpty()
+        assertThat(names("bob")).containsExactly("Bob Smith")
+
+        dao.deleteAll()
+        assertThat(names("bob")).isEmpty()
+    }
+
+    @Test
+    fun sync_dropsRemovedContactsAndKeepsUsage() = runBlocking {
+        dao.insertAll(listOf(contact(1, "Anna Bell"), contact(2, "Anna Carter")))
+        dao.markUsed("1")
+
+        dao.sync(listOf(contact(1, "Anna Bell"), contact(3, "Anna Davis")))
+
+        assertThat(names("anna")).containsExactly("Anna Bell", "Anna Davis").inOrder()
+    }
+
+    @Test
+    fun matchQuery_dropsOperators() {
+        assertThat(PeopleRepository.toMatchQuery("Jo OR \"sm*\" -x")).isEqualTo("jo* or* sm* x*")
+        assertThat(PeopleRepository.toMatchQuery(" *() ")).isNull()
+    }
+
+    @Test
+    fun searchTenThousandContacts() = runBlocking {
+        val firstNames = listOf(
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda",
+            "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen",
+        )
+        val lastNames = listOf(
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+            "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+            "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+        )
+        val contacts = (0 until CONTACT_COUNT).map {
+            val first = firstNames[it % firstNames.size]
+            val last = lastNames[it / firstNames.size % lastNames.size]
+            contact(it, "$first $last ${it / (firstNames.size * lastNames.size)}")
+        }
+        dao.insertAll(contacts)
+
+        // The lookup goes through the name index instead of scanning the contacts
+        val plan = db.query(
+            SimpleSQLiteQuery(
+                "EXPLAIN QUERY PLAN $FIND_PEOPLE_QUERY",
+                arrayOf(PeopleRepository.toMatchQuery("jennifer lop"), 5)
+            )
+        ).use { cursor ->
+            generateSequence { if (cursor.moveToNext()) cursor.getString(3) else null }.toList()
+        }
+        assertThat(plan.any { it.contains("VIRTUAL TABLE INDEX") }).isTrue()
+        assertThat(plan.none { it.contains(Regex("^SCAN (TABLE )?PeopleInfo\\b")) }).isTrue()
+
+        val results = names("jennifer lop")
+        assertThat(results).hasSize(5)
+        assertThat(results.all { it.startsWith("Jennifer Lopez ") }).isTrue()
+    }
+
+    private suspend fun names(query: String): List<String> {
+        val match = PeopleRepository.toMatchQuery(query) ?: return emptyList()
+        return dao.findPeople(match, 5).map { it.contactName }
+    }
+
+    private fun contact(id: Int, name: String) = PeopleInfo(
+        contactId = id.toString(),
+        contactName = name,
+        contactPhone = "555-%04d".format(id),
+    )
+
+    companion object {
+        private const val CONTACT_COUNT = 10_000
+
+        // The query of PeopleDao.findPeople
+        private const val FIND_PEOPLE_QUERY = "SELECT PeopleInfo.* FROM PeopleInfo " +
+                "JOIN PeopleFts ON PeopleInfo.rowid = PeopleFts.rowid WHERE PeopleFts MATCH ? " +
+                "ORDER BY PeopleInfo.usageCount DESC, PeopleInfo.contactName LIMIT ?"
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.search
+
+import android.content.ComponentName
+import android.content.Intent
+import android.os.Process
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem
+import com.android.launcher3.allapps.BaseAllAppsAdapter.VIEW_TYPE_ALL_APPS_DIVIDER
+import com.android.launcher3.model.data.AppInfo
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.search.ScoredItem
+import com.saggitt.omega.search.SearchAggregator
+import com.saggitt.omega.search.SearchSource
+import com.saggitt.omega.search.SearchSourceResult
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.PrintWriter
+import java.io.StringWriter
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/** Tests the merging of the results of several sources by [SearchAggregator] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class SearchAggregatorTest {
+
+    private val callback = Results()
+
+    @Test
+    fun fastSources_areNotDelayedBySlowOnes() {
+        val aggregator = SearchAggregator(
+            listOf(
+                FakeSource("slow", delayMs = 300, "b" to 1f),
+                FakeSource("fast", delayMs = 0, "a" to 1f),
+            )
+        )
+        search(aggregator, "query")
+
+        val first = callback.next()
+        assertThat(titles(first)).containsExactly("a")
+        // The slow section still comes first
+        val second = callback.next()
+        assertThat(titles(second)).containsExactly("b", DIVIDER, "a").inOrder()
+    }
+
+    @Test
+    fun itemsOfASource_areOrderedByScore() {
+        val aggregator = SearchAggregator(
+            listOf(FakeSource("scored", delayMs = 0, "low" to 0.1f, "high" to 0.9f, "mid" to 0.5f))
+        )
+        search(aggregator, "query")
+
+        assertThat(titles(callback.next())).containsExactly("high", "mid", "low").inOrder()
+    }
+
+    @Test
+    fun sourcesPastTheirDeadline_areDropped() {
+        val aggregator = SearchAggregator(
+            listOf(
+                FakeSource("late", delayMs = 2000, "late" to 1f, deadlineMs = 100),
+                FakeSource("on_time", delayMs = 0, "on time" to 1f),
+            )
+        )
+        search(aggregator, "query")
+
+        assertThat(titles(callback.next())).containsExactly("on time")
+        assertThat(callback.poll(500)).isNull()
+        assertThat(dump()).contains("late")
+    }
+
+    @Test
+    fun newQuery_cancelsThePreviousOne() {
+        val aggregator = SearchAggregator(
+            listOf(FakeSource("echo", delayMs = 200, echoQuery = true))
+        )
+        MAIN_EXECUTOR.submit {
+            aggregator.doSearch("first", callback)
+            aggregator.cancel(false)
+            aggregator.doSearch("second", callback)
+        }.get()
+
+        assertThat(titles(callback.next())).containsExactly("second")
+        assertThat(callback.poll(500)).isNull()
+    }
+
+    private fun search(aggregator: SearchAggregator, query: String) {
+        MAIN_EXECUTOR.submit { aggregator.doSearch(query, callback) }.get()
+    }
+
+    private fun titles(items: List<AdapterItem>) = items.map {
+        if (it.viewType == VIEW_TYPE_ALL_APPS_DIVIDER) DIVIDER else it.itemInfo.title.toString()
+    }
+
+    private fun dump(): String {
+        val out = StringWriter()
+        SearchAggregator.dump("", PrintWriter(out))
+        return out.toString()
+    }
+
+    private class FakeSource(
+        override val name: String,
+        private val delayMs: Long,
+        private vararg val results: Pair<String, Float>,
+        override val deadlineMs: Long = 1000,
+        private val echoQuery: Boolean = false,
+    ) : SearchSource {
+
+        override fun search(query: String): Flow<SearchSourceResult> = flow {
+            delay(delayMs)
+            val items = if (echoQuery) listOf(query to 1f) else results.toList()
+            emit(SearchSourceResult(items.map { (title, score) ->
+                ScoredItem(AdapterItem.asApp(createApp(title)), score)
+            }))
+        }
+    }
+
+    private class Results : SearchCallback<AdapterItem> {
+        private val results = LinkedBlockingQueue<List<AdapterItem>>()
+
+        override fun onSearchResult(
+            query: String,
+            items: ArrayList<AdapterItem>,
+            suggestions: List<String>,
+        ) {
+            results.add(ArrayList(items))
+        }
+
+        override fun clearSearchResult() {}
+
+        override fun onSubmitSearch(query: String) = false
+
+        fun poll(timeoutMs: Long): List<AdapterItem>? =
+            results.poll(timeoutMs, TimeUnit.MILLISECONDS)
+
+        fun next() = poll(5000)!!
+    }
+
+    companion object {
+        private const val DIVIDER = "divider"
+
+        private fun createApp(title: String): AppInfo {
+            val cn = ComponentName("com.example.$title", "Activity")
+            return AppInfo(cn, title, Process.myUserHandle(), Intent().setComponent(cn))
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.search
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.models.SearchProvider
+import com.saggitt.omega.search.WebSuggestions
+import okhttp3.Interceptor
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.json.JSONArray
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/** Tests [WebSuggestions] against a local stand-in for a suggestions server */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class WebSuggestionsTest {
+
+    private val server = StandInServer()
+    private var now = 0L
+    private val suggestions = WebSuggestions(
+        OkHttpClient.Builder().addInterceptor(server).build()
+    ) { now }
+
+    private val provider = SearchProvider(
+        name = "Local",
+        iconId = 0,
+        searchUrl = "",
+        suggestionUrl = "http://suggestions.test/complete?q=%s",
+        enabled = true,
+        order = 0,
+    )
+
+    @Test
+    fun cachedAnswer_isReusedUntilItExpires() {
+        assertThat(fetch("goo")).isNotEmpty()
+        assertThat(server.requests.get()).isEqualTo(1)
+
+        val cached = Results()
+        assertThat(suggestions.request(provider, "goo", cached)).isNull()
+        assertThat(cached.received).hasSize(1)
+        assertThat(server.requests.get()).isEqualTo(1)
+
+        now += TimeUnit.MINUTES.toMillis(10)
+        fetch("goo")
+        assertThat(server.requests.get()).isEqualTo(2)
+    }
+
+    @Test
+    fun shorterQueryAnswer_isShownWhileRefreshing() {
+        fetch("goo")
+
+        val results = Results()
+        val request = suggestions.request(provider, "goog", results)
+        // The answer of "goo" is passed right away, reduced to the suggestions matching "goog"
+        assertThat(results.received).hasSize(1)
+        assertThat(results.received[0]).containsExactly("goog 1", "goog 2").inOrder()
+
+        results.awaitAll(request)
+        assertThat(results.received[1]).containsExactly(
+            "googg 1", "googg 2", "goog 1", "goog 2", "goog 3"
+        ).inOrder()
+    }
+
+    @Test
+    fun sameQueries_shareOneCall() {
+        server.delayMs = 200
+        val first = Results()
+        val second = Results()
+        suggestions.request(provider, "launcher", first)
+        suggestions.request(provider, "launcher", second)
+        first.await()
+        second.await()
+
+        assertThat(server.requests.get()).isEqualTo(1)
+        assertThat(second.received.single()).isEqualTo(first.received.single())
+    }
+
+    @Test
+    fun cancelledRequest_isNotAnswered() {
+        server.delayMs = 200
+        val results = Results()
+        suggestions.request(provider, "launcher", results)!!.cancel()
+
+        assertThat(results.callbacks.tryAcquire(500, TimeUnit.MILLISECONDS)).isFalse()
+        assertThat(results.received).isEmpty()
+    }
+
+    @Test
+    fun failedRequest_isFinishedWithTheError() {
+        server.failing = true
+        val results = Results()
+        suggestions.request(provider, "launcher", results)
+
+        assertThat(results.finished.tryAcquire(5, TimeUnit.SECONDS)).isTrue()
+        assertThat(results.error).isInstanceOf(IOException::class.java)
+        assertThat(results.received).isEmpty()
+    }
+
+    @Test
+    fun suggestionsExtendingTheQuery_comeFirst() {
+        val body = """["neo",["Neon","new york","neo launcher","NEON","neo","news","neom"]]"""
+
+        assertThat(WebSuggestions.parse("neo", body))
+            .containsExactly("Neon", "neo launcher", "neo", "neom", "new york")
+            .inOrder()
+    }
+
+    @Test
+    fun typingAQueryAgain_isAnsweredFromTheCache() {
+        val query = "neo launcher"
+
+        // Each prefix is fetched once, then every prefix is answered from the cache
+        assertThat(typeQuery(query)).isEqualTo(query.length)
+        assertThat(typeQuery(query)).isEqualTo(0)
+    }
+
+    /**
+     * Requests the suggestions of each prefix of [query] in turn, like while typing it, and
+     * returns the number of requests made to the server
+     */
+    private fun typeQuery(query: String): Int {
+        val requestsBefore = server.requests.get()
+        for (length in 1..query.length) {
+            val results = Results()
+            val request = suggestions.request(provider, query.substring(0, length), results)
+            // Let the fetch fill the cache before typing on
+            results.awaitAll(request)
+            assertThat(results.received).isNotEmpty()
+        }
+        return server.requests.get() - requestsBefore
+    }
+
+    /**
+     * Requests the suggestions for [query] and returns them once they are fetched
+     */
+    private fun fetch(query: String): List<String> {
+        val results = Results()
+        results.awaitAll(suggestions.request(provider, query, results))
+        return results.received.last()
+    }
+
+    private class Results : WebSuggestions.Listener {
+        private val thread = Thread.currentThread()
+
+        val callbacks = Semaphore(0)
+        val received: MutableList<List<String>> = Collections.synchronizedList(mutableListOf())
+        val finished = Semaphore(0)
+
+        @Volatile
+        var error: Exception? = null
+
+        // The callbacks made while requesting, with the cached suggestions
+        @Volatile
+        var immediate = 0
+
+        override fun onSuggestions(query: String, suggestions: List<String>) {
+            if (Thread.currentThread() === thread) {
+                immediate++
+            }
+            received.add(suggestions)
+            callbacks.release()
+        }
+
+        override fun onFinished(query: String, error: Exception?) {
+            this.error = error
+            finished.release()
+        }
+
+        fun await(count: Int = 1) {
+            assertThat(callbacks.tryAcquire(count, 5, TimeUnit.SECONDS)).isTrue()
+        }
+
+        /**
+         * Waits for the cached suggestions and, if [request] is not null, the fetched ones
+         */
+        fun awaitAll(request: WebSuggestions.SuggestionsRequest?, alreadyReceived: Int = 0) {
+            val expected = immediate + (if (request != null) 1 else 0) - alreadyReceived
+            if (expected > 0) {
+                await(expected)
+            }
+        }
+    }
+
+    /**
+     * Answers each query q with the suggestions "qg 1", "qg 2", "q 1", "q 2" and "q 3", after
+     * [delayMs], or fails them while [failing]
+     */
+    private class StandInServer : Interceptor {
+        val requests = AtomicInteger()
+
+        @Volatile
+        var delayMs = 0L
+
+        @Volatile
+        var failing = false
+
+        override fun intercept(chain: Interceptor.Chain): Response {
+            requests.incrementAndGet()
+            if (delayMs > 0) {
+                Thread.sleep(delayMs)
+            }
+            if (failing) {
+                throw IOException("Unreachable")
+            }
+            val query = chain.request().url.queryParameter("q")!!
+            val suggestions =
+                listOf("${query}g 1", "${query}g 2", "$query 1", "$query 2", "$query 3")
+            val body = JSONArray().put(query).put(JSONArray(suggestions))
+            return Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(body.toString().toResponseBody("application/json".toMediaType()))
+                .build()
+        }
+    }
+}
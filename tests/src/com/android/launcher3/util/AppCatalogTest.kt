@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.ComponentName
+import android.content.Context
+import android.content.Intent
+import android.content.pm.LauncherApps
+import android.os.Process
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherAppState
+import com.android.launcher3.model.data.AppInfo
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.android.launcher3.util.Executors.MODEL_EXECUTOR
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.util.AppCatalog
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests the updates of [AppCatalog] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class AppCatalogTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private var hiddenApps = emptySet<String>()
+    private val catalog = AppCatalog(context, false) { hiddenApps }
+
+    @Test
+    fun apps_areOrderedByLabel() {
+        update(createApp("b", "Beta"), createApp("a", "alpha"), createApp("c", "Gamma"))
+
+        assertThat(catalog.apps.value.map { it.label })
+            .containsExactly("alpha", "Beta", "Gamma")
+            .inOrder()
+    }
+
+    @Test
+    fun unchangedApps_areKept() {
+        val alpha = createApp("a", "Alpha")
+        val beta = createApp("b", "Beta")
+        update(alpha, beta)
+        val before = catalog.apps.value
+
+        // Like the model binding new copies after an app is installed and another renamed
+        update(AppInfo(alpha), createApp("b", "Bravo"), createApp("c", "Charlie"))
+        val after = catalog.apps.value
+
+        assertThat(after.map { it.label }).containsExactly("Alpha", "Bravo", "Charlie").inOrder()
+        assertThat(after[0]).isSameInstanceAs(before[0])
+        assertThat(after[1]).isNotSameInstanceAs(before[1])
+    }
+
+    @Test
+    fun removedApps_areDropped() {
+        update(createApp("a", "Alpha"), createApp("b", "Beta"))
+        update(createApp("a", "Alpha"))
+
+        assertThat(catalog.apps.value.map { it.label }).containsExactly("Alpha")
+    }
+
+    @Test
+    fun hiddenApps_areListed() {
+        // The model doesn't bind hidden apps, the catalog must still offer to unhide them
+        val activity = context.getSystemService(LauncherApps::class.java)
+            .getActivityList(null, Process.myUserHandle())
+            .first()
+        val key = ComponentKey(activity.componentName, activity.user)
+        hiddenApps = setOf(key.toString())
+
+        val apps = catalog.withHiddenApps(arrayOf(createApp("a", "Alpha")))
+        update(*apps)
+
+        assertThat(catalog.apps.value.map { it.key }).contains(key)
+        assertThat(catalog.apps.value.map { it.label }).contains("Alpha")
+    }
+
+    @Test
+    fun shownApps_areNotDuplicated() {
+        val shown = createApp("a", "Alpha")
+        hiddenApps = setOf(shown.toComponentKey().toString())
+
+        assertThat(catalog.withHiddenApps(arrayOf(shown))).asList().containsExactly(shown)
+    }
+
+    @Test
+    fun boundApps_updateTheCatalog_withoutBindingTheWorkspace() {
+        val model = LauncherAppState.getInstance(context).model
+        val attached = MAIN_EXECUTOR.submit<AppCatalog> {
+            AppCatalog(context, true) { emptySet() }
+        }.get()
+        assertThat(model.callbacks.toList()).doesNotContain(attached)
+
+        model.notifyAppsBound(arrayOf(createApp("a", "Alpha")))
+        MODEL_EXECUTOR.submit {}.get()
+        MAIN_EXECUTOR.submit {}.get()
+
+        assertThat(attached.apps.value.map { it.label }).containsExactly("Alpha")
+    }
+
+    private fun update(vararg apps: AppInfo) {
+        MAIN_EXECUTOR.submit { catalog.update(arrayOf(*apps)) }.get()
+    }
+
+    private fun createApp(name: String, title: String): AppInfo {
+        val cn = ComponentName("com.example.$name", "Activity")
+        return AppInfo(cn, title, Process.myUserHandle(), Intent().setComponent(cn))
+    }
+}
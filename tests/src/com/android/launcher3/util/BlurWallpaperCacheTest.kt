@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.Context
+import android.graphics.Bitmap
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.blur.BlurWallpaperCache
+import com.saggitt.omega.blur.StackBlur
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.Random
+import java.util.concurrent.Executor
+
+/** Tests the blurred wallpapers stored by [BlurWallpaperCache] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class BlurWallpaperCacheTest {
+
+    private val dir = File(
+        ApplicationProvider.getApplicationContext<Context>().cacheDir,
+        "blur_test"
+    )
+    private val cache = BlurWallpaperCache(dir, DIRECT, DIRECT)
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun cacheHit_matchesAFreshBlur() {
+        val fresh = createBlurredBitmap()
+        cache.store(KEY, BlurWallpaperCache.Entry(fresh, 1080, 2400))
+
+        val entry = load(KEY)!!
+
+        assertThat(entry.wallpaperWidth).isEqualTo(1080)
+        assertThat(entry.wallpaperHeight).isEqualTo(2400)
+        assertThat(pixels(entry.bitmap)).isEqualTo(pixels(fresh))
+    }
+
+    @Test
+    fun otherSettings_miss() {
+        cache.store(KEY, BlurWallpaperCache.Entry(createBlurredBitmap(), 1080, 2400))
+
+        assertThat(load(KEY.copy(radius = 10))).isNull()
+        assertThat(load(KEY.copy(wallpaperId = 8))).isNull()
+        assertThat(load(KEY.copy(displayWidth = 1440, displayHeight = 3200))).isNull()
+    }
+
+    @Test
+    fun staleEntries_areEvicted() {
+        val newKey = KEY.copy(wallpaperId = 8)
+        cache.store(KEY, BlurWallpaperCache.Entry(createBlurredBitmap(), 1080, 2400))
+        cache.store(newKey, BlurWallpaperCache.Entry(createBlurredBitmap(), 1080, 2400))
+
+        assertThat(load(KEY)).isNull()
+        assertThat(load(newKey)).isNotNull()
+        assertThat(dir.list()).asList().containsExactly(newKey.fileName)
+    }
+
+    private fun load(key: BlurWallpaperCache.Key): BlurWallpaperCache.Entry? {
+        var result: BlurWallpaperCache.Entry? = null
+        cache.load(key) { result = it }
+        return result
+    }
+
+    private fun createBlurredBitmap(): Bitmap {
+        val random = Random(44)
+        val bitmap = Bitmap.createBitmap(135, 300, Bitmap.Config.ARGB_8888)
+        bitmap.setPixels(IntArray(135 * 300) { random.nextInt() or 0xFF000000.toInt() },
+            0, 135, 0, 0, 135, 300)
+        StackBlur().blur(bitmap, 25)
+        return bitmap
+    }
+
+    private fun pixels(bitmap: Bitmap) = IntArray(bitmap.width * bitmap.height).also {
+        bitmap.getPixels(it, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+    }
+
+    companion object {
+        private val DIRECT = Executor { it.run() }
+        private val KEY = BlurWallpaperCache.Key(7, 25, 1.25f, 1080, 2400)
+    }
+}
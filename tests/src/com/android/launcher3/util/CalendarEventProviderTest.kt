@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.Context
+import android.database.Cursor
+import android.database.MatrixCursor
+import android.net.Uri
+import android.provider.CalendarContract
+import android.test.mock.MockContentProvider
+import android.test.mock.MockContentResolver
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.smartspace.provider.CalendarEventProvider
+import com.saggitt.omega.smartspace.provider.CalendarEventProvider.CalendarEvent
+import com.saggitt.omega.smartspace.provider.CalendarEventProvider.EventWindow
+import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/** Tests the calendar events shown by [CalendarEventProvider] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class CalendarEventProviderTest {
+
+    private val calendar = FakeCalendarProvider()
+    private val changes = MutableSharedFlow<Unit>(replay = 1)
+    private val provider = CalendarEventProvider(
+        ApplicationProvider.getApplicationContext<Context>(),
+        MockContentResolver().apply { addProvider(CalendarContract.AUTHORITY, calendar) },
+        changes
+    )
+
+    @Test
+    fun window_showsTheFirstEventInRange() {
+        val now = 1_000_000_000L
+        val window = EventWindow(
+            listOf(event(1, "Past", now - minutes(20)), event(2, "Soon", now + minutes(30))),
+            now + TimeUnit.DAYS.toMillis(1)
+        )
+
+        assertThat(window.eventAt(now)?.title).isEqualTo("Soon")
+        assertThat(window.eventAt(now - minutes(10))?.title).isEqualTo("Past")
+        assertThat(window.eventAt(now + minutes(50))?.title).isNull()
+    }
+
+    @Test
+    fun window_changesAtTheEventBoundaries() {
+        val now = 1_000_000_000L
+        val start = now + minutes(90)
+        val window = EventWindow(listOf(event(1, "Later", start)), now + TimeUnit.DAYS.toMillis(1))
+
+        // Shown from an hour before the start, to 15 minutes after
+        assertThat(window.nextChange(now)).isEqualTo(start - minutes(60))
+        assertThat(window.eventAt(start - minutes(60))?.title).isEqualTo("Later")
+        assertThat(window.nextChange(start - minutes(1))).isEqualTo(start)
+        assertThat(window.nextChange(start)).isEqualTo(start + minutes(15))
+        assertThat(window.eventAt(start + minutes(15))).isNull()
+        assertThat(window.nextChange(start + minutes(15))).isEqualTo(window.end)
+    }
+
+    @Test
+    fun window_changesEveryMinuteUntilTheStart() {
+        val now = 1_000_000_000L
+        val start = now + minutes(30)
+        val window = EventWindow(listOf(event(1, "Soon", start)), now + TimeUnit.DAYS.toMillis(1))
+
+        // The title counts the minutes left, rounded up
+        assertThat(window.nextChange(now)).isEqualTo(now + minutes(1))
+        assertThat(window.nextChange(now + 1)).isEqualTo(now + minutes(1))
+        assertThat(window.nextChange(start - minutes(60))).isEqualTo(start - minutes(59))
+        assertThat(window.nextChange(start - 1)).isEqualTo(start)
+    }
+
+    @Test
+    fun nextEvent_isReadOnce() = runBlocking {
+        val now = System.currentTimeMillis()
+        calendar.events += event(1, "Standup", now + minutes(20))
+        calendar.events += event(2, "Tomorrow", now + TimeUnit.HOURS.toMillis(20))
+
+        val targets = ArrayList<List<SmartspaceTarget>>()
+        withTimeoutOrNull(1000) { provider.internalTargets.toList(targets) }
+
+        assertThat(targets).hasSize(1)
+        assertThat(title(targets[0])).startsWith("Standup")
+        // No polling while nothing changes
+        assertThat(calendar.queries.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun calendarChanges_areShown() = runBlocking {
+        val now = System.currentTimeMillis()
+        calendar.events += event(1, "Standup", now + minutes(20))
+
+        val targets = ArrayList<List<SmartspaceTarget>>()
+        withTimeoutOrNull(3000) {
+            provider.internalTargets.collect {
+                targets.add(it)
+                if (targets.size == 1) {
+                    calendar.events.clear()
+                    calendar.events += event(1, "Retro", now + minutes(20))
+                    // Several changes are read once
+                    repeat(3) { changes.emit(Unit) }
+                }
+            }
+        }
+
+        assertThat(targets).hasSize(2)
+        assertThat(title(targets[0])).startsWith("Standup")
+        assertThat(title(targets[1])).startsWith("Retro")
+        assertThat(calendar.queries.get()).isEqualTo(2)
+    }
+
+    private fun title(targets: List<SmartspaceTarget>) =
+        targets.single().headerAction!!.title.toString()
+
+    private class FakeCalendarProvider : MockContentProvider() {
+        val events = CopyOnWriteArrayList<CalendarEvent>()
+        val queries = AtomicInteger()
+
+        override fun query(
+            uri: Uri,
+            projection: Array<String>?,
+            selection: String?,
+            selectionArgs: Array<String>?,
+            sortOrder: String?
+        ): Cursor {
+            queries.incrementAndGet()
+            val from = selectionArgs!![0].toLong()
+            val to = selectionArgs[1].toLong()
+            val limit = sortOrder!!.substringAfter("LIMIT ").trim().toInt()
+            val cursor = MatrixCursor(projection!!)
+            events.filter { it.start in (from + 1)..to }.sortedBy { it.start }.take(limit)
+                .forEach { event ->
+                    cursor.addRow(projection.map {
+                        when (it) {
+                            CalendarContract.Events._ID -> event.id
+                            CalendarContract.Events.TITLE -> event.title
+                            CalendarContract.Events.DTSTART -> event.start
+                            CalendarContract.Events.DTEND -> event.end
+                            else -> null
+                        }
+                    })
+                }
+            return cursor
+        }
+    }
+
+    companion object {
+        private fun minutes(count: Long) = TimeUnit.MINUTES.toMillis(count)
+
+        private fun event(id: Long, title: String, start: Long) =
+            CalendarEvent(id, title, start, start + minutes(30), null, null)
+    }
+}
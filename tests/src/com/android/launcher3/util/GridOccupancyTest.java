@@ -1,5 +1,6 @@
 package com.android.launcher3.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -10,6 +11,8 @@ import androidx.test.filters.SmallTest;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 /**
  * Unit tests for {@link GridOccupancy}
  */
@@ -55,16 +58,160 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    public void testMatchesBooleanGrid() {
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            int countX = 1 + random.nextInt(8);
+            int countY = 1 + random.nextInt(8);
+            GridOccupancy grid = new GridOccupancy(countX, countY);
+            BooleanGrid reference = new BooleanGrid(countX, countY);
+
+            for (int op = 0; op < 20; op++) {
+                int x = random.nextInt(countX + 1) - 1;
+                int y = random.nextInt(countY + 1) - 1;
+                int spanX = 1 + random.nextInt(3);
+                int spanY = 1 + random.nextInt(3);
+                boolean value = random.nextInt(3) != 0;
+                grid.markCells(x, y, spanX, spanY, value);
+                reference.markCells(x, y, spanX, spanY, value);
+
+                int largestArea = 0;
+                for (int sx = 1; sx <= countX; sx++) {
+                    for (int sy = 1; sy <= countY; sy++) {
+                        int[] expected = new int[2];
+                        int[] actual = new int[2];
+                        boolean found = reference.findVacantCell(expected, sx, sy);
+                        assertEquals(found, grid.findVacantCell(actual, sx, sy));
+                        if (found) {
+                            assertArrayEquals(expected, actual);
+                            largestArea = Math.max(largestArea, sx * sy);
+                        }
+                        for (int cx = -1; cx <= countX; cx++) {
+                            for (int cy = -1; cy <= countY; cy++) {
+                                assertEquals(reference.isRegionVacant(cx, cy, sx, sy),
+                                        grid.isRegionVacant(cx, cy, sx, sy));
+                            }
+                        }
+                    }
+                }
+                // Read it once every few changes, so that some searches use a stale bound
+                if (random.nextInt(3) == 0) {
+                    assertEquals(largestArea, grid.getLargestVacantArea());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargestVacantArea() {
+        GridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+        assertEquals(6, grid.getLargestVacantArea());
+
+        grid.markCells(2, 2, 3, 2, true);
+        assertEquals(4, grid.getLargestVacantArea());
+
+        grid.clear();
+        assertEquals(20, grid.getLargestVacantArea());
+    }
+
+    @Test
+    public void testIsFull() {
+        GridOccupancy grid = new GridOccupancy(3, 2);
+        grid.markCells(0, 0, 3, 1, true);
+        grid.markCells(0, 1, 2, 1, true);
+        assertFalse(grid.isFull());
+
+        grid.markCells(2, 1, 2, 2, true);
+        assertTrue(grid.isFull());
+
+        grid.markCells(1, 0, 1, 1, false);
+        assertFalse(grid.isFull());
+    }
+
+    @Test
+    public void testLargestVacantArea_isABoundAfterOccupyingCells() {
+        GridOccupancy grid = new GridOccupancy(4, 4);
+        assertEquals(16, grid.getLargestVacantArea());
+
+        int[] vacant = new int[2];
+        grid.markCells(0, 0, 4, 1, true);
+        assertTrue(grid.findVacantCell(vacant, 4, 3));
+        assertEquals(1, vacant[1]);
+        assertEquals(12, grid.getLargestVacantArea());
+        assertFalse(grid.findVacantCell(vacant, 4, 4));
+
+        grid.markCells(0, 0, 4, 1, false);
+        assertTrue(grid.findVacantCell(vacant, 4, 4));
+
+        GridOccupancy copy = new GridOccupancy(4, 4);
+        grid.markCells(0, 0, 2, 2, true);
+        grid.copyTo(copy);
+        assertEquals(grid.getLargestVacantArea(), copy.getLargestVacantArea());
+        assertFalse(copy.findVacantCell(vacant, 4, 3));
+        assertTrue(copy.findVacantCell(vacant, 4, 2));
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
         GridOccupancy grid = new GridOccupancy(cols, rows);
         for (int y = 0; y < rows; y++) {
             for (int x = 0; x < cols; x++) {
-                grid.cells[x][y] = cells[i] != 0;
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
                 i++;
             }
         }
         return grid;
     }
+
+    /**
+     * The previous boolean[][] implementation, used as a reference.
+     */
+    private static class BooleanGrid extends AbsGridOccupancy {
+
+        private final int mCountX;
+        private final int mCountY;
+        private final boolean[][] mCells;
+
+        BooleanGrid(int countX, int countY) {
+            mCountX = countX;
+            mCountY = countY;
+            mCells = new boolean[countX][countY];
+        }
+
+        boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
+            return findVacantCell(vacantOut, mCells, mCountX, mCountY, spanX, spanY);
+        }
+
+        boolean isRegionVacant(int x, int y, int spanX, int spanY) {
+            int x2 = x + spanX - 1;
+            int y2 = y + spanY - 1;
+            if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
+                return false;
+            }
+            for (int i = x; i <= x2; i++) {
+                for (int j = y; j <= y2; j++) {
+                    if (mCells[i][j]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
+            if (cellX < 0 || cellY < 0) return;
+            for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
+                for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
+                    mCells[x][y] = value;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.Context
+import android.util.Log
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_APP_LAUNCH_TAP
+import com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_FOLDER_OPEN
+import com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_APP_LAUNCH
+import com.android.launcher3.logging.StatsLogManager.LauncherLatencyEvent.LAUNCHER_LATENCY_FOLDER_OPEN
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.logging.LatencyHistogram
+import com.saggitt.omega.logging.LocalMetrics
+import com.saggitt.omega.logging.LocalStatsLogManager
+import org.json.JSONObject
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.io.PrintWriter
+import java.io.StringWriter
+
+/** Tests the events recorded by [LocalMetrics], and reports their cost */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class LocalMetricsTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val metrics = LocalMetrics()
+
+    @Test
+    fun histogramBuckets_holdTheirValues() {
+        for (value in listOf(0L, 1, 15, 16, 17, 31, 32, 33, 1000, 65_535, 1L shl 30)) {
+            val bucket = LatencyHistogram.bucketOf(value)
+            val lower = LatencyHistogram.lowerBound(bucket)
+            val upper = LatencyHistogram.upperBound(bucket)
+            assertThat(value).isAtLeast(lower)
+            assertThat(value).isAtMost(upper)
+            // Within about 6% of the values
+            assertThat(upper - lower).isAtMost(maxOf(0, lower / 16))
+        }
+    }
+
+    @Test
+    fun percentiles_areCloseToTheRecordedValues() {
+        val histogram = LatencyHistogram()
+        (1L..1000L).shuffled().forEach { histogram.record(it) }
+
+        assertThat(histogram.count).isEqualTo(1000)
+        assertThat(histogram.percentile(0.5)).isIn(500L..532L)
+        assertThat(histogram.percentile(0.99)).isIn(990L..1000L)
+        assertThat(histogram.max).isEqualTo(1000)
+        assertThat(histogram.mean).isWithin(0.01).of(500.5)
+    }
+
+    @Test
+    fun events_areCounted() {
+        repeat(3) { metrics.logEvent(LAUNCHER_APP_LAUNCH_TAP) }
+        metrics.logEvent(LAUNCHER_FOLDER_OPEN)
+        metrics.logLatency(LAUNCHER_LATENCY_FOLDER_OPEN, 120)
+        metrics.logLatency(LAUNCHER_LATENCY_FOLDER_OPEN, 180)
+
+        assertThat(metrics.getCount(LAUNCHER_APP_LAUNCH_TAP)).isEqualTo(3)
+        assertThat(metrics.getCount(LAUNCHER_FOLDER_OPEN)).isEqualTo(1)
+        assertThat(metrics.getCount(LAUNCHER_LATENCY_FOLDER_OPEN)).isEqualTo(2)
+        assertThat(metrics.getLatencies(LAUNCHER_LATENCY_FOLDER_OPEN)!!.max).isEqualTo(180)
+        assertThat(dump()).contains("LAUNCHER_APP_LAUNCH_TAP=3")
+        assertThat(dump()).contains("LAUNCHER_LATENCY_FOLDER_OPEN count=2")
+    }
+
+    @Test
+    fun recentEvents_keepTheLastOnes() {
+        repeat(LocalMetrics.RING_SIZE) { metrics.logEvent(LAUNCHER_APP_LAUNCH_TAP) }
+        metrics.logLatency(LAUNCHER_LATENCY_APP_LAUNCH, 42)
+
+        val recent = metrics.toJson().getJSONArray("recent")
+        assertThat(recent.length()).isEqualTo(LocalMetrics.RING_SIZE)
+        val last = recent.getJSONObject(recent.length() - 1)
+        assertThat(last.getString("event")).isEqualTo("LAUNCHER_LATENCY_APP_LAUNCH")
+        assertThat(last.getLong("latency")).isEqualTo(42)
+    }
+
+    @Test
+    fun export_writesTheMetrics() {
+        metrics.logLatency(LAUNCHER_LATENCY_APP_LAUNCH, 42)
+        val file = File(context.cacheDir, "metrics_test.json")
+
+        assertThat(metrics.export(file)).isTrue()
+        val json = JSONObject(file.readText())
+        file.delete()
+        assertThat(json.getJSONObject("events").getLong("LAUNCHER_LATENCY_APP_LAUNCH"))
+            .isEqualTo(1)
+        assertThat(json.getJSONObject("latencies").getJSONObject("LAUNCHER_LATENCY_APP_LAUNCH")
+            .getLong("p50")).isEqualTo(42)
+    }
+
+    @Test
+    fun loggers_recordInTheSharedMetrics() {
+        val manager = LocalStatsLogManager(context)
+        val before = LocalStatsLogManager.METRICS.getCount(LAUNCHER_LATENCY_APP_LAUNCH)
+
+        manager.latencyLogger().withLatency(10).log(LAUNCHER_LATENCY_APP_LAUNCH)
+
+        assertThat(LocalStatsLogManager.METRICS.getCount(LAUNCHER_LATENCY_APP_LAUNCH))
+            .isEqualTo(before + 1)
+    }
+
+    @Test
+    fun concurrentEvents_areAllCounted() {
+        val perThread = 10_000
+        val threads = (0 until 4).map {
+            Thread {
+                repeat(perThread) { index ->
+                    metrics.logEvent(LAUNCHER_APP_LAUNCH_TAP)
+                    metrics.logLatency(LAUNCHER_LATENCY_APP_LAUNCH, index % 500L)
+                }
+            }
+        }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+
+        assertThat(metrics.getCount(LAUNCHER_APP_LAUNCH_TAP)).isEqualTo(4L * perThread)
+        assertThat(metrics.getCount(LAUNCHER_LATENCY_APP_LAUNCH)).isEqualTo(4L * perThread)
+        val latencies = metrics.getLatencies(LAUNCHER_LATENCY_APP_LAUNCH)!!
+        assertThat(latencies.count).isEqualTo(4L * perThread)
+        assertThat(latencies.max).isEqualTo(499)
+    }
+
+    /**
+     * Reports the average cost of logging an event through the manager like the launcher does.
+     * The cost depends on the device, so it is only logged, not checked.
+     */
+    @Test
+    fun benchmark_eventCost() {
+        val manager = LocalStatsLogManager(context)
+        val iterations = 200_000
+        // Warm up the code paths
+        repeat(iterations) { logEvents(manager, it) }
+
+        val before = LocalStatsLogManager.METRICS.getCount(LAUNCHER_APP_LAUNCH_TAP)
+        val start = System.nanoTime()
+        repeat(iterations) { logEvents(manager, it) }
+        val nanosPerEvent = (System.nanoTime() - start) / (2.0 * iterations)
+
+        Log.d(TAG, "%.1fns per event".format(nanosPerEvent))
+        assertThat(LocalStatsLogManager.METRICS.getCount(LAUNCHER_APP_LAUNCH_TAP))
+            .isEqualTo(before + iterations)
+    }
+
+    private fun logEvents(manager: LocalStatsLogManager, index: Int) {
+        manager.logger().log(LAUNCHER_APP_LAUNCH_TAP)
+        manager.latencyLogger().withLatency(index % 500L).log(LAUNCHER_LATENCY_APP_LAUNCH)
+    }
+
+    private fun dump(): String {
+        val out = StringWriter()
+        metrics.dump("", PrintWriter(out))
+        return out.toString()
+    }
+
+    companion object {
+        private const val TAG = "LocalMetricsTest"
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import androidx.room.testing.MigrationTestHelper
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.data.NeoLauncherDb
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests the migrations of [NeoLauncherDb] against the exported schemas */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class NeoLauncherDbMigrationTest {
+
+    @get:Rule
+    val helper = MigrationTestHelper(
+        InstrumentationRegistry.getInstrumentation(),
+        NeoLauncherDb::class.java,
+    )
+
+    @Test
+    fun migrate5To6_keepsExistingData() {
+        helper.createDatabase(TEST_DB, 5).use { db ->
+            db.execSQL("INSERT INTO AppTracker (packageName, count) VALUES ('com.example', 3)")
+        }
+
+        helper.runMigrationsAndValidate(TEST_DB, 6, true, *NeoLauncherDb.MIGRATIONS).use { db ->
+            db.query("SELECT count FROM AppTracker WHERE packageName = 'com.example'").use {
+                assertThat(it.moveToFirst()).isTrue()
+                assertThat(it.getInt(0)).isEqualTo(3)
+            }
+        }
+    }
+
+    @Test
+    fun migrate5To6_createsGroupTables() {
+        helper.createDatabase(TEST_DB, 5).close()
+
+        helper.runMigrationsAndValidate(TEST_DB, 6, true, *NeoLauncherDb.MIGRATIONS).use { db ->
+            db.execSQL("INSERT INTO AppGroupInfo VALUES ('a', 'folders', 0, 'custom', '{}')")
+            db.execSQL("INSERT INTO AppGroupInfo VALUES ('b', 'tabs', 0, 'custom', '{}')")
+            db.execSQL("INSERT INTO AppGroupComponent VALUES ('a', 'items', 'com.example/.A')")
+            db.execSQL("INSERT INTO AppGroupComponent VALUES ('b', 'items', 'com.example/.B')")
+
+            db.query(
+                "SELECT component FROM AppGroupComponent INNER JOIN AppGroupInfo "
+                        + "ON groupId = id WHERE category = 'folders'"
+            ).use {
+                assertThat(it.count).isEqualTo(1)
+                assertThat(it.moveToFirst()).isTrue()
+                assertThat(it.getString(0)).isEqualTo("com.example/.A")
+            }
+        }
+    }
+
+    @Test
+    fun migrate6To7_indexesExistingContacts() {
+        helper.createDatabase(TEST_DB, 6).use { db ->
+            db.execSQL("INSERT INTO PeopleInfo VALUES ('1', 'Ada Lovelace', '555')")
+        }
+
+        helper.runMigrationsAndValidate(TEST_DB, 7, true, *NeoLauncherDb.MIGRATIONS).use { db ->
+            db.query(
+                "SELECT contactName, usageCount FROM PeopleInfo INNER JOIN PeopleFts "
+                        + "ON PeopleInfo.rowid = PeopleFts.docid WHERE PeopleFts MATCH 'love*'"
+            ).use {
+                assertThat(it.moveToFirst()).isTrue()
+                assertThat(it.getString(0)).isEqualTo("Ada Lovelace")
+                assertThat(it.getInt(1)).isEqualTo(0)
+            }
+
+            // The triggers keep the index in sync
+            db.execSQL("UPDATE PeopleInfo SET contactName = 'Grace Hopper' WHERE contactId = '1'")
+            db.query("SELECT docid FROM PeopleFts WHERE PeopleFts MATCH 'love*'").use {
+                assertThat(it.count).isEqualTo(0)
+            }
+            db.query("SELECT docid FROM PeopleFts WHERE PeopleFts MATCH 'hop*'").use {
+                assertThat(it.count).isEqualTo(1)
+            }
+        }
+    }
+
+    @Test
+    fun migrate7To8_startsTheUsageFromTheLaunchCounts() {
+        helper.createDatabase(TEST_DB, 7).use { db ->
+            db.execSQL("INSERT INTO AppTracker (packageName, count) VALUES ('com.rare', 3)")
+            db.execSQL("INSERT INTO AppTracker (packageName, count) VALUES ('com.often', 50)")
+        }
+
+        helper.runMigrationsAndValidate(TEST_DB, 8, true, *NeoLauncherDb.MIGRATIONS).use { db ->
+            db.query("SELECT packageName, score, launchCount FROM AppUsage ORDER BY packageName")
+                .use {
+                    assertThat(it.count).isEqualTo(2)
+                    it.moveToFirst()
+                    assertThat(it.getString(0)).isEqualTo("com.often")
+                    // Capped so that old habits fade out
+                    assertThat(it.getDouble(1)).isEqualTo(20.0)
+                    assertThat(it.getInt(2)).isEqualTo(50)
+                    it.moveToNext()
+                    assertThat(it.getString(0)).isEqualTo("com.rare")
+                    assertThat(it.getDouble(1)).isEqualTo(3.0)
+                    assertThat(it.getInt(2)).isEqualTo(3)
+                }
+            db.query("SELECT name FROM sqlite_master WHERE name = 'AppTracker'").use {
+                assertThat(it.count).isEqualTo(0)
+            }
+        }
+    }
+
+    @Test
+    fun migrate5To8_runsEveryMigration() {
+        helper.createDatabase(TEST_DB, 5).use { db ->
+            db.execSQL("INSERT INTO AppTracker (packageName, count) VALUES ('com.example', 3)")
+        }
+
+        helper.runMigrationsAndValidate(TEST_DB, 8, true, *NeoLauncherDb.MIGRATIONS).use { db ->
+            db.query("SELECT launchCount FROM AppUsage WHERE packageName = 'com.example'").use {
+                assertThat(it.moveToFirst()).isTrue()
+                assertThat(it.getInt(0)).isEqualTo(3)
+            }
+        }
+    }
+
+    companion object {
+        private const val TEST_DB = "migration-test.db"
+    }
+}
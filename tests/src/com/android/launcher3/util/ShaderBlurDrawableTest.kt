@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.util.Log
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.util.Executors.MAIN_EXECUTOR
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.blur.BlurDrawable
+import com.saggitt.omega.blur.BlurWallpaperProvider
+import com.saggitt.omega.blur.ShaderBlurDrawable
+import com.saggitt.omega.blur.SharedBlurShader
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests the drawing of [ShaderBlurDrawable]s from a [SharedBlurShader], and reports its cost */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ShaderBlurDrawableTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val shader = SharedBlurShader()
+    private val canvasBitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888)
+    private val canvas = Canvas(canvasBitmap)
+
+    @Test
+    fun offsets_moveTheSampledWallpaper() = onMainThread {
+        // Each pixel of the wallpaper has its x position as blue
+        shader.setWallpaper(createGradient(200, 100), 1f, 1f)
+        val drawable = createDrawable(0, 0, 50, 50)
+
+        draw(drawable)
+        assertThat(Color.blue(canvasBitmap.getPixel(10, 10))).isEqualTo(10)
+
+        shader.setOffset(30f)
+        draw(drawable)
+        assertThat(Color.blue(canvasBitmap.getPixel(10, 10))).isEqualTo(40)
+
+        drawable.viewOffsetX = 5f
+        draw(drawable)
+        assertThat(Color.blue(canvasBitmap.getPixel(10, 10))).isEqualTo(45)
+    }
+
+    @Test
+    fun downsampledWallpaper_isScaledToTheScreen() = onMainThread {
+        shader.setWallpaper(createGradient(50, 50), 2f, 2f)
+        val drawable = createDrawable(0, 0, 100, 100)
+
+        drawable.draw(canvas, true)
+
+        assertThat(Color.blue(canvasBitmap.getPixel(40, 40))).isIn(19..21)
+    }
+
+    @Test
+    fun drawing_isClippedToTheVisibleBounds() = onMainThread {
+        shader.setWallpaper(createGradient(200, 100), 1f, 1f)
+        val drawable = createDrawable(0, 0, 50, 50)
+
+        canvas.save()
+        canvas.clipRect(0, 0, 20, 50)
+        drawable.draw(canvas, true)
+        canvas.restore()
+
+        assertThat(Color.alpha(canvasBitmap.getPixel(10, 10))).isEqualTo(255)
+        assertThat(canvasBitmap.getPixel(30, 10)).isEqualTo(Color.TRANSPARENT)
+    }
+
+    @Test
+    fun oneOffset_scrollsEverySurface() = onMainThread {
+        shader.setWallpaper(createGradient(200, 100), 1f, 1f)
+        val left = createDrawable(0, 0, 50, 50)
+        val right = createDrawable(50, 0, 100, 50, 8f)
+        draw(left)
+        right.draw(canvas)
+
+        shader.setOffset(30f)
+        draw(left)
+        right.draw(canvas)
+
+        assertThat(Color.blue(canvasBitmap.getPixel(10, 10))).isEqualTo(40)
+        assertThat(Color.blue(canvasBitmap.getPixel(60, 10))).isEqualTo(90)
+    }
+
+    @Test
+    fun sameOffset_keepsTheShaderVersion() = onMainThread {
+        shader.setWallpaper(createGradient(10, 10), 1f, 1f)
+        shader.setOffset(5f)
+        val version = shader.version
+
+        shader.setOffset(5f)
+        assertThat(shader.version).isEqualTo(version)
+
+        shader.setOffset(6f)
+        assertThat(shader.version).isNotEqualTo(version)
+    }
+
+    /**
+     * Reports the time of drawing a page scroll with six blur surfaces. It depends on the
+     * device, so it is only logged, not checked.
+     */
+    @Test
+    fun benchmark_pageScrollWithSixSurfaces() = onMainThread {
+        val screen = Bitmap.createBitmap(1080, 2400, Bitmap.Config.ARGB_8888)
+        val screenCanvas = Canvas(screen)
+        shader.setWallpaper(createGradient(270, 300), 8f, 8f)
+        // Like the drawer scrim, the dock, the search bar and folders
+        val drawables = listOf(
+            createDrawable(0, 1200, 1080, 2400, 48f),
+            createDrawable(40, 2100, 1040, 2340, 32f),
+            createDrawable(40, 160, 1040, 300, 70f),
+            createDrawable(60, 600, 360, 900, 24f),
+            createDrawable(390, 600, 690, 900, 24f),
+            createDrawable(720, 600, 1020, 900, 24f),
+        )
+
+        val start = System.nanoTime()
+        for (frame in 0 until FRAMES) {
+            shader.setOffset(frame % 1080f)
+            drawables.forEach { it.draw(screenCanvas) }
+        }
+        val frameTimeMs = (System.nanoTime() - start) / 1_000_000.0 / FRAMES
+        Log.d(TAG, "${drawables.size} blur surfaces: %.2fms per frame".format(frameTimeMs))
+        assertThat(Color.alpha(screen.getPixel(540, 2200))).isEqualTo(255)
+    }
+
+    private fun createDrawable(
+        left: Int, top: Int, right: Int, bottom: Int, radius: Float = 0f
+    ): BlurDrawable = ShaderBlurDrawable(BlurWallpaperProvider.getInstance(context), shader).apply {
+        blurRadii = BlurDrawable.Radii(radius)
+        setBounds(left, top, right, bottom)
+    }
+
+    private fun draw(drawable: BlurDrawable) {
+        canvasBitmap.eraseColor(Color.TRANSPARENT)
+        drawable.draw(canvas)
+    }
+
+    private fun createGradient(width: Int, height: Int): Bitmap {
+        val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        for (x in 0 until width) {
+            for (y in 0 until height) {
+                bitmap.setPixel(x, y, Color.rgb(0, 0, x % 256))
+            }
+        }
+        return bitmap
+    }
+
+    private fun onMainThread(block: () -> Unit) {
+        MAIN_EXECUTOR.submit { block() }.get()
+    }
+
+    companion object {
+        private const val TAG = "ShaderBlurDrawableTest"
+        private const val FRAMES = 60
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.smartspace.provider.SmartspaceAggregator
+import com.saggitt.omega.smartspace.provider.SmartspaceDataSource.State
+import com.saulhdev.smartspace.SmartspaceTarget
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.PrintWriter
+import java.io.StringWriter
+
+/** Tests the merging of the smartspace sources by [SmartspaceAggregator] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class SmartspaceAggregatorTest {
+
+    private val sources = List(3) { MutableSharedFlow<State>(replay = 1) }
+    private val aggregator = SmartspaceAggregator(sources)
+    private val emitted = ArrayList<State>()
+
+    @Test
+    fun nothing_isEmittedBeforeEverySourceEmitted() = collect {
+        update(0, target("a", 1))
+        update(1, target("b", 2))
+
+        assertThat(emitted).isEmpty()
+
+        update(2)
+        assertThat(ids(emitted.single())).containsExactly("b", "a").inOrder()
+    }
+
+    @Test
+    fun targets_areMergedByScore() = collect {
+        update(0, target("weather", 0), target("alert", 5))
+        update(1, target("battery", 1))
+        update(2, target("alarm", 4), target("calendar", 3))
+
+        assertThat(ids(emitted.last()))
+            .containsExactly("alert", "alarm", "calendar", "battery", "weather")
+            .inOrder()
+    }
+
+    @Test
+    fun equalScores_keepTheOrderOfTheSources() = collect {
+        update(0, target("first", 1))
+        update(1, target("second", 1))
+        update(2, target("third", 1))
+
+        assertThat(ids(emitted.last())).containsExactly("first", "second", "third").inOrder()
+    }
+
+    @Test
+    fun unchangedTargets_areNotEmitted() = collect {
+        update(0, target("a", 1))
+        update(1, target("b", 2))
+        update(2)
+        // An equal copy of the same target
+        update(0, target("a", 1))
+
+        assertThat(emitted).hasSize(1)
+        assertThat(dump()).contains("emissions=1 skipped=1")
+    }
+
+    @Test
+    fun unchangedTargets_keepTheirInstances() = collect {
+        val b = target("b", 2)
+        update(0, target("a", 1))
+        update(1, b)
+        update(2)
+        update(0, target("a", 1), target("c", 0))
+
+        assertThat(emitted).hasSize(2)
+        assertThat(ids(emitted.last())).containsExactly("b", "a", "c").inOrder()
+        assertThat(emitted.last().targets[0]).isSameInstanceAs(b)
+    }
+
+    @Test
+    fun removedTargets_areDropped() = collect {
+        update(0, target("a", 1))
+        update(1, target("b", 2))
+        update(2, target("c", 3))
+        update(2)
+
+        assertThat(ids(emitted.last())).containsExactly("b", "a").inOrder()
+    }
+
+    private fun collect(block: suspend CoroutineScope.() -> Unit) = runBlocking {
+        val job = launch { aggregator.state.collect { emitted.add(it) } }
+        delay(50)
+        block()
+        job.cancel()
+    }
+
+    private suspend fun update(source: Int, vararg targets: SmartspaceTarget) {
+        sources[source].emit(State(targets = targets.toList()))
+        // Let the aggregator collect it
+        delay(50)
+    }
+
+    private fun ids(state: State) = state.targets.map { it.smartspaceTargetId }
+
+    private fun dump(): String {
+        val out = StringWriter()
+        aggregator.dump("", PrintWriter(out))
+        return out.toString()
+    }
+
+    private fun target(id: String, score: Int) = SmartspaceTarget(
+        smartspaceTargetId = id,
+        score = score,
+        featureType = SmartspaceTarget.FEATURE_TIPS
+    )
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.blur.StackBlur
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.Random
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
+
+/** Tests the CPU blur of the wallpaper, [StackBlur] */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class StackBlurTest {
+
+    private val random = Random(43)
+
+    @Test
+    fun blur_matchesTheWeightedAverage() {
+        for (radius in intArrayOf(1, 3, 25)) {
+            val width = 37
+            val height = 23
+            val pixels = randomPixels(width * height)
+            val expected = referenceBlur(pixels, width, height, radius)
+
+            StackBlur(1).blur(pixels, width, height, radius)
+
+            assertThat(pixels).isEqualTo(expected)
+        }
+    }
+
+    @Test
+    fun bands_giveTheSameResult() {
+        val width = 101
+        val height = 67
+        val pixels = randomPixels(width * height)
+        val banded = pixels.copyOf()
+
+        StackBlur(1).blur(pixels, width, height, 12)
+        StackBlur(3).blur(banded, width, height, 12)
+
+        assertThat(banded).isEqualTo(pixels)
+    }
+
+    @Test
+    fun uniformImage_isUnchanged() {
+        val pixels = IntArray(50 * 20) { 0xFF336699.toInt() }
+
+        StackBlur().blur(pixels, 50, 20, 25)
+
+        assertThat(pixels.distinct()).containsExactly(0xFF336699.toInt())
+    }
+
+    @Test
+    fun blur_completesOnABusyThreadPool() {
+        val release = CountDownLatch(1)
+        val blurred = CountDownLatch(1)
+        try {
+            // Every thread of the pool is busy, and the blur itself is queued on it
+            repeat(THREAD_POOL_EXECUTOR.maximumPoolSize - 1) {
+                THREAD_POOL_EXECUTOR.execute { release.await() }
+            }
+            THREAD_POOL_EXECUTOR.execute {
+                StackBlur(3).blur(randomPixels(64 * 64), 64, 64, 8)
+                blurred.countDown()
+            }
+
+            assertThat(blurred.await(5, TimeUnit.SECONDS)).isTrue()
+        } finally {
+            release.countDown()
+        }
+    }
+
+    private fun randomPixels(count: Int) = IntArray(count) { random.nextInt() }
+
+    /** Blurs the rows then the columns, computing each pixel from its whole window */
+    private fun referenceBlur(pixels: IntArray, width: Int, height: Int, radius: Int): IntArray {
+        val rows = IntArray(pixels.size)
+        for (y in 0 until height) {
+            for (x in 0 until width) {
+                rows[y * width + x] = average(radius) {
+                    pixels[y * width + (x + it).coerceIn(0, width - 1)]
+                }
+            }
+        }
+        val result = IntArray(pixels.size)
+        for (y in 0 until height) {
+            for (x in 0 until width) {
+                result[y * width + x] = average(radius) {
+                    rows[(y + it).coerceIn(0, height - 1) * width + x]
+                }
+            }
+        }
+        return result
+    }
+
+    private inline fun average(radius: Int, pixelAt: (Int) -> Int): Int {
+        var result = 0
+        for (shift in intArrayOf(24, 16, 8, 0)) {
+            var sum = 0
+            for (i in -radius..radius) {
+                sum += (pixelAt(i) ushr shift and 0xFF) * (radius + 1 - abs(i))
+            }
+            result = result or (sum / ((radius + 1) * (radius + 1)) shl shift)
+        }
+        return result
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.util
+
+import android.content.Context
+import android.util.AtomicFile
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import com.saggitt.omega.smartspace.weather.OWMWeatherTransport
+import com.saggitt.omega.smartspace.weather.WeatherRepository
+import com.saggitt.omega.smartspace.weather.WeatherResult
+import com.saggitt.omega.widget.Temperature
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+import okhttp3.HttpUrl
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.tls.HandshakeCertificates
+import okhttp3.tls.HeldCertificate
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.net.InetAddress
+import java.util.concurrent.atomic.AtomicInteger
+
+/** Tests the weather kept by [WeatherRepository], fetched from a local server */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class WeatherRepositoryTest {
+
+    private val file = File(
+        ApplicationProvider.getApplicationContext<Context>().cacheDir, "weather_test.json"
+    )
+    private val server = StandInServer()
+    private val webServer = MockWebServer()
+    private lateinit var transport: OWMWeatherTransport
+    private val foreground = MutableStateFlow(true)
+    private val request = OWMWeatherTransport.cityRequest("London")
+
+    @Before
+    fun setUp() {
+        // Over https, as the app only allows cleartext traffic to the weather API
+        val certificate = HeldCertificate.Builder()
+            .addSubjectAlternativeName("localhost")
+            .addSubjectAlternativeName("127.0.0.1")
+            .build()
+        val serverCertificates = HandshakeCertificates.Builder()
+            .heldCertificate(certificate)
+            .build()
+        val clientCertificates = HandshakeCertificates.Builder()
+            .addTrustedCertificate(certificate.certificate)
+            .build()
+        webServer.useHttps(serverCertificates.sslSocketFactory(), false)
+        webServer.dispatcher = server
+        webServer.start(InetAddress.getByName("localhost"), 0)
+
+        val client = OkHttpClient.Builder()
+            .sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager)
+            .build()
+        transport = OWMWeatherTransport(client, { "key" }, webServer.url("/weather").toString())
+    }
+
+    @After
+    fun tearDown() {
+        webServer.shutdown()
+        AtomicFile(file).delete()
+    }
+
+    @Test
+    fun weather_isParsed() = runBlocking {
+        val weather = firstWeather(createRepository())
+
+        assertThat(weather.temperature).isEqualTo(283)
+        assertThat(weather.unit).isEqualTo(Temperature.Unit.Kelvin)
+        assertThat(weather.condition).isEqualTo("04d")
+        assertThat(weather.forecastUrl).isEqualTo("https://openweathermap.org/city/2643743")
+        assertThat(server.lastUrl!!.queryParameter("q")).isEqualTo("London")
+        assertThat(server.lastUrl!!.queryParameter("appid")).isEqualTo("key")
+    }
+
+    @Test
+    fun lastWeather_isRestoredWithoutFetching() = runBlocking {
+        val fetched = firstWeather(createRepository())
+
+        // A new process, in the background
+        foreground.value = false
+        val restored = createRepository().weather(request, transport).first()
+
+        assertThat(restored).isEqualTo(fetched)
+        assertThat(server.requests.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun freshWeather_isNotFetchedAgain() = runBlocking {
+        val repository = createRepository()
+        firstWeather(repository)
+
+        val emitted = ArrayList<WeatherResult?>()
+        withTimeoutOrNull(500) { repository.weather(request, transport).toList(emitted) }
+
+        assertThat(emitted).hasSize(1)
+        assertThat(server.requests.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun expiredWeather_isFetchedAgain() = runBlocking {
+        val emitted = ArrayList<WeatherResult?>()
+        withTimeoutOrNull(1000) {
+            createRepository().weather(request, transport, ttlMs = 300).toList(emitted)
+        }
+
+        assertThat(server.requests.get()).isIn(3..4)
+        assertThat(emitted.filterNotNull().size).isEqualTo(server.requests.get())
+    }
+
+    @Test
+    fun fetching_waitsForTheForeground() = runBlocking {
+        foreground.value = false
+        val repository = createRepository()
+        val weather = async { firstWeather(repository) }
+
+        delay(500)
+        assertThat(server.requests.get()).isEqualTo(0)
+
+        foreground.value = true
+        weather.await()
+        assertThat(server.requests.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun concurrentRequests_areShared() = runBlocking {
+        server.delayMs = 300
+        val repository = createRepository()
+
+        val weathers = (0 until 3).map { async { firstWeather(repository) } }.map { it.await() }
+
+        assertThat(weathers.distinct()).hasSize(1)
+        assertThat(server.requests.get()).isEqualTo(1)
+    }
+
+    @Test
+    fun failures_areRetriedWithBackoff() = runBlocking {
+        server.failures = 3
+        val failures = AtomicInteger()
+        val start = System.currentTimeMillis()
+
+        val weather = withTimeout(5000) {
+            createRepository().weather(request, transport) { failures.incrementAndGet() }
+                .filterNotNull()
+                .first()
+        }
+
+        // Retried after 100, 200 and 400 ms
+        assertThat(System.currentTimeMillis() - start).isAtLeast(700)
+        assertThat(weather.temperature).isEqualTo(283)
+        assertThat(failures.get()).isEqualTo(3)
+        assertThat(server.requests.get()).isEqualTo(4)
+    }
+
+    private fun createRepository() =
+        WeatherRepository(AtomicFile(file), foreground, minBackoffMs = 100, maxBackoffMs = 1000)
+
+    private suspend fun firstWeather(repository: WeatherRepository) = withTimeout(5000) {
+        repository.weather(request, transport).filterNotNull().first()
+    }
+
+    /**
+     * Answers like the current weather API, after [delayMs], failing the first [failures]
+     * requests
+     */
+    private class StandInServer : Dispatcher() {
+        val requests = AtomicInteger()
+
+        @Volatile
+        var delayMs = 0L
+
+        @Volatile
+        var failures = 0
+
+        @Volatile
+        var lastUrl: HttpUrl? = null
+
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val count = requests.incrementAndGet()
+            lastUrl = request.requestUrl
+            if (delayMs > 0) {
+                Thread.sleep(delayMs)
+            }
+            if (count <= failures) {
+                return MockResponse().setResponseCode(503)
+            }
+            val body = JSONObject()
+                .put("id", 2643743)
+                .put("main", JSONObject().put("temp", 282.6))
+                .put("weather", JSONArray().put(JSONObject().put("icon", "04d")))
+            return MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body.toString())
+        }
+    }
+}